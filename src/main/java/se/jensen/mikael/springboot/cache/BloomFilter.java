@@ -0,0 +1,79 @@
+package se.jensen.mikael.springboot.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Trådsäkert bloomfilter för strängar.
+ * <p>
+ * mightContain() svarar "kanske" eller "definitivt inte". Med rätt
+ * storlek är "definitivt inte" svaret i nästan alla fall, och då krävs
+ * ingen uppslagning i en map. Både put() och mightContain() hashar
+ * tecknen direkt utan att skapa objekt (ingen allokering).
+ * <p>
+ * Element kan inte tas bort – bygg ett nytt filter när innehållet ändrats
+ * mycket (se TokenRevocationStore).
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedElements     hur många element filtret dimensioneras för
+     * @param falsePositiveRate    önskad andel falska "kanske" vid full last, t.ex. 0.01
+     */
+    public BloomFilter(int expectedElements, double falsePositiveRate) {
+        int n = Math.max(1, expectedElements);
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.max(1, (m + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    /**
+     * Lägger till value i filtret.
+     */
+    public void put(CharSequence value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+    }
+
+    /**
+     * False om value garanterat inte finns; true om det kanske finns.
+     */
+    public boolean mightContain(CharSequence value) {
+        long h1 = hash(value, 0x9E3779B97F4A7C15L);
+        long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 64-bitars hash över tecknen (FNV-liknande med mixning på slutet)
+    private static long hash(CharSequence value, long seed) {
+        long h = seed;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,117 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * Cache i minnet för första sidan i flödet (de N nyaste posterna).
+ * <p>
+ * Innehåller färdigmappade PostResponseDTO så en träff inte kostar
+ * någon databasfråga eller mappning. Cachen begränsas av:
+ * - storlek: högst N poster (+1 för att veta om det finns en nästa sida)
+ * - ålder: en snapshot äldre än TTL kastas och laddas om
+ * <p>
+ * Alla skrivningar av poster ska anropa invalidate() efter att ändringen
+ * är sparad. Snapshoten byts ut atomiskt, och en laddning som startade före
+ * en invalidering får aldrig installera sitt (gamla) resultat – så en
+ * läsare ser aldrig en borttagen post.
+ */
+@Component
+public class FeedCache {
+
+    // Cachens innehåll; posts == null betyder tom. Varje invalidering skapar
+    // ett nytt objekt så att compareAndSet på identitet avslöjar ändringar
+    // som sker medan en laddning pågår.
+    private record Snapshot(List<PostResponseDTO> posts, long loadedAtNanos) {
+        boolean isEmpty() {
+            return posts == null;
+        }
+    }
+
+    private final int capacity;
+    private final long ttlNanos;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(null, 0));
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public FeedCache(@Value("${feed.cache.size:100}") int capacity,
+                     @Value("${feed.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Största sidstorlek som kan besvaras från cachen.
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returnerar de nyaste posterna (upp till capacity + 1 st).
+     * Vid miss anropas loader med antal rader att hämta (mot primären, inte
+     * en replika), och resultatet cachas om ingen invalidering skett under tiden.
+     */
+    public List<PostResponseDTO> getNewest(IntFunction<List<PostResponseDTO>> loader) {
+        Snapshot observed = current.get();
+
+        if (!observed.isEmpty()) {
+            if (System.nanoTime() - observed.loadedAtNanos() < ttlNanos) {
+                hits.increment();
+                return observed.posts();
+            }
+            // För gammal – kasta den
+            Snapshot empty = new Snapshot(null, 0);
+            if (current.compareAndSet(observed, empty)) {
+                evictions.increment();
+            }
+            observed = current.get();
+        }
+
+        misses.increment();
+        List<PostResponseDTO> loaded = List.copyOf(
+                ReplicaRoutingDataSource.onPrimary(() -> loader.apply(capacity + 1)));
+
+        // Installera bara om ingen har invaliderat medan vi läste från databasen
+        if (observed.isEmpty()) {
+            current.compareAndSet(observed, new Snapshot(loaded, System.nanoTime()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Kastar cachen. Anropas efter create/update/delete av poster
+     * och när en författare ändras eller tas bort.
+     */
+    public void invalidate() {
+        current.set(new Snapshot(null, 0));
+        invalidations.increment();
+    }
+
+    /**
+     * Träff/miss/eviction-räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,106 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bloomfilter över upptagna användarnamn och e-postadresser.
+ * <p>
+ * "Inte i filtret" betyder att namnet garanterat är ledigt – det kan
+ * besvaras utan databasfråga (se UserAvailabilityService). "Kanske"
+ * måste kontrolleras mot databasen, eftersom filtret inte kan ta bort
+ * namn som blivit lediga. Filtret byggs om från databasen med jämna
+ * mellanrum så att sådana namn försvinner.
+ */
+@Component
+public class TakenNamesFilter {
+
+    private final int expectedUsers;
+
+    private final AtomicReference<BloomFilter> current = new AtomicReference<>();
+
+    // Filtret som byggs just nu – nya namn läggs även där
+    private final AtomicReference<BloomFilter> rebuilding = new AtomicReference<>();
+
+    public TakenNamesFilter(@Value("${user.availability.expected-users:100000}") int expectedUsers) {
+        this.expectedUsers = expectedUsers;
+    }
+
+    /**
+     * Markerar username och email som upptagna (null hoppas över).
+     */
+    public void add(String username, String email) {
+        // Ombyggnaden först: byts filtret mellan raderna hamnar namnet ändå i det nya
+        add(rebuilding.get(), username, email);
+        add(current.get(), username, email);
+    }
+
+    /**
+     * False om username garanterat är ledigt. Alltid true innan filtret laddats.
+     */
+    public boolean mightHaveUsername(String username) {
+        BloomFilter filter = current.get();
+        return filter == null || filter.mightContain(usernameKey(username));
+    }
+
+    /**
+     * False om email garanterat är ledig. Alltid true innan filtret laddats.
+     */
+    public boolean mightHaveEmail(String email) {
+        BloomFilter filter = current.get();
+        return filter == null || filter.mightContain(emailKey(email));
+    }
+
+    /**
+     * Påbörjar en ombyggnad. Lägg in alla namn från databasen med
+     * addToRebuild och avsluta med endRebuild (eller abortRebuild vid fel).
+     */
+    public void beginRebuild() {
+        rebuilding.set(new BloomFilter(expectedUsers, 0.01));
+    }
+
+    public void addToRebuild(String username, String email) {
+        add(rebuilding.get(), username, email);
+    }
+
+    /**
+     * Byter till det nya filtret.
+     */
+    public void endRebuild() {
+        BloomFilter rebuilt = rebuilding.getAndSet(null);
+        if (rebuilt != null) {
+            current.set(rebuilt);
+        }
+    }
+
+    /**
+     * Kastar en ombyggnad som inte blev klar – ett halvfyllt filter skulle
+     * svara "ledigt" för namn som inte hunnit läsas in.
+     */
+    public void abortRebuild() {
+        rebuilding.set(null);
+    }
+
+    private static void add(BloomFilter filter, String username, String email) {
+        if (filter == null) {
+            return;
+        }
+        if (username != null) {
+            filter.put(usernameKey(username));
+        }
+        if (email != null) {
+            filter.put(emailKey(email));
+        }
+    }
+
+    // Egna prefix så att ett username inte krockar med en likadan email
+    private static String usernameKey(String username) {
+        return "u:" + username;
+    }
+
+    private static String emailKey(String email) {
+        return "e:" + email;
+    }
+}
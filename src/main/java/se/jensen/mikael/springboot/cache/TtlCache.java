@@ -0,0 +1,254 @@
+package se.jensen.mikael.springboot.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Generisk read-through-cache i minnet med TTL och maxstorlek.
+ * <p>
+ * - get(key, loader) returnerar cachat värde eller laddar via loader
+ * - Samtidiga missar på samma nyckel slås ihop: bara en tråd anropar
+ *   loader, övriga väntar på samma resultat (request coalescing)
+ * - Undantag från loader cachas inte, de kastas vidare till alla som väntar
+ * - invalidate(key) tar bort nyckeln; en laddning av samma nyckel som
+ *   startade före invalideringen får aldrig installera sitt (gamla)
+ *   resultat. Laddningar av andra nycklar påverkas inte.
+ * - Är cachen full kastas ungefär det som använts minst på sistone (CLOCK,
+ *   "second chance"): värdena ligger i en kö i den ordning de lades in och
+ *   en träff sätter en flagga. Vid eviction får ett flaggat värde flaggan
+ *   nollställd och ställs sist i kön, ett oflaggat (eller utgånget) kastas.
+ *   Varje insättning kostar amorterat O(1) – ingen genomsökning av hela
+ *   cachen.
+ * <p>
+ * Trådsäker utan globala lås. Används av t.ex. UserCache.
+ */
+public class TtlCache<K, V> {
+
+    private static final class Entry<K, V> {
+
+        final K key;
+        final V value;
+        final long expiresAtNanos;
+
+        // Satt vid träff sedan värdet senast passerade i evictionkön
+        volatile boolean referenced;
+
+        Entry(K key, V value, long expiresAtNanos) {
+            this.key = key;
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        boolean expired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final ConcurrentHashMap<K, Entry<K, V>> entries = new ConcurrentHashMap<>();
+
+    // Pågående laddningar per nyckel – den som lägger in sin future först laddar.
+    // invalidate tar bort nyckelns future, och en laddning installerar bara sitt
+    // resultat om dess future fortfarande ligger kvar
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // Evictionordning (CLOCK). Innehåller även ersatta/invaliderade värden,
+    // som hoppas över när de kommer fram; hålls under 2 * maxSize
+    private final ConcurrentLinkedQueue<Entry<K, V>> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public TtlCache(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize måste vara minst 1");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Returnerar värdet för key, laddat via loader vid miss.
+     * Returnerar loader null cachas ingenting.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<K, V> entry = entries.get(key);
+        if (entry != null) {
+            if (!entry.expired(System.nanoTime())) {
+                hits.increment();
+                if (!entry.referenced) {
+                    entry.referenced = true;
+                }
+                return entry.value;
+            }
+            // För gammal – kasta den
+            if (entries.remove(key, entry)) {
+                evictions.increment();
+            }
+        }
+        misses.increment();
+
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            // Någon annan laddar redan samma nyckel – vänta på den
+            coalesced.increment();
+            return join(existing);
+        }
+
+        try {
+            long start = System.nanoTime();
+            V value = loader.apply(key);
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+
+            if (value != null) {
+                install(key, value, mine);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Tar bort key ur cachen. Anropas efter att värdet ändrats i databasen.
+     */
+    public void invalidate(K key) {
+        // Laddningen först: en laddning som redan läst det gamla värdet ser
+        // att dess future är borta och låter bli att installera det. Hann den
+        // installera tas värdet bort på nästa rad
+        inFlight.remove(key);
+        entries.remove(key);
+        invalidations.increment();
+    }
+
+    /**
+     * Tömmer hela cachen.
+     */
+    public void invalidateAll() {
+        inFlight.clear();
+        entries.clear();
+        order.clear();
+        queued.set(0);
+        invalidations.increment();
+    }
+
+    /**
+     * Antal cachade värden (inklusive ev. utgångna som inte städats än).
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Räknare för övervakning: träffar, missar, sammanslagna missar,
+     * laddningar, genomsnittlig laddtid och träffkvot.
+     */
+    public Map<String, Long> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long loadCount = loads.sum();
+        long requests = hitCount + missCount;
+
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("size", (long) entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("coalesced", coalesced.sum());
+        stats.put("loads", loadCount);
+        stats.put("avgLoadMicros", loadCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(loadNanos.sum() / loadCount));
+        stats.put("hitRatioPercent", requests == 0 ? 0 : hitCount * 100 / requests);
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    /**
+     * Antal poster i evictionkön, inklusive ersatta/invaliderade (för tester).
+     */
+    int queued() {
+        return queued.get();
+    }
+
+    // Installerar ett laddat värde, om nyckeln inte invaliderats sedan laddningen startade
+    private void install(K key, V value, CompletableFuture<V> mine) {
+        Entry<K, V> entry = new Entry<>(key, value, System.nanoTime() + ttlNanos);
+        boolean[] installed = new boolean[1];
+        // computeIfPresent låser nyckelns bucket i inFlight, så en invalidate()
+        // tar antingen bort future:n före (inget installeras) eller väntar och
+        // tar bort värdet efteråt
+        inFlight.computeIfPresent(key, (k, loading) -> {
+            if (loading == mine) {
+                entries.put(k, entry);
+                installed[0] = true;
+            }
+            return loading;
+        });
+        if (installed[0]) {
+            order.add(entry);
+            queued.incrementAndGet();
+            evict();
+        }
+    }
+
+    // CLOCK: går fram i kön tills cachen ryms och kön är kort nog
+    private void evict() {
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Entry<K, V> entry = order.poll();
+            if (entry == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.get(entry.key) != entry) {
+                continue; // ersatt eller invaliderad
+            }
+            if (entry.expired(System.nanoTime()) || (entries.size() > maxSize && !entry.referenced)) {
+                if (entries.remove(entry.key, entry)) {
+                    evictions.increment();
+                }
+                continue;
+            }
+            // Andra chansen
+            entry.referenced = false;
+            order.add(entry);
+            queued.incrementAndGet();
+        }
+    }
+
+    // Väntar på en annan tråds laddning och kastar vidare dess undantag oförändrat
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
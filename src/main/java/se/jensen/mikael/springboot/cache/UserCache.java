@@ -0,0 +1,71 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Read-through-cache för användarprofiler (UserResponseDTO).
+ * <p>
+ * Används av UserService.getUser (/users/{id}) och getUserByUsername
+ * (/users/me), som annars läser databasen vid varje anrop. Profiler
+ * nycklas både på id och på username. Begränsas av storlek och TTL,
+ * och UserService evictar exakt de nycklar som påverkas när en user
+ * uppdateras eller tas bort. Laddningar läser från primären (se
+ * ReplicaRoutingDataSource.onPrimary), aldrig från en läsreplika.
+ */
+@Component
+public class UserCache {
+
+    private final TtlCache<Long, UserResponseDTO> byId;
+    private final TtlCache<String, UserResponseDTO> byUsername;
+
+    public UserCache(@Value("${user.cache.size:10000}") int maxSize,
+                     @Value("${user.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.byId = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+        this.byUsername = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Hämtar en user på id, laddad via loader vid miss.
+     */
+    public UserResponseDTO getById(Long id, Function<Long, UserResponseDTO> loader) {
+        return byId.get(id, key -> ReplicaRoutingDataSource.onPrimary(() -> loader.apply(key)));
+    }
+
+    /**
+     * Hämtar en user på username, laddad via loader vid miss.
+     */
+    public UserResponseDTO getByUsername(String username, Function<String, UserResponseDTO> loader) {
+        return byUsername.get(username, key -> ReplicaRoutingDataSource.onPrimary(() -> loader.apply(key)));
+    }
+
+    /**
+     * Evictar en user. usernames är alla namn usern kan vara cachad under
+     * (vid byte av username: både det gamla och det nya).
+     */
+    public void evict(Long id, String... usernames) {
+        byId.invalidate(id);
+        for (String username : usernames) {
+            if (username != null) {
+                byUsername.invalidate(username);
+            }
+        }
+    }
+
+    /**
+     * Räknare för övervakning, per nyckeltyp.
+     */
+    public Map<String, Map<String, Long>> stats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        stats.put("userCacheById", byId.stats());
+        stats.put("userCacheByUsername", byUsername.stats());
+        return stats;
+    }
+}
@@ -0,0 +1,29 @@
+package se.jensen.mikael.springboot.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Avgränsar requesten för "läs dina egna skrivningar" i
+ * ReplicaRoutingDataSource: markeringen gäller bara inne i requesten och
+ * nollställs när den är klar, så att nästa request på samma tråd läser från
+ * replikorna igen. Registreras bara när replikor är konfigurerade.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        ReplicaRoutingDataSource.beginRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.endRequest();
+        }
+    }
+}
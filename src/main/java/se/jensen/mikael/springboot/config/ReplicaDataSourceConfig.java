@@ -0,0 +1,88 @@
+package se.jensen.mikael.springboot.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Läsreplikor, aktiveras med app.datasource.replica-urls (kommaseparerat).
+ * <p>
+ * Primären byggs från spring.datasource.* som vanligt; replikorna får
+ * samma användare, lösenord och drivrutin. readOnly-transaktioner (alla
+ * läsmetoder i services och Spring Data-repositories) går till en replika,
+ * allt annat till primären – se ReplicaRoutingDataSource.
+ * <p>
+ * Replikornas pooler ger upp efter app.datasource.replica-connection-timeout-ms
+ * (Hikaris standard är 30 s): en läsning mot en replika som gått ner ska
+ * snabbt falla tillbaka till primären, och checkHealth ska inte blockera
+ * schemaläggaren.
+ * <p>
+ * Utan egenskapen används Spring Boots vanliga DataSource och allt går
+ * till spring.datasource.url.
+ */
+@Configuration
+@ConditionalOnProperty("app.datasource.replica-urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            @Value("${app.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${app.datasource.replica-health-timeout-seconds:2}") int healthCheckTimeoutSeconds,
+            @Value("${app.datasource.replica-connection-timeout-ms:1000}") long connectionTimeoutMs) {
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            // Hikari kräver att valideringen inte tar längre än anslutningen
+            replica.setValidationTimeout(connectionTimeoutMs);
+            // En replika som är nere vid start ska inte stoppa applikationen
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, healthCheckTimeoutSeconds);
+    }
+
+    /**
+     * DataSource som JPA och transaktionshanteraren använder. Lazy-proxyn
+     * hämtar den riktiga anslutningen först vid första SQL-satsen, då
+     * transaktionens readOnly-flagga är känd.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter();
+    }
+}
@@ -0,0 +1,263 @@
+package se.jensen.mikael.springboot.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Skickar readOnly-transaktioner till en läsreplika och allt annat till
+ * primärdatabasen (se ReplicaDataSourceConfig).
+ * <p>
+ * Läs dina egna skrivningar: när en skrivande transaktion körts i en
+ * request går resten av requestens läsningar också till primären, så att
+ * klienten inte ser replikans fördröjning direkt efter en ändring.
+ * ReadYourWritesFilter avgränsar requesten (beginRequest/endRequest).
+ * Nästa request kan alltså hamna på en replika som ännu inte hunnit ikapp.
+ * Utanför en request (schemalagda jobb, @Async) markeras ingenting – de
+ * poolade trådarna skulle annars fastna på primären för gott.
+ * <p>
+ * Det som läses till delade cachar (UserCache, UserCredentialsCache,
+ * FeedCache) läses via onPrimary: en rad från en replika som släpar efter
+ * skulle annars ligga kvar i cachen efter att invalideringen redan körts.
+ * <p>
+ * Replikorna turas om (round-robin). En replika som inte svarar markeras
+ * som nere – både av checkHealth och direkt när en anslutning misslyckas –
+ * och läsningar går till primären tills någon replika är uppe igen.
+ * <p>
+ * Måste ligga bakom LazyConnectionDataSourceProxy: annars hämtas
+ * anslutningen innan transaktionens readOnly-flagga är satt.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+
+    // Satt under en request (ReadYourWritesFilter): FALSE, och TRUE när
+    // requesten kört en skrivande transaktion. Saknas utanför requests
+    private static final ThreadLocal<Boolean> WROTE = new ThreadLocal<>();
+
+    // Satt medan tråden kör onPrimary – läsningar går då till primären
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicBoolean[] healthy;
+    private final int healthCheckTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder primaryWrites = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder stickyReads = new LongAdder();
+    private final LongAdder pinnedReads = new LongAdder();
+    private final LongAdder fallbackReads = new LongAdder();
+    private final LongAdder replicaFailures = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, int healthCheckTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.healthy = new AtomicBoolean[replicas.size()];
+        this.healthCheckTimeoutSeconds = healthCheckTimeoutSeconds;
+        for (int i = 0; i < healthy.length; i++) {
+            healthy[i] = new AtomicBoolean(true);
+        }
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        initialize();
+    }
+
+    /**
+     * Markerar att tråden börjar hantera en request – skrivningar från och
+     * med nu gör resten av requestens läsningar till primären.
+     */
+    public static void beginRequest() {
+        WROTE.set(Boolean.FALSE);
+    }
+
+    /**
+     * Glömmer requestens skrivningar – anropas när requesten är klar.
+     */
+    public static void endRequest() {
+        WROTE.remove();
+    }
+
+    /**
+     * Kör work med alla läsningar mot primären, även i readOnly-transaktioner.
+     * Används av cachar vars laddade värde delas av alla requests. Gäller bara
+     * anslutningar som hämtas inne i work (LazyConnectionDataSourceProxy
+     * hämtar den vid första frågan).
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_ONLY.remove();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                if (WROTE.get() != null) {
+                    WROTE.set(Boolean.TRUE);
+                }
+                primaryWrites.increment();
+            }
+            return PRIMARY;
+        }
+        if (PRIMARY_ONLY.get() != null) {
+            pinnedReads.increment();
+            return PRIMARY;
+        }
+        if (Boolean.TRUE.equals(WROTE.get())) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        int replica = nextHealthyReplica();
+        if (replica < 0) {
+            fallbackReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (key instanceof Integer replica) {
+            try {
+                return replicas.get(replica).getConnection();
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (key instanceof Integer replica) {
+            try {
+                return replicas.get(replica).getConnection(username, password);
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Provar en anslutning mot varje replika och uppdaterar vilka som är uppe.
+     * Varje prov tar högst replikapoolens connectionTimeout (se
+     * ReplicaDataSourceConfig) plus healthCheckTimeoutSeconds, så en replika
+     * som är nere håller inte schemaläggarens tråd särskilt länge.
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica-health-interval-ms:5000}")
+    public void checkHealth() {
+        for (int i = 0; i < replicas.size(); i++) {
+            boolean up;
+            try (Connection connection = replicas.get(i).getConnection()) {
+                up = connection.isValid(healthCheckTimeoutSeconds);
+            } catch (SQLException e) {
+                up = false;
+            }
+            if (healthy[i].getAndSet(up) != up) {
+                logger.warn("Read replica {} is now {}", i, up ? "up" : "down");
+            }
+        }
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        long up = 0;
+        for (AtomicBoolean replicaUp : healthy) {
+            up += replicaUp.get() ? 1 : 0;
+        }
+        stats.put("replicas", (long) replicas.size());
+        stats.put("replicasUp", up);
+        stats.put("primaryWrites", primaryWrites.sum());
+        stats.put("replicaReads", replicaReads.sum());
+        stats.put("stickyReads", stickyReads.sum());
+        stats.put("pinnedReads", pinnedReads.sum());
+        stats.put("fallbackReads", fallbackReads.sum());
+        stats.put("replicaFailures", replicaFailures.sum());
+        return stats;
+    }
+
+    /**
+     * Stänger poolerna (Spring anropar close när applikationen stängs).
+     * Ett fel loggas och hindrar inte att resten stängs.
+     */
+    @Override
+    public void close() {
+        for (DataSource replica : replicas) {
+            closeQuietly(replica);
+        }
+        closeQuietly(primary);
+    }
+
+    // Nästa replika i tur som är uppe, -1 om ingen är det
+    private int nextHealthyReplica() {
+        int count = replicas.size();
+        if (count == 0) {
+            return -1;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            int candidate = (start + i) % count;
+            if (healthy[candidate].get()) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Could not close data source: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void markDown(int replica, SQLException e) {
+        replicaFailures.increment();
+        fallbackReads.increment();
+        if (healthy[replica].getAndSet(false)) {
+            logger.warn("Read replica {} failed, falling back to primary: {}", replica, e.getMessage());
+        }
+    }
+}
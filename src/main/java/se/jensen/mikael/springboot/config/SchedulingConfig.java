@@ -0,0 +1,19 @@
+package se.jensen.mikael.springboot.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Aktiverar @Scheduled, som används för att städa cachar och
+ * säkerhetsregister i minnet (t.ex. TokenRevocationStore.purge).
+ * <p>
+ * Aktiverar även @Async, så att index och filter som byggs från databasen
+ * vid start (PostSearchService, UserAvailabilityService) inte håller upp
+ * uppstarten – de körs på Springs applicationTaskExecutor.
+ */
+@Configuration
+@EnableScheduling
+@EnableAsync
+public class SchedulingConfig {
+}
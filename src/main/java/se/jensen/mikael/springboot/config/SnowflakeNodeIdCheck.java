@@ -0,0 +1,24 @@
+package se.jensen.mikael.springboot.config;
+
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.model.Snowflake;
+
+/**
+ * Stoppar uppstarten om Snowflake saknar nod-id utanför dev/test.
+ * <p>
+ * Utan SNOWFLAKE_NODE_ID får varje instans nod-id 0, och två instanser som
+ * skapar poster samma millisekund kan då dela ut samma id. Hellre ett tydligt
+ * fel vid start än krockande primärnycklar i drift.
+ */
+@Component
+public class SnowflakeNodeIdCheck {
+
+    public SnowflakeNodeIdCheck(Environment environment) {
+        if (!Snowflake.nodeIdConfigured() && !environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+            throw new IllegalStateException(
+                    "SNOWFLAKE_NODE_ID (0-15) måste sättas unikt per instans utanför profilerna dev/test");
+        }
+    }
+}
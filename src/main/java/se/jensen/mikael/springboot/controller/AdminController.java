@@ -1,12 +1,38 @@
 package se.jensen.mikael.springboot.controller;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.cache.UserCache;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.security.BoundedPasswordEncoder;
+import se.jensen.mikael.springboot.security.CachingJwtDecoder;
+import se.jensen.mikael.springboot.security.JwtKeyRing;
+import se.jensen.mikael.springboot.security.LoginThrottle;
+import se.jensen.mikael.springboot.security.RateLimiter;
+import se.jensen.mikael.springboot.security.ProfileVersionRegistry;
+import se.jensen.mikael.springboot.security.RefreshTokenStore;
+import se.jensen.mikael.springboot.security.TokenRevocationStore;
+import se.jensen.mikael.springboot.security.UserCredentialsCache;
+import se.jensen.mikael.springboot.service.UserAvailabilityService;
+import se.jensen.mikael.springboot.service.UserService;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Controller som hanterar admin-relaterade endpoints.
  * /admin (GET) → Returnerar en enkel textsträng som visar att det är en admin-sida
+ * /admin/stats (GET) → Returnerar räknare för cachar, lösenordspoolen m.m. (övervakning)
+ * /admin/users/{id}/revoke-tokens (POST) → Spärrar alla användarens tokens och sessioner
+ * /admin/keys (GET) → JWT-nycklarna och deras roller
+ * /admin/keys/rotate (POST) → Byter JWT-signeringsnyckel utan att giltiga tokens slutar fungera
  * Säkerheten hanteras via Spring Security (t.ex. SecurityConfig) för att
  * endast ge åtkomst till användare med rollen ADMIN.
  */
@@ -14,6 +40,43 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/admin") // Bas-URL för alla endpoints i denna controller
 public class AdminController {
 
+    private final FeedCache feedCache;
+    private final UserCache userCache;
+    private final UserCredentialsCache credentialsCache;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final CachingJwtDecoder jwtDecoder;
+    private final RefreshTokenStore refreshTokenStore;
+    private final TokenRevocationStore revocationStore;
+    private final ProfileVersionRegistry profileVersions;
+    private final UserService userService;
+    private final JwtKeyRing keyRing;
+    private final LoginThrottle loginThrottle;
+    private final RateLimiter rateLimiter;
+    private final UserAvailabilityService availabilityService;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRouting; // finns bara med läsreplikor
+
+    public AdminController(FeedCache feedCache, UserCache userCache, UserCredentialsCache credentialsCache,
+                           BoundedPasswordEncoder passwordEncoder, CachingJwtDecoder jwtDecoder,
+                           RefreshTokenStore refreshTokenStore, TokenRevocationStore revocationStore,
+                           ProfileVersionRegistry profileVersions, UserService userService, JwtKeyRing keyRing, LoginThrottle loginThrottle,
+                           RateLimiter rateLimiter, UserAvailabilityService availabilityService,
+                           ObjectProvider<ReplicaRoutingDataSource> replicaRouting) {
+        this.feedCache = feedCache;
+        this.userCache = userCache;
+        this.credentialsCache = credentialsCache;
+        this.passwordEncoder = passwordEncoder;
+        this.jwtDecoder = jwtDecoder;
+        this.refreshTokenStore = refreshTokenStore;
+        this.revocationStore = revocationStore;
+        this.profileVersions = profileVersions;
+        this.userService = userService;
+        this.keyRing = keyRing;
+        this.loginThrottle = loginThrottle;
+        this.rateLimiter = rateLimiter;
+        this.availabilityService = availabilityService;
+        this.replicaRouting = replicaRouting;
+    }
+
     /**
      * Endast användare med roll ADMIN ska ha tillgång (konfigureras i SecurityConfig).
      */
@@ -21,4 +84,63 @@ public class AdminController {
     public String getAdminPage() {
         return "Admin page"; // Returnerar text direkt som HTTP-response body
     }
+
+    /**
+     * Räknare för träffar, missar och evictions i applikationens cachar.
+     * User-cachen redovisar även träffkvot och genomsnittlig laddtid.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Map<String, Long>>> getStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        stats.put("feedCache", feedCache.stats());
+        stats.putAll(userCache.stats());
+        stats.put("credentialsCache", credentialsCache.stats());
+        stats.put("passwordHashing", passwordEncoder.stats());
+        stats.put("jwtCache", jwtDecoder.stats());
+        stats.put("refreshTokens", refreshTokenStore.stats());
+        stats.put("revocations", revocationStore.stats());
+        stats.put("profileVersions", profileVersions.stats());
+        stats.put("loginThrottle", loginThrottle.stats());
+        stats.put("rateLimit", rateLimiter.stats());
+        stats.put("availability", availabilityService.stats());
+        replicaRouting.ifAvailable(routing -> stats.put("replicas", routing.stats()));
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * Spärrar alla access-tokens som användaren fått hittills och avslutar
+     * alla dess refresh-sessioner. Nya inloggningar fungerar som vanligt.
+     * 404 om användaren inte finns.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/users/{id}/revoke-tokens")
+    public ResponseEntity<Void> revokeTokens(@PathVariable Long id) {
+        userService.getUser(id); // 404 om användaren inte finns
+        revocationStore.revokeAllFor(id);
+        refreshTokenStore.revokeAll(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * kid → roll (active, next, retiring) för JWT-nycklarna.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/keys")
+    public ResponseEntity<Map<String, String>> getKeys() {
+        return ResponseEntity.ok(keyRing.keys());
+    }
+
+    /**
+     * Roterar signeringsnyckeln (se JwtKeyRing.rotate). Tokens signerade
+     * med den gamla nyckeln gäller tills de går ut. 412 om next-nyckeln inte
+     * publicerats länge nog; övriga instanser tar över rotationen inom
+     * security.jwt.key-refresh-interval-ms.
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/keys/rotate")
+    public ResponseEntity<Map<String, String>> rotateKeys() {
+        keyRing.rotate();
+        return ResponseEntity.ok(keyRing.keys());
+    }
 }
@@ -1,22 +1,37 @@
 package se.jensen.mikael.springboot.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import se.jensen.mikael.springboot.dto.LoginRequestDTO;
 import se.jensen.mikael.springboot.dto.LoginResponseDTO;
+import se.jensen.mikael.springboot.dto.RefreshTokenRequestDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.exception.UserNotFoundException;
+import se.jensen.mikael.springboot.security.CustomUserDetailService;
+import se.jensen.mikael.springboot.security.LoginThrottle;
 import se.jensen.mikael.springboot.security.MyUserDetails;
+import se.jensen.mikael.springboot.security.RefreshTokenStore;
+import se.jensen.mikael.springboot.security.TokenRevocationStore;
 import se.jensen.mikael.springboot.service.TokenService;
+import se.jensen.mikael.springboot.service.UserService;
 
 /**
  * Controller som ansvarar för autentisering (inloggning)
  * Tar emot användarnamn och lösen och
  * skapar och returnerar en JWT-token om inloggningen lyckas.
+ * /request-token/refresh byter en refresh-token mot en ny JWT utan lösenord.
+ * /request-token/logout spärrar den JWT som skickas med (och ev. refresh-token).
  */
 @RestController
 @RequestMapping("/request-token")
@@ -24,29 +39,114 @@ public class AuthController {
 
     private final AuthenticationManager authenticationManager;
     private final TokenService tokenService;
+    private final RefreshTokenStore refreshTokenStore;
+    private final CustomUserDetailService userDetailService;
+    private final UserService userService;
+    private final TokenRevocationStore revocationStore;
+    private final LoginThrottle loginThrottle;
 
     public AuthController(AuthenticationManager am,
-                          TokenService ts) {
+                          TokenService ts,
+                          RefreshTokenStore refreshTokenStore,
+                          CustomUserDetailService userDetailService,
+                          UserService userService,
+                          TokenRevocationStore revocationStore,
+                          LoginThrottle loginThrottle) {
         this.authenticationManager = am;
         this.tokenService = ts;
+        this.refreshTokenStore = refreshTokenStore;
+        this.userDetailService = userDetailService;
+        this.userService = userService;
+        this.revocationStore = revocationStore;
+        this.loginThrottle = loginThrottle;
     }
 
+    /**
+     * Loggar in. För många misslyckade försök för användarnamnet eller
+     * IP:t ger 429 innan lösenordet ens kontrolleras (se LoginThrottle).
+     */
     @PostMapping
     public ResponseEntity<LoginResponseDTO> token(
-            @RequestBody LoginRequestDTO loginRequest) {
-
-        Authentication auth = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.username(),
-                        loginRequest.password()
-                )
-        );
+            @RequestBody LoginRequestDTO loginRequest,
+            HttpServletRequest request) {
+
+        String ip = request.getRemoteAddr();
+        loginThrottle.check(loginRequest.username(), ip);
+
+        Authentication auth;
+        try {
+            auth = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(
+                            loginRequest.username(),
+                            loginRequest.password()
+                    )
+            );
+        } catch (BadCredentialsException e) {
+            loginThrottle.recordFailure(loginRequest.username(), ip);
+            throw e;
+        }
         MyUserDetails details = (MyUserDetails) auth.getPrincipal();
 
 
-        String token = tokenService.generateToken(auth);
+        String token = generateToken(auth, details);
+        String refreshToken = refreshTokenStore.issue(details.getUserId());
 
-        return ResponseEntity.ok(new LoginResponseDTO(token, details.getDomainUser().getId()));
+        return ResponseEntity.ok(new LoginResponseDTO(token, details.getUserId(), refreshToken));
     }
-}
 
+    /**
+     * Byter en refresh-token mot en ny JWT och en ny refresh-token.
+     * Ingen BCrypt – användarens aktuella roll läses (cachad) så att
+     * en ändrad roll följer med i nya tokenen. Användaren slås upp på id:t
+     * i sessionen; finns den inte längre är tokenen ogiltig (401).
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<LoginResponseDTO> refresh(
+            @Valid @RequestBody RefreshTokenRequestDTO request) {
+
+        RefreshTokenStore.Rotation rotation = refreshTokenStore.rotate(request.refreshToken());
+
+        UserResponseDTO user;
+        try {
+            user = userService.getUser(rotation.userId());
+        } catch (UserNotFoundException e) {
+            refreshTokenStore.revokeAll(rotation.userId());
+            throw new BadCredentialsException("Ogiltig refresh-token");
+        }
+        MyUserDetails details = (MyUserDetails) userDetailService.loadUserByUsername(user.username());
+        if (!details.getUserId().equals(rotation.userId())) {
+            // Namnet hann byta ägare mellan uppslagningarna
+            throw new BadCredentialsException("Ogiltig refresh-token");
+        }
+        Authentication auth = UsernamePasswordAuthenticationToken.authenticated(
+                details, null, details.getAuthorities());
+
+        String token = generateToken(auth, details);
+
+        return ResponseEntity.ok(new LoginResponseDTO(token, details.getUserId(), rotation.refreshToken()));
+    }
+
+    /**
+     * Loggar ut: JWT:n i Authorization-headern spärras tills den går ut.
+     * Skickas en refresh-token med avslutas även den sessionen.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @AuthenticationPrincipal Jwt jwt,
+            @RequestBody(required = false) RefreshTokenRequestDTO request) {
+
+        if (jwt.getId() != null && jwt.getExpiresAt() != null) {
+            revocationStore.revoke(jwt.getId(), jwt.getExpiresAt());
+        }
+        if (request != null) {
+            refreshTokenStore.revoke(request.refreshToken());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    // Profilen till tokenens claims läses via UserCache (oftast ingen databasfråga)
+    private String generateToken(Authentication auth, MyUserDetails details) {
+        UserResponseDTO profile = userService.getUser(details.getUserId());
+        return tokenService.generateToken(auth, profile, details.getProfileVersion());
+    }
+}
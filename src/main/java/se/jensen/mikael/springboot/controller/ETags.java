@@ -0,0 +1,40 @@
+package se.jensen.mikael.springboot.controller;
+
+/**
+ * ETag/If-Match för PATCH-endpoints. ETag:en är radens version
+ * (@Version), t.ex. "3".
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * Versionen i If-Match, eller null om headern saknas eller är "*".
+     * Kastar IllegalArgumentException (→ 400) om den inte är en version.
+     */
+    static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Ogiltig If-Match: " + ifMatch);
+        }
+    }
+
+    /**
+     * ETag för en version.
+     */
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+}
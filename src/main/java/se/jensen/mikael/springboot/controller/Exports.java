@@ -0,0 +1,43 @@
+package se.jensen.mikael.springboot.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+
+/**
+ * NDJSON-exporterna (GET /posts/export, GET /users/export).
+ * <p>
+ * Svaret strömmas asynkront och kan ta lång tid på en hel tabell. Bara
+ * exporterna får den långa timeouten – övriga asynkrona requests behåller
+ * standardtimeouten, så en hängd request inte håller en tråd i 30 minuter.
+ */
+final class Exports {
+
+    /**
+     * Hur länge en export får pågå innan requesten avbryts.
+     */
+    static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    private Exports() {
+    }
+
+    /**
+     * 200 med NDJSON-kroppen, och TIMEOUT för just den här requesten.
+     */
+    static ResponseEntity<StreamingResponseBody> ndjson(HttpServletRequest request, StreamingResponseBody body) {
+        // Satt av RequestMappingHandlerAdapter innan handlern anropas; används
+        // när StreamingResponseBody startar den asynkrona bearbetningen
+        AsyncWebRequest asyncRequest = WebAsyncUtils.getAsyncManager(request).getAsyncWebRequest();
+        if (asyncRequest != null) {
+            asyncRequest.setTimeout(TIMEOUT.toMillis());
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
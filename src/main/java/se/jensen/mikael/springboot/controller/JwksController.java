@@ -0,0 +1,34 @@
+package se.jensen.mikael.springboot.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import se.jensen.mikael.springboot.security.JwtKeyRing;
+
+/**
+ * Publicerar de publika JWT-nycklarna (JWKS), så att andra tjänster kan
+ * verifiera våra tokens lokalt. Öppen utan inloggning (se SecurityConfig).
+ * - /.well-known/jwks.json (GET) → Nyckelringens nycklar, utan privata delar
+ */
+@RestController
+public class JwksController {
+
+    private final JwtKeyRing keyRing;
+
+    public JwksController(JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+    }
+
+    /**
+     * Dokumentet är färdigserialiserat i ringen. Får cachas i
+     * JwtKeyRing.JWKS_MAX_AGE – nästa nyckel publiceras innan den används.
+     */
+    @GetMapping(value = "/.well-known/jwks.json", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> jwks() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(JwtKeyRing.JWKS_MAX_AGE).cachePublic())
+                .body(keyRing.publicJwks());
+    }
+}
@@ -1,24 +1,32 @@
 package se.jensen.mikael.springboot.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import se.jensen.mikael.springboot.dto.PostBatchResultDTO;
+import se.jensen.mikael.springboot.dto.PostPageResponseDTO;
 import se.jensen.mikael.springboot.dto.PostRequestDTO;
 import se.jensen.mikael.springboot.dto.PostResponseDTO;
-import se.jensen.mikael.springboot.mapper.PostMapper;
-import se.jensen.mikael.springboot.mapper.UserMapper;
-import se.jensen.mikael.springboot.model.Post;
-import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.service.ExportService;
+import se.jensen.mikael.springboot.service.PostBatchService;
+import se.jensen.mikael.springboot.service.PostSearchService;
+import se.jensen.mikael.springboot.service.PostService;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Hanterar alla HTTP-anrop relaterade till Post
- * Använder PostMapper för att mappa mellan Post och DTO
+ * Logiken (och mappningen till DTO) ligger i services
  * Returnerar ResponseEntity med korrekt HTTP-status
  */
 @RestController
@@ -26,17 +34,19 @@ import java.util.Optional;
 public class PostController {
 
     private static final Logger log = LoggerFactory.getLogger(PostController.class);
-    //ändrat till repo istället för new list
-    private final PostRepository postRepository;
 
-    private final PostMapper postMapper; // Mapper injiceras via DI
-    private final UserMapper userMapper;
-
-    // Konstruktor som tar emot mappern. Spring sköter instansiering automatiskt
-    public PostController(PostMapper postMapper, PostRepository postRepository, UserMapper userMapper) {
-        this.postMapper = postMapper;
-        this.postRepository = postRepository;
-        this.userMapper = userMapper;
+    private final PostService postService;
+    private final ExportService exportService;
+    private final PostBatchService postBatchService;
+    private final PostSearchService postSearchService;
+
+    // Konstruktor med services. Spring sköter instansiering automatiskt
+    public PostController(PostService postService, ExportService exportService, PostBatchService postBatchService,
+                          PostSearchService postSearchService) {
+        this.postService = postService;
+        this.exportService = exportService;
+        this.postBatchService = postBatchService;
+        this.postSearchService = postSearchService;
     }
 
     // -------------------------------------------------------------------
@@ -48,38 +58,79 @@ public class PostController {
     ) {
         log.info("Skapar nytt inlägg med text: {}", dto.text()); // info-logg
 
-        // Skapa nytt Post-objekt via mapper
-        Post post = postMapper.toPost(dto);
-        // ändrar så den går mot postDTO
-        Post savedPost = postRepository.save(post); // Sparar till databasen
-
-        // Skapa response-DTO också via mapper
-        PostResponseDTO response = postMapper.toResponseDTO(savedPost);
+        // Sparar via service (som även invaliderar flödescachen)
+        PostResponseDTO response = postService.createPost(dto);
 
-        log.debug("Post skapad med id {}", post.getId()); // debug-logg
+        log.debug("Post skapad med id {}", response.id()); // debug-logg
 
         return ResponseEntity.status(HttpStatus.CREATED).body(response); // 201 Created
     }
 
+    // -------------------------------------------------------------------
+    // POST – skapa många poster på en gång (JSON-array eller NDJSON)
+    // Varje rad anger sin userId, så bara ADMIN (t.ex. ett importkonto)
+    // får skapa poster åt andra.
+    // -------------------------------------------------------------------
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<PostBatchResultDTO>> createPostsBatch(InputStream body) {
+        // Body läses som ström – hela importen behöver inte få plats i minnet
+        List<PostBatchResultDTO> results = postBatchService.createPosts(body);
+
+        return ResponseEntity.ok(results); // 200 OK, status per post i body
+    }
+
     // -------------------------------------------------------------------
     // GET – hämta alla inlägg
     // -------------------------------------------------------------------
     @GetMapping
     public ResponseEntity<List<PostResponseDTO>> getAllPosts() {
-        List<Post> posts = postRepository.findAllByOrderByCreatedAtDesc();
-        // Konvertera alla Post → PostResponseDTO
-        List<PostResponseDTO> result = posts.stream()
-                .map(p -> new PostResponseDTO(
-                        p.getId(), // Skapar ett id baserat på index i listan // tog bort den så att den går direkt på ID
-                        p.getText(),
-                        p.getCreatedAt(),
-                        userMapper.toDto(p.getUser())
-                ))
-                .toList();
+        // Hämtas som projektion direkt till DTO (se PostService)
+        List<PostResponseDTO> result = postService.getAllPosts();
 
         return ResponseEntity.ok(result); // 200 OK
     }
 
+    // -------------------------------------------------------------------
+    // GET – hämta en sida i flödet (?limit=20&before=<cursor>)
+    // -------------------------------------------------------------------
+    @GetMapping(params = "limit")
+    public ResponseEntity<PostPageResponseDTO> getPostPage(
+            @RequestParam int limit,
+            @RequestParam(required = false) String before
+    ) {
+        PostPageResponseDTO page = postService.getFeedPage(limit, before);
+
+        return ResponseEntity.ok(page); // 200 OK
+    }
+
+    // -------------------------------------------------------------------
+    // GET – fritextsök i inlägg (?q=ord "en fras"&limit=20), nyast först
+    // -------------------------------------------------------------------
+    @GetMapping("/search")
+    public ResponseEntity<List<PostResponseDTO>> searchPosts(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit
+    ) {
+        // Sökindexet i minnet ger träffarna, posterna läses med en query (högst limit)
+        List<PostResponseDTO> result = postSearchService.search(q, limit);
+
+        return ResponseEntity.ok(result); // 200 OK
+    }
+
+    // -------------------------------------------------------------------
+    // GET – exportera alla inlägg som NDJSON (en JSON-rad per post)
+    // -------------------------------------------------------------------
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportPosts(HttpServletRequest request) {
+        // Skrivs direkt till responsen medan raderna läses från databasen
+        StreamingResponseBody body = exportService::exportPosts;
+
+        return Exports.ndjson(request, body); // 200 OK
+    }
+
     // -------------------------------------------------------------------
     // GET – hämta post på index (id)
     // -------------------------------------------------------------------
@@ -87,59 +138,58 @@ public class PostController {
     public ResponseEntity<PostResponseDTO> getPost(@PathVariable Long id) {
         log.info("Hämtar post med id {}", id);
         //använder optional för att säkert kolla om post finns för att undvika nullpointerexception
-        Optional<Post> postOptional = postRepository.findById(id);
+        Optional<PostResponseDTO> postOptional = postService.getPost(id);
 
         if (postOptional.isEmpty()) {
             log.warn("Post med id {} hittades inte", id);
             return ResponseEntity.notFound().build(); // 404 Not Found
         }
 
-        Post post = postOptional.get();
-        PostResponseDTO response = postMapper.toResponseDTO(post);
+        PostResponseDTO response = postOptional.get();
         log.debug("Returnerar post: {}", response);
 
         return ResponseEntity.ok(response); // 200 OK
     }
 
     // -------------------------------------------------------------------
-    // PUT – uppdatera en Post
+    // PUT – uppdatera en Post (bara författaren eller en admin)
     // -------------------------------------------------------------------
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isPostAuthor(authentication, #id)")
     @PutMapping("/{id}")
     public ResponseEntity<PostResponseDTO> updatePost(
             @PathVariable Long id,
             @Valid @RequestBody PostRequestDTO dto
     ) {
-        //använder optional för att säkert kolla om post finns för att undvika nullpointerexception
-        Optional<Post> postOptional = postRepository.findById(id);
-
-        if (postOptional.isEmpty()) {
-            return ResponseEntity.notFound().build(); // 404 Not Found
-        }
-
-
-        Post post = postOptional.get();
+        // Service kastar NoSuchElementException (→ 404) om posten inte finns
+        PostResponseDTO response = postService.updatePost(id, dto);
 
-        // Uppdatera text (validering sker via DTO)
-        post.setText(dto.text());
+        return ResponseEntity.ok(response); // 200 OK
+    }
 
-        // createdAt ändras inte
-        Post updatedPost = postRepository.save(post); // Spara uppdateringen
-        PostResponseDTO response = postMapper.toResponseDTO(updatedPost);
+    // -------------------------------------------------------------------
+    // PATCH – ändra texten i en Post (If-Match: "<version>" valfritt)
+    // -------------------------------------------------------------------
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isPostAuthor(authentication, #id)")
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchPost(
+            @PathVariable Long id,
+            @Valid @RequestBody PostRequestDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
+        // Ett UPDATE utan SELECT före; 404 om posten saknas, 412 om versionen inte stämmer
+        long version = postService.patchPost(id, dto, ETags.parseIfMatch(ifMatch));
 
-        return ResponseEntity.ok(response); // 200 OK
+        return ResponseEntity.noContent().eTag(ETags.of(version)).build(); // 204 No Content
     }
 
     // -------------------------------------------------------------------
-    // DELETE – ta bort post
+    // DELETE – ta bort post (bara författaren eller en admin)
     // -------------------------------------------------------------------
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isPostAuthor(authentication, #id)")
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePost(@PathVariable Long id) {
 
-        if (!postRepository.existsById(id)) {
-            return ResponseEntity.notFound().build(); // 404 Not Found
-        }
-
-        postRepository.deleteById(id); // Ta bort post med id x
+        postService.deletePost(id); // Ta bort post med id x (404 om den inte finns)
 
         return ResponseEntity.noContent().build(); // 204 No Content
     }
@@ -1,13 +1,21 @@
 package se.jensen.mikael.springboot.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import se.jensen.mikael.springboot.dto.*;
+import se.jensen.mikael.springboot.security.TokenClaims;
+import se.jensen.mikael.springboot.service.ExportService;
 import se.jensen.mikael.springboot.service.PostService;
+import se.jensen.mikael.springboot.service.UserAvailabilityService;
 import se.jensen.mikael.springboot.service.UserService;
 
 import java.util.List;
@@ -23,11 +31,16 @@ public class UserController {
 
     private final UserService userService; // Service för User-relaterad logik
     private final PostService postService; // Service för Post-relaterad logik
+    private final ExportService exportService; // Service för NDJSON-export
+    private final UserAvailabilityService availabilityService; // Service för username/email-kontroll
 
     // Konstruktor – dependency injection av services
-    public UserController(UserService userService, PostService postService) {
+    public UserController(UserService userService, PostService postService, ExportService exportService,
+                          UserAvailabilityService availabilityService) {
         this.userService = userService;
         this.postService = postService;
+        this.exportService = exportService;
+        this.availabilityService = availabilityService;
     }
 
     // -----------------------------------------------------------
@@ -45,7 +58,9 @@ public class UserController {
 
     /**
      * Skapar en post för en specifik användare
+     * Bara användaren själv (eller ADMIN) får posta i sitt namn
      */
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isSelf(authentication, #userId)")
     @PostMapping("/{userId}/posts")
     public ResponseEntity<PostResponseDTO> createPostUser(
             @PathVariable Long userId,
@@ -68,6 +83,51 @@ public class UserController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Hämtar en sida användare (?limit=50&sort=username&after=<cursor>)
+     * Filter: ?username= och ?displayName= matchar början av värdet
+     * ?fields=slim utelämnar bio och profileImagePath
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(params = "limit")
+    public ResponseEntity<UserPageResponseDTO<?>> getUserPage(
+            @RequestParam int limit,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String displayName,
+            @RequestParam(required = false) String fields
+    ) {
+        UserPageResponseDTO<?> page = userService.getUserPage(limit, sort, after, username, displayName, fields);
+
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Exporterar alla användare som NDJSON (en JSON-rad per user)
+     * Strömmas direkt från databasen, så hela listan byggs aldrig i minnet
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers(HttpServletRequest request) {
+        StreamingResponseBody body = exportService::exportUsers;
+
+        return Exports.ndjson(request, body);
+    }
+
+    /**
+     * Är username och/eller email lediga? Kräver ingen inloggning (används
+     * av registreringsformuläret). Ledigt här garanterar inte att POST /users
+     * lyckas – den kan ändå ge 409 om någon hinner före.
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityResponseDTO> checkAvailability(
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String email
+    ) {
+        return ResponseEntity.ok(availabilityService.check(username, email));
+    }
+
     // -----------------------------------------------------------
     // READ ONE
     // -----------------------------------------------------------
@@ -83,11 +143,16 @@ public class UserController {
     }
 
     /**
-     * Hämtar en användare tillsammans med alla dess poster
+     * Hämtar en användare tillsammans med en sida av dess poster (nyast först).
+     * Nästa sida hämtas med ?before=<nextCursor>
      */
     @GetMapping("/{id}/with-posts")
-    public ResponseEntity<UserWithPostsResponseDTO> getUserWithPosts(@PathVariable Long id) {
-        UserWithPostsResponseDTO response = userService.getUserWithPosts(id);
+    public ResponseEntity<UserWithPostsResponseDTO> getUserWithPosts(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String before
+    ) {
+        UserWithPostsResponseDTO response = userService.getUserWithPosts(id, limit, before);
         return ResponseEntity.ok(response);
     }
 
@@ -98,11 +163,17 @@ public class UserController {
     /**
      * Hämtar info om inloggad användare
      * Endast USER eller ADMIN kan nå denna endpoint
-     * Hämtar användarnamn från Authentication och returnerar UserResponseDTO
+     * Profilen läses ur JWT:ns claims; äldre tokens utan claims slås upp via användarnamn
      */
     @PreAuthorize("hasRole('USER')")
     @GetMapping("/me")
     public ResponseEntity<UserResponseDTO> getMe(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwtAuth) {
+            UserResponseDTO fromToken = TokenClaims.toUserResponse(jwtAuth.getToken());
+            if (fromToken != null) {
+                return ResponseEntity.ok(fromToken);
+            }
+        }
         String username = authentication.getName();
         UserResponseDTO userResponseDTO = userService.getUserByUsername(username);
 
@@ -116,7 +187,9 @@ public class UserController {
     /**
      * Uppdaterar en användare
      * Tar emot UserRequestDTO via @RequestBody
+     * Bara användaren själv (eller ADMIN) får uppdatera
      */
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isSelf(authentication, #id)")
     @PutMapping("/{id}")
     public ResponseEntity<UserResponseDTO> updateUser(
             @PathVariable Long id,
@@ -127,10 +200,34 @@ public class UserController {
         return ResponseEntity.ok(response);
     }
 
+    // -----------------------------------------------------------
+    // PATCH
+    // -----------------------------------------------------------
+
+    /**
+     * Ändrar bara fälten som skickas med. Lösenordet hashas bara om ett
+     * nytt skickas. If-Match: "<version>" ger 412 om usern ändrats sedan dess.
+     * Svarar 204 med den nya versionen som ETag.
+     * Bara användaren själv (eller ADMIN) får uppdatera
+     */
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isSelf(authentication, #id)")
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patchUser(
+            @PathVariable Long id,
+            @RequestBody UserPatchDTO dto,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+
+        long version = userService.patchUser(id, dto, ETags.parseIfMatch(ifMatch));
+
+        return ResponseEntity.noContent().eTag(ETags.of(version)).build();
+    }
+
     // -----------------------------------------------------------
     // DELETE
     // -----------------------------------------------------------
 
+    // Bara användaren själv (eller ADMIN) får ta bort kontot
+    @PreAuthorize("hasRole('ADMIN') or @ownership.isSelf(authentication, #id)")
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
 
@@ -0,0 +1,11 @@
+package se.jensen.mikael.springboot.dto;
+
+/**
+ * Svar från GET /users/availability.
+ * true = ledigt, false = upptaget, null = inte efterfrågat.
+ */
+public record AvailabilityResponseDTO(
+        Boolean usernameAvailable,
+        Boolean emailAvailable
+) {
+}
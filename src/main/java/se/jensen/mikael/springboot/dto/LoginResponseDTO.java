@@ -2,7 +2,8 @@ package se.jensen.mikael.springboot.dto;
 
 /**
  * DTO som skickas tillbaka vid lyckad inloggning.
- * Innehåller JWT-token och användarens ID.
+ * Innehåller JWT-token, användarens ID och en refresh-token som
+ * kan bytas mot en ny JWT via /request-token/refresh (en gång).
  */
-public record LoginResponseDTO(String token, Long userId) {
+public record LoginResponseDTO(String token, Long userId, String refreshToken) {
 }
@@ -0,0 +1,20 @@
+package se.jensen.mikael.springboot.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * En post i en bulk-import (POST /posts/batch).
+ * Samma regler för texten som PostRequestDTO, plus vilken user posten tillhör.
+ */
+public record PostBatchItemDTO(
+
+        @NotNull(message = "userId får inte vara tomt.")
+        Long userId,                                           // Användaren som skrivit posten
+
+        @NotBlank(message = "Text får inte vara tom.")
+        @Size(min = 3, max = 200, message = "Text måste vara mellan 3 och 200 tecken.")
+        String text                                            // Innehållet i posten
+) {
+}
@@ -0,0 +1,21 @@
+package se.jensen.mikael.springboot.dto;
+
+/**
+ * Resultat för en post i en bulk-import.
+ * index är positionen i inskickad array/NDJSON-ström (0-baserad).
+ */
+public record PostBatchResultDTO(
+        int index,          // Position i requesten
+        String status,      // CREATED eller REJECTED
+        Long id,            // Id för skapad post (null om REJECTED)
+        String error        // Felmeddelande (null om CREATED)
+) {
+
+    public static PostBatchResultDTO created(int index, Long id) {
+        return new PostBatchResultDTO(index, "CREATED", id, null);
+    }
+
+    public static PostBatchResultDTO rejected(int index, String error) {
+        return new PostBatchResultDTO(index, "REJECTED", null, error);
+    }
+}
@@ -0,0 +1,53 @@
+package se.jensen.mikael.springboot.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Cursor för keyset-paginering av poster.
+ * Pekar på sista posten i föregående sida (createdAt + id) och skickas
+ * till klienten som en opak base64url-sträng, så klienten behöver inte
+ * veta hur den är uppbyggd.
+ */
+public record PostCursor(Instant createdAt, Long id) {
+
+    /**
+     * Skapar en cursor som pekar på given post.
+     */
+    public static PostCursor of(PostResponseDTO post) {
+        return new PostCursor(post.createdAt(), post.id());
+    }
+
+    /**
+     * Kodar cursorn till en sträng som kan skickas i ?before=
+     */
+    public String encode() {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Avkodar en cursor från klienten.
+     * Kastar IllegalArgumentException (→ 400) om strängen inte är en giltig cursor.
+     */
+    public static PostCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+            }
+            Instant createdAt = Instant.ofEpochSecond(
+                    Long.parseLong(parts[0]),
+                    Long.parseLong(parts[1])
+            );
+            return new PostCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package se.jensen.mikael.springboot.dto;
+
+import java.util.List;
+
+/**
+ * DTO för en sida i flödet (keyset-paginering).
+ * nextCursor skickas i ?before= för att hämta nästa sida,
+ * och är null när det inte finns fler poster.
+ */
+public record PostPageResponseDTO(
+        List<PostResponseDTO> posts, // Posterna på denna sida, nyast först
+        String nextCursor            // Opak cursor till nästa sida (kan vara null)
+) {
+}
@@ -0,0 +1,23 @@
+package se.jensen.mikael.springboot.dto;
+
+import java.time.Instant;
+
+/**
+ * Platt projektion av en post och dess författare.
+ * Byggs direkt från resultatet av en JPQL-query ("SELECT new ...") så att
+ * inga Post/User-entiteter behöver skapas på läsvägar.
+ * Innehåller bara de kolumner som PostResponseDTO behöver – inte lösenordet.
+ */
+public record PostRow(
+        Long id,                  // Postens id
+        String text,              // Textinnehållet
+        Instant createdAt,        // När posten skapades
+        Long userId,              // Författarens id (null om posten saknar användare)
+        String username,
+        String email,
+        String role,
+        String displayName,
+        String bio,
+        String profileImagePath
+) {
+}
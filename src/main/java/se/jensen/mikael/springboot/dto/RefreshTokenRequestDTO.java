@@ -0,0 +1,10 @@
+package se.jensen.mikael.springboot.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Används för att ta emot en refresh-token från klienten.
+ * Refresh-tokenen kan bara användas en gång – svaret innehåller en ny.
+ */
+public record RefreshTokenRequestDTO(@NotBlank String refreshToken) {
+}
@@ -0,0 +1,41 @@
+package se.jensen.mikael.springboot.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor för keyset-paginering av användare.
+ * Pekar på sista användaren i föregående sida: sorteringsnyckeln (sort),
+ * värdet i den kolumnen (value, null när man sorterar på id) och id som
+ * skiljer på lika värden. Skickas till klienten som en opak base64url-sträng.
+ */
+public record UserCursor(String sort, String value, Long id) {
+
+    /**
+     * Kodar cursorn till en sträng som kan skickas i ?after=
+     */
+    public String encode() {
+        // value sist – det är det enda fältet som kan innehålla ':'
+        String raw = sort + ":" + id + ":" + (value == null ? "" : value);
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Avkodar en cursor från klienten.
+     * Kastar IllegalArgumentException (→ 400) om strängen inte är en giltig cursor.
+     */
+    public static UserCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 3);
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+            }
+            return new UserCursor(parts[0], parts[2], Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Ogiltig cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package se.jensen.mikael.springboot.dto;
+
+import java.util.List;
+
+/**
+ * DTO för en sida i användarlistan (keyset-paginering).
+ * users är UserResponseDTO eller UserSummaryDTO beroende på ?fields=.
+ * nextCursor skickas i ?after= för att hämta nästa sida,
+ * och är null när det inte finns fler användare.
+ */
+public record UserPageResponseDTO<T>(
+        List<T> users,     // Användarna på denna sida
+        String nextCursor  // Opak cursor till nästa sida (kan vara null)
+) {
+}
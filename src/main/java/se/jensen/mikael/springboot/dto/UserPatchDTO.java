@@ -0,0 +1,17 @@
+package se.jensen.mikael.springboot.dto;
+
+/**
+ * DTO för PATCH /users/{id} – bara fälten som ska ändras skickas med.
+ * Fält som är null lämnas orörda. Skickade fält får inte vara tomma,
+ * utom profileImagePath där tom sträng tar bort profilbilden.
+ * Rollen ändras inte här – PATCH får användas på det egna kontot.
+ */
+public record UserPatchDTO(
+        String username,             // Nytt användarnamn
+        String email,                // Ny e-postadress
+        String password,             // Nytt lösenord (klartext) – hashas bara om det skickas
+        String displayName,          // Nytt visningsnamn
+        String bio,                  // Ny biografi
+        String profileImagePath      // Ny profilbild, "" tar bort den
+) {
+}
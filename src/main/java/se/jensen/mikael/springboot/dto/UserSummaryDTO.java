@@ -0,0 +1,14 @@
+package se.jensen.mikael.springboot.dto;
+
+/**
+ * Slim variant av UserResponseDTO för listningar (?fields=slim).
+ * Utan bio och profileImagePath, som är de största fälten.
+ */
+public record UserSummaryDTO(
+        Long id,             // Unikt ID för användaren
+        String username,     // Användarnamn
+        String email,        // E-postadress
+        String role,         // Roll: t.ex. USER eller ADMIN
+        String displayName   // Visningsnamn
+) {
+}
@@ -3,10 +3,18 @@ package se.jensen.mikael.springboot.dto;
 import java.util.List;
 
 /**
- * DTO som används när vi vill skicka en user tillsammans med dess posts
+ * DTO som används när vi vill skicka en user tillsammans med dess posts.
+ * posts är en sida (nyast först); nextCursor skickas i ?before= för att
+ * hämta nästa sida och är null när det inte finns fler poster.
  */
 public record UserWithPostsResponseDTO(
         UserResponseDTO user,        // Användarinfo
-        List<PostResponseDTO> posts  // Lista med användarens posts
+        List<PostResponseDTO> posts, // En sida med användarens posts
+        String nextCursor            // Opak cursor till nästa sida (kan vara null)
 ) {
+
+    // En komplett lista utan fler sidor
+    public UserWithPostsResponseDTO(UserResponseDTO user, List<PostResponseDTO> posts) {
+        this(user, posts, null);
+    }
 }
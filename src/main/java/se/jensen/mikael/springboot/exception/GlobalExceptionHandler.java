@@ -1,5 +1,6 @@
 package se.jensen.mikael.springboot.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -82,4 +83,36 @@ public class GlobalExceptionHandler {
         // Returnerar HTTP 409 Conflict + meddelande
         return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
     }
+
+    // -----------------------------------------------------------
+    // 412 – RADEN HAR ÄNDRATS (If-Match)
+    // -----------------------------------------------------------
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<String> handlePreconditionFailed(PreconditionFailedException ex) {
+        // Klienten skickade en gammal version – läs om och försök igen
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage());
+    }
+
+    // -----------------------------------------------------------
+    // 429 – FÖR MÅNGA FÖRSÖK
+    // -----------------------------------------------------------
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequests(TooManyRequestsException ex) {
+        // T.ex. för många misslyckade inloggningar – avvisas innan BCrypt körs
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
+
+    // -----------------------------------------------------------
+    // 503 – SERVERN ÄR FULL
+    // -----------------------------------------------------------
+    @ExceptionHandler(ServerBusyException.class)
+    public ResponseEntity<String> handleServerBusy(ServerBusyException ex) {
+        // T.ex. poolen för lösenordshashning är full – avvisa direkt
+        // och tala om för klienten när den kan försöka igen
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(ex.getMessage());
+    }
 }
@@ -0,0 +1,13 @@
+package se.jensen.mikael.springboot.exception;
+
+/**
+ * Exception som kastas när If-Match inte stämmer med radens aktuella
+ * version – någon annan har ändrat den sedan klienten läste den.
+ * Mappas till 412 Precondition Failed.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message); // skickar meddelandet till RuntimeException
+    }
+}
@@ -0,0 +1,21 @@
+package se.jensen.mikael.springboot.exception;
+
+/**
+ * Exception som kastas när en begränsad resurs (t.ex. poolen för
+ * lösenordshashning) är full. Mappas till 503 Service Unavailable
+ * med Retry-After, så klienten vet när den kan försöka igen.
+ */
+public class ServerBusyException extends RuntimeException {
+
+    // Antal sekunder klienten bör vänta innan nytt försök
+    private final long retryAfterSeconds;
+
+    public ServerBusyException(String message, long retryAfterSeconds) {
+        super(message); // skickar meddelandet till RuntimeException
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,21 @@
+package se.jensen.mikael.springboot.exception;
+
+/**
+ * Exception som kastas när en klient gjort för många försök, t.ex.
+ * misslyckade inloggningar. Mappas till 429 Too Many Requests
+ * med Retry-After, så klienten vet när den kan försöka igen.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    // Antal sekunder klienten bör vänta innan nytt försök
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message); // skickar meddelandet till RuntimeException
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
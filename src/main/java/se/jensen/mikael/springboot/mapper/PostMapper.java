@@ -3,6 +3,8 @@ package se.jensen.mikael.springboot.mapper;
 import org.springframework.stereotype.Component;
 import se.jensen.mikael.springboot.dto.PostRequestDTO;
 import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
 import se.jensen.mikael.springboot.model.Post;
 
 import java.time.Instant;
@@ -24,7 +26,6 @@ public class PostMapper {
      */
     public Post toPost(PostRequestDTO dto) {
         Post post = new Post();
-        post.setId(0L); // Id används temporärt (kan bytas mot auto-genererad id i DB)
         post.setText(dto.text()); // Sätter text från DTO
         post.setCreatedAt(Instant.now()); // Sätter aktuell tid
         return post;
@@ -39,8 +40,33 @@ public class PostMapper {
                 post.getId(),
                 post.getText(),
                 post.getCreatedAt(),
-                userMapper.toDto(post.getUser())
+                // Poster utan användare får user = null istället för NullPointerException
+                post.getUser() == null ? null : userMapper.toDto(post.getUser())
         );
 
     }
+
+    /**
+     * Konverterar en PostRow (projektion från databasen) till PostResponseDTO.
+     * Används på läsvägar där vi inte laddar några entiteter.
+     */
+    public PostResponseDTO toResponseDTO(PostRow row) {
+        // Poster utan användare får user = null istället för NullPointerException
+        UserResponseDTO user = row.userId() == null ? null : new UserResponseDTO(
+                row.userId(),
+                row.username(),
+                row.email(),
+                row.role(),
+                row.displayName(),
+                row.bio(),
+                row.profileImagePath()
+        );
+
+        return new PostResponseDTO(
+                row.id(),
+                row.text(),
+                row.createdAt(),
+                user
+        );
+    }
 }
@@ -2,59 +2,37 @@ package se.jensen.mikael.springboot.mapper;
 
 import org.springframework.stereotype.Component;
 import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
 import se.jensen.mikael.springboot.dto.UserResponseDTO;
 import se.jensen.mikael.springboot.dto.UserWithPostsResponseDTO;
-import se.jensen.mikael.springboot.model.User;
 
 import java.util.List;
 
 /**
- * Mapper som omvandlar en User-entity med alla dess posts till en
+ * Mapper som omvandlar en användare med en sida av dess posts till en
  * UserWithPostsResponseDTO för API-respons.
- * Använder UserMapper för att mappa varje User till UserResponseDTO.
+ * Både användaren och posterna kommer som projektioner från databasen.
  */
 @Component
 public class UserWithPostsMapper {
-    //inject UserMapper
-    private final UserMapper userMapper;
-
     /**
-     * Konstruktor med dependency injection av UserMapper.
+     * Omvandlar en användare och en sida av dess posts (PostRow) till UserWithPostsResponseDTO.
      */
-    public UserWithPostsMapper(UserMapper userMapper) {
-        this.userMapper = userMapper;
-    }
-
-    /**
-     * Omvandlar en User med dess posts till UserWithPostsResponseDTO.
-     */
-    public UserWithPostsResponseDTO toDto(User user) {
-
+    public UserWithPostsResponseDTO toDto(UserResponseDTO user, List<PostRow> rows, String nextCursor) {
 
         //Mappa posts till PostResponceDTO
-        //PostResponseDTO behöver userMapper
-        List<PostResponseDTO> posts = user.getPosts()
+        //Alla posts har samma författare, så vi återanvänder user-DTO:n
+        List<PostResponseDTO> posts = rows
                 .stream()
                 .map(p -> new PostResponseDTO(
-                        p.getId(),
-                        p.getText(),
-                        p.getCreatedAt(),
-                        userMapper.toDto(p.getUser()) // Mappa User till UserResponseDTO
+                        p.id(),
+                        p.text(),
+                        p.createdAt(),
+                        user
                 ))
                 .toList();
 
-        //Mappa User till UserResponseDTO
-        UserResponseDTO userResponseDTO = new UserResponseDTO(
-                user.getId(),
-                user.getUsername(),
-                user.getEmail(),
-                user.getRole(),
-                user.getDisplayName(),
-                user.getBio(),
-                user.getProfileImagePath()
-        );
-
         //Retunera UserWithPostsResponseDTO
-        return new UserWithPostsResponseDTO(userResponseDTO, posts);
+        return new UserWithPostsResponseDTO(user, posts, nextCursor);
     }
 }
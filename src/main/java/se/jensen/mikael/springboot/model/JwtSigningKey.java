@@ -0,0 +1,69 @@
+package se.jensen.mikael.springboot.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/*
+ * En JWT-signeringsnyckel skapad vid rotation (se JwtKeyRing, JpaJwtKeyStore).
+ * Delas av alla instanser, så att alla publicerar och signerar med samma nycklar.
+ * Nyckeln (JWK med privat del) sparas krypterad med JWT_KEY_ENCRYPTION_KEY.
+ * Tabellen skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+ *   CREATE TABLE IF NOT EXISTS jwt_signing_key (
+ *       kid          VARCHAR(100) PRIMARY KEY,
+ *       key_data     TEXT         NOT NULL,
+ *       published_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+ *       activated_at TIMESTAMP(6) WITH TIME ZONE
+ *   );
+ */
+@Entity
+@Table(name = "jwt_signing_key")
+public class JwtSigningKey {
+
+    // Nyckelns kid (RFC 7638-tumavtryck)
+    @Id
+    @Column(length = 100)
+    private String kid;
+
+    // Krypterad JWK (base64: IV + AES-GCM-chiffertext)
+    @Column(name = "key_data", nullable = false, columnDefinition = "TEXT")
+    private String keyData;
+
+    // När nyckeln började publiceras i JWKS (som next)
+    @Column(name = "published_at", nullable = false)
+    private Instant publishedAt;
+
+    // När nyckeln började signera; null så länge den är next
+    @Column(name = "activated_at")
+    private Instant activatedAt;
+
+    // Default-konstruktor krävs av JPA
+    public JwtSigningKey() {
+    }
+
+    public JwtSigningKey(String kid, String keyData, Instant publishedAt) {
+        this.kid = kid;
+        this.keyData = keyData;
+        this.publishedAt = publishedAt;
+    }
+
+    // -------------------------------
+    // GETTERS
+    // -------------------------------
+
+    public String getKid() {
+        return kid;
+    }
+
+    public String getKeyData() {
+        return keyData;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    public Instant getActivatedAt() {
+        return activatedAt;
+    }
+}
@@ -9,12 +9,21 @@ import java.time.Instant;
  * Används tillsammans med JPA/Hibernate för att spara inlägg i databasen.
  */
 @Entity // Gör klassen till en JPA-entitet
+// Index för keyset-pagineringen av flödet (ORDER BY created_at DESC, id DESC)
+// och av en användares poster (WHERE user_id = ? ORDER BY created_at DESC, id DESC)
+// @Index skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+//   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_post_created_at_id ON post (created_at DESC, id DESC);
+//   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_post_user_created_at_id ON post (user_id, created_at DESC, id DESC);
+@Table(indexes = {
+        @Index(name = "idx_post_created_at_id", columnList = "created_at DESC, id DESC"),
+        @Index(name = "idx_post_user_created_at_id", columnList = "user_id, created_at DESC, id DESC")
+})
 public class Post {
 
-    // Primärnyckel, auto-genereras av databasen
-    // Id används inte mot databas ännu – vi sätter 0L i mappern
+    // Primärnyckel, tidsordnad och genereras i applikationen (se Snowflake)
+    // så att inserts kan batchas
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @Column
@@ -24,9 +33,17 @@ public class Post {
     @Column(name = "created_at")
     private Instant createdAt;
 
+    // Räknas upp vid varje ändring – optimistisk låsning och ETag i PATCH /posts/{id}
+    // Kolumnen skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+    //   ALTER TABLE post ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     // Many-to-One relation mot User
     // Varje post tillhör en användare
-    @ManyToOne
+    // LAZY – författaren hämtas bara när läsvägen ber om den (se @EntityGraph i PostRepository)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id") // FK i Post-tabellen
     private User user;
 
@@ -75,6 +92,10 @@ public class Post {
         this.text = text;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,76 @@
+package se.jensen.mikael.springboot.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/*
+ * En refresh-token-familj, dvs. en inloggad session (se RefreshTokenStore).
+ * Delas av alla instanser, så att en token kan roteras på vilken nod som
+ * helst och sessionerna överlever omstart. Bara en SHA-256-hash av den
+ * senast utfärdade hemligheten sparas, aldrig själva tokenen.
+ * Tabellen skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+ *   CREATE TABLE IF NOT EXISTS refresh_token_family (
+ *       id          VARCHAR(32) PRIMARY KEY,
+ *       secret_hash VARCHAR(64) NOT NULL,
+ *       user_id     BIGINT      NOT NULL,
+ *       expires_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL
+ *   );
+ *   CREATE INDEX IF NOT EXISTS idx_refresh_token_family_user ON refresh_token_family (user_id);
+ *   CREATE INDEX IF NOT EXISTS idx_refresh_token_family_expires ON refresh_token_family (expires_at);
+ */
+@Entity
+// user_id för revokeAll, expires_at för den schemalagda städningen
+@Table(name = "refresh_token_family", indexes = {
+        @Index(name = "idx_refresh_token_family_user", columnList = "user_id"),
+        @Index(name = "idx_refresh_token_family_expires", columnList = "expires_at")
+})
+public class RefreshTokenFamily {
+
+    // Familjens id – första delen av tokenen
+    @Id
+    @Column(length = 32)
+    private String id;
+
+    // SHA-256 (base64url) av den senast utfärdade hemligheten
+    @Column(name = "secret_hash", nullable = false, length = 64)
+    private String secretHash;
+
+    // Användarens id, inte namn – ett frigjort namn får inte ärva sessionerna
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    // Default-konstruktor krävs av JPA
+    public RefreshTokenFamily() {
+    }
+
+    public RefreshTokenFamily(String id, String secretHash, Long userId, Instant expiresAt) {
+        this.id = id;
+        this.secretHash = secretHash;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+    }
+
+    // -------------------------------
+    // GETTERS
+    // -------------------------------
+
+    public String getId() {
+        return id;
+    }
+
+    public String getSecretHash() {
+        return secretHash;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,95 @@
+package se.jensen.mikael.springboot.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Tidsordnad id-generator i Snowflake-stil.
+ * <p>
+ * Ett id består av (högst 53 bitar, så det går att representera exakt
+ * som number i JavaScript-klienter):
+ * - 41 bitar: millisekunder sedan 2025-01-01 (räcker i ca 69 år)
+ * -  4 bitar: nod-id (0–15), så flera instanser kan generera id samtidigt
+ * -  8 bitar: sekvens inom samma millisekund (256 id/ms per nod)
+ * <p>
+ * Låsfri: tillståndet (tid + sekvens) ligger i en AtomicLong och uppdateras
+ * med compareAndSet. Id:n är strikt växande per nod, även om klockan går
+ * bakåt – då räknar vi vidare på den senast använda tiden.
+ */
+public final class Snowflake {
+
+    static final long EPOCH_MILLIS = 1735689600000L; // 2025-01-01T00:00:00Z
+    static final int NODE_BITS = 4;
+    static final int SEQUENCE_BITS = 8;
+    static final int TIMESTAMP_BITS = 41;
+    static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * Delad instans som används av JPA-entiteterna.
+     * Nod-id läses från system property "snowflake.node-id" eller
+     * miljövariabeln SNOWFLAKE_NODE_ID (standard 0). Utanför dev/test
+     * vägrar applikationen starta utan nod-id (se SnowflakeNodeIdCheck).
+     */
+    public static final Snowflake DEFAULT = new Snowflake(resolveNodeId(), System::currentTimeMillis);
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (millisekunder sedan EPOCH << SEQUENCE_BITS) | sekvens för senast utdelade id
+    private final AtomicLong state = new AtomicLong();
+
+    public Snowflake(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("Nod-id måste vara mellan 0 och " + MAX_NODE + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+    }
+
+    /**
+     * Returnerar nästa id. Trådsäkert och utan lås.
+     */
+    public long nextId() {
+        long now = clock.getAsLong() - EPOCH_MILLIS;
+        while (true) {
+            long previous = state.get();
+            long next = now > (previous >>> SEQUENCE_BITS)
+                    ? now << SEQUENCE_BITS   // ny millisekund – börja om sekvensen
+                    : previous + 1;          // samma ms (eller klockan gick bakåt) – nästa sekvens,
+                                             // vid overflow rullar den över till nästa ms
+            if (state.compareAndSet(previous, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                if (timestamp >>> TIMESTAMP_BITS != 0) {
+                    throw new IllegalStateException("Snowflake-tidsstämpeln har tagit slut");
+                }
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS))
+                        | (nodeId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Tidpunkten (epoch millis) då ett id skapades.
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * True om nod-id är satt explicit (annars används 0).
+     */
+    public static boolean nodeIdConfigured() {
+        String value = configuredNodeId();
+        return value != null && !value.isBlank();
+    }
+
+    private static String configuredNodeId() {
+        return System.getProperty("snowflake.node-id", System.getenv("SNOWFLAKE_NODE_ID"));
+    }
+
+    private static long resolveNodeId() {
+        return nodeIdConfigured() ? Long.parseLong(configuredNodeId().trim()) : 0;
+    }
+}
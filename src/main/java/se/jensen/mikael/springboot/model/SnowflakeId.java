@@ -0,0 +1,19 @@
+package se.jensen.mikael.springboot.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Markerar ett id-fält som ska få sitt värde från Snowflake-generatorn.
+ * Id:t sätts i applikationen innan INSERT, så Hibernate kan batcha inserts
+ * (till skillnad från GenerationType.IDENTITY).
+ */
+@IdGeneratorType(SnowflakeIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -1,19 +1,34 @@
 package se.jensen.mikael.springboot.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
  * User-modellen representerar en användare i applikationen.
  * DTO:er används för in/utdata i API:t.
+ * Borttagna användare (deleted_at satt) syns inte i några queries mot
+ * entiteten; raden och deras posts rensas i bakgrunden (se UserPurgeService).
  */
 @Entity                         // Gör klassen till en JPA-entitet
-@Table(name = "app_user")       // Kopplar entiteten till tabellen "app_user" i databasen
+@Table(name = "app_user",       // Kopplar entiteten till tabellen "app_user" i databasen
+        // Index för sortering på displayName i GET /users (username har redan ett unikt index).
+        // @Index skapas bara av ddl-auto; i produktion (ddl-auto=none, PostgreSQL) körs:
+        //   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_app_user_display_name_id ON app_user (display_name, id);
+        // Prefixfiltret (LIKE 'x%') kan inte använda index med en icke-C-collation,
+        // så det behöver egna index med text_pattern_ops:
+        //   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_app_user_display_name_pattern
+        //       ON app_user (display_name text_pattern_ops);
+        //   CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_app_user_username_pattern
+        //       ON app_user (username text_pattern_ops);
+        indexes = @Index(name = "idx_app_user_display_name_id", columnList = "display_name, id"))
+@SQLRestriction("deleted_at IS NULL")
 public class User {
 
     @Id                                                     // Markerar primärnyckel
-    @GeneratedValue(strategy = GenerationType.IDENTITY)     // Auto-increment i MySQL
+    @SnowflakeId                                            // Tidsordnat id, genereras i applikationen
     private Long id;
 
     @Column(unique = true, nullable = false)               // Unikt och inte null
@@ -37,13 +52,28 @@ public class User {
     @Column(name = "profile_image_path")                   // Får vara null
     private String profileImagePath;
 
+    // Räknas upp av Hibernate vid varje ändring. Följer med i JWT:n som "ver",
+    // så tokens med en äldre profil kan underkännas (se ProfileVersionRegistry)
+    // Kolumnen skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+    //   ALTER TABLE app_user ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    // När kontot togs bort (null = aktivt). Sätts av UserRepository.markDeleted
+    // Kolumnen skapas bara av ddl-auto; i produktion (ddl-auto=none) körs:
+    //   ALTER TABLE app_user ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6) WITH TIME ZONE;
+    @Column(name = "deleted_at")
+    private Instant deletedAt;
+
     /**
      * Relation till Post-entity
      * En User kan ha många Posts
      * mappedBy="user" anger fältet i Post som äger relationen
-     * cascade = REMOVE → radera alla posts när användaren tas bort
+     * Ingen cascade – posts tas bort i omgångar av UserPurgeService,
+     * inte en och en i requesten som tar bort användaren
      */
-    @OneToMany(mappedBy = "user", cascade = CascadeType.REMOVE)
+    @OneToMany(mappedBy = "user")
     private List<Post> posts;
 
     // -----------------------------------------------------------
@@ -144,6 +174,10 @@ public class User {
         this.profileImagePath = profileImagePath;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public List<Post> getPosts() {
         return posts;
     }
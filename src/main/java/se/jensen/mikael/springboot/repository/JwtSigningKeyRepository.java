@@ -0,0 +1,25 @@
+package se.jensen.mikael.springboot.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.model.JwtSigningKey;
+
+import java.time.Instant;
+
+/**
+ * Repository för JWT-nycklar skapade vid rotation (se JpaJwtKeyStore).
+ */
+public interface JwtSigningKeyRepository extends JpaRepository<JwtSigningKey, String> {
+
+    /**
+     * Gör next-nyckeln till active. Uppdaterar bara en nyckel som ännu inte
+     * aktiverats, så två samtidiga rotationer inte båda lyckas.
+     * Returnerar antal uppdaterade rader.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE JwtSigningKey k SET k.activatedAt = :activatedAt WHERE k.kid = :kid AND k.activatedAt IS NULL")
+    int activate(String kid, Instant activatedAt);
+}
@@ -1,9 +1,22 @@
 package se.jensen.mikael.springboot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.dto.PostRow;
 import se.jensen.mikael.springboot.model.Post;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository-gränssnitt för Post-entiteten.
@@ -16,6 +29,159 @@ import java.util.List;
  */
 public interface PostRepository extends JpaRepository<Post, Long> {
     // Här kan man senare lägga till egna query-metoder om det behövs
+    // Post.user är LAZY, så varje läsväg som mappar författaren hämtar den
+    // i samma SELECT – via @EntityGraph eller en DTO-projektion – annars blir
+    // det en query per författare (N+1).
 
-    List<Post> findAllByOrderByCreatedAtDesc();
+    /**
+     * Konstruktoruttryck för PostRow – väljer bara kolumnerna som DTO:n behöver.
+     */
+    String POST_ROW = "new se.jensen.mikael.springboot.dto.PostRow("
+            + "p.id, p.text, p.createdAt, u.id, u.username, u.email, "
+            + "u.role, u.displayName, u.bio, u.profileImagePath)";
+
+    /**
+     * Posten saknar författare eller författaren är inte borttagen.
+     * User har @SQLRestriction("deleted_at IS NULL"), som Hibernate lägger i
+     * LEFT JOIN:ens ON – en borttagen författare ger då u.id = null men
+     * user_id kvar (fk(p.user) läser kolumnen, inte den joinade raden), så
+     * posten filtreras bort istället för att visas med "user": null.
+     * Poster utan användare (POST /posts) ska fortfarande synas, därför
+     * ingen inner join.
+     */
+    String LIVE_AUTHOR = "(fk(p.user) IS NULL OR (u.id IS NOT NULL AND u.deletedAt IS NULL))";
+
+    /**
+     * Antal rader JDBC-drivern hämtar per rundresa vid export.
+     * Tillräckligt stort för få rundresor, tillräckligt litet för konstant minne.
+     */
+    String EXPORT_FETCH_SIZE = "500";
+
+    /**
+     * Hämtar en post tillsammans med dess författare i en och samma query.
+     */
+    @Override
+    @EntityGraph(attributePaths = "user")
+    Optional<Post> findById(Long id);
+
+    /**
+     * Alla poster, nyast först, som projektion (inga entiteter).
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + " FROM Post p LEFT JOIN p.user u WHERE " + LIVE_AUTHOR
+            + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostRow> findAllRows();
+
+    /**
+     * Första sidan i flödet: de nyaste posterna.
+     * Sorteras på (createdAt, id) så ordningen är stabil även om
+     * flera poster har samma tidsstämpel.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + " FROM Post p LEFT JOIN p.user u WHERE " + LIVE_AUTHOR
+            + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostRow> findFeedFirstPage(Limit limit);
+
+    /**
+     * Nästa sida i flödet (keyset/seek): poster som ligger efter cursorn.
+     * Ingen OFFSET – databasen börjar läsa direkt i indexet på
+     * (created_at, id), så kostnaden är densamma hur långt ner man scrollar.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + """
+             FROM Post p LEFT JOIN p.user u
+            WHERE p.createdAt <= :createdAt
+              AND (p.createdAt < :createdAt OR p.id < :id)
+            """ + " AND " + LIVE_AUTHOR + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostRow> findFeedPageBefore(Instant createdAt, Long id, Limit limit);
+
+    /**
+     * Första sidan av en användares poster, nyast först, som projektion.
+     * Läses direkt ur indexet på (user_id, created_at, id).
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + " FROM Post p JOIN p.user u WHERE u.id = :userId ORDER BY p.createdAt DESC, p.id DESC")
+    List<PostRow> findRowsByUserId(Long userId, Limit limit);
+
+    /**
+     * Nästa sida av en användares poster (keyset/seek) efter cursorn.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + """
+             FROM Post p JOIN p.user u
+            WHERE u.id = :userId
+              AND p.createdAt <= :createdAt
+              AND (p.createdAt < :createdAt OR p.id < :id)
+            ORDER BY p.createdAt DESC, p.id DESC
+            """)
+    List<PostRow> findRowsByUserIdBefore(Long userId, Instant createdAt, Long id, Limit limit);
+
+    /**
+     * En post och dess författare som projektion.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + POST_ROW + " FROM Post p LEFT JOIN p.user u WHERE p.id = :id AND " + LIVE_AUTHOR)
+    Optional<PostRow> findRowById(Long id);
+
+    /**
+     * Radens aktuella version (@Version) – för ETag och 404/412 efter PATCH.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT p.version FROM Post p WHERE p.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    /**
+     * Id för postens författare (kolumnen user_id, ingen join) – för
+     * ägarkontrollen i OwnershipChecks. Tomt om posten saknas eller inte har
+     * någon författare.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT p.user.id FROM Post p WHERE p.id = :id AND fk(p.user) IS NOT NULL")
+    Optional<Long> findAuthorIdById(Long id);
+
+    /**
+     * Ändrar bara texten, i ett enda UPDATE utan SELECT före, och räknar upp
+     * version. Med version satt uppdateras raden bara om den har den versionen.
+     * Returnerar antal uppdaterade rader.
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            UPDATE Post p SET p.text = :text, p.version = p.version + 1
+            WHERE p.id = :id AND (:version IS NULL OR p.version = :version)
+            """)
+    int updateText(Long id, String text, Long version);
+
+    /**
+     * Tar bort en post i ett enda DELETE, utan att läsa den först.
+     * Returnerar antal borttagna rader (0 om posten inte finns).
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.id = :id")
+    int deleteRowById(Long id);
+
+    /**
+     * Id:n för upp till limit av en användares poster (för rensning i omgångar).
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT p.id FROM Post p WHERE p.user.id = :userId")
+    List<Long> findIdsByUserId(Long userId, Limit limit);
+
+    /**
+     * Tar bort posterna i ett enda DELETE. Returnerar antal borttagna rader.
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM Post p WHERE p.id IN :ids")
+    int deleteRowsByIds(Collection<Long> ids);
+
+    /**
+     * Alla poster som en framåtläsande ström (för export).
+     * Raderna läses i omgångar om EXPORT_FETCH_SIZE istället för att hela
+     * tabellen läses in i en List. Måste konsumeras inom en transaktion.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("SELECT " + POST_ROW + " FROM Post p LEFT JOIN p.user u WHERE " + LIVE_AUTHOR + " ORDER BY p.id")
+    Stream<PostRow> streamAllRows();
 }
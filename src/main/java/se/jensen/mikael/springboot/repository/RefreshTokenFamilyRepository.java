@@ -0,0 +1,44 @@
+package se.jensen.mikael.springboot.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.model.RefreshTokenFamily;
+
+import java.time.Instant;
+
+/**
+ * Repository för refresh-token-familjer (se RefreshTokenStore).
+ * Ändringarna returnerar antal påverkade rader.
+ */
+public interface RefreshTokenFamilyRepository extends JpaRepository<RefreshTokenFamily, String> {
+
+    /**
+     * Byter hemligheten – bara om den gamla fortfarande gäller, så två
+     * samtidiga rotationer med samma token inte båda lyckas.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE RefreshTokenFamily f SET f.secretHash = :newHash, f.expiresAt = :expiresAt " +
+            "WHERE f.id = :id AND f.secretHash = :oldHash AND f.expiresAt > :now")
+    int rotate(String id, String oldHash, String newHash, Instant expiresAt, Instant now);
+
+    /**
+     * Tar bort familjen om hemligheten stämmer (logout).
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshTokenFamily f WHERE f.id = :id AND f.secretHash = :secretHash")
+    int deleteByIdAndSecretHash(String id, String secretHash);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshTokenFamily f WHERE f.userId = :userId")
+    int deleteByUserId(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RefreshTokenFamily f WHERE f.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
@@ -1,18 +1,30 @@
 package se.jensen.mikael.springboot.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
 import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.security.UserCredentials;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository för User-entity
  * Ärver från JpaRepository<User, Long>, vilket automatiskt ger:
  * findAll(), findById(), save(), delete(), etc.
  * Här kan vi också lägga till egna metoder med Spring Data conventions
+ * Dynamiska queries (filtrerad/sorterad listning) finns i UserRepositoryCustom
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     /**
      * Hitta en användare baserat på username
@@ -21,18 +33,101 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUsername(String username);
 
     /**
-     * Kontrollerar om en användare redan finns med samma username eller email
-     * Returnerar true om en matchning finns
-     * Används t.ex. Innan man skapar en ny användare
+     * Kontrollerar om username är upptaget (GET /users/availability).
+     * Registreringen kontrollerar inte i förväg – där avgör unika constraints.
      */
-    boolean existsByUsernameOrEmail(String username, String email);
+    boolean existsByUsername(String username);
 
     /**
-     * Custom JPQL-query för att hämta en User och samtidigt fetch:a alla posts
-     * LEFT JOIN FETCH används för att undvika LazyInitializationException
-     * Returnerar Optional<User> så vi kan hantera om user inte finns
+     * Kontrollerar om email är upptagen (GET /users/availability).
      */
-    // la dit ORDER BY p.createdAt DESC för att de
-    @Query("SELECT u FROM User u LEFT JOIN FETCH u.posts p WHERE u.id = :id ORDER BY p.createdAt DESC")
-    Optional<User> findUserWithPosts(Long id);
+    boolean existsByEmail(String email);
+
+    /**
+     * Konstruktoruttryck för UserResponseDTO – allt utom lösenordet.
+     */
+    String USER_RESPONSE = "new se.jensen.mikael.springboot.dto.UserResponseDTO("
+            + "u.id, u.username, u.email, u.role, u.displayName, u.bio, u.profileImagePath)";
+
+    /**
+     * Hämtar alla användare som DTO direkt från databasen.
+     * Inga User-entiteter skapas och lösenordshashen läses aldrig.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + USER_RESPONSE + " FROM User u ORDER BY u.id")
+    List<UserResponseDTO> findAllResponses();
+
+    /**
+     * Hämtar en användare som DTO direkt från databasen.
+     * Returnerar Optional så vi kan hantera om user inte finns
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + USER_RESPONSE + " FROM User u WHERE u.id = :id")
+    Optional<UserResponseDTO> findResponseById(Long id);
+
+    /**
+     * Radens aktuella version (@Version) – för ETag och 404/412 efter PATCH.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(Long id);
+
+    /**
+     * Markerar användaren som borttagen i ett enda UPDATE. Villkoret gör att
+     * två samtidiga borttagningar inte båda lyckas. Returnerar antal rader (0 eller 1).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.deletedAt = :now, u.version = u.version + 1 WHERE u.id = :id AND u.deletedAt IS NULL")
+    int markDeleted(Long id, Instant now);
+
+    /**
+     * Id:n för användare som markerats borttagna men inte rensats ännu.
+     * Native SQL – entiteten döljer borttagna rader (@SQLRestriction).
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT id FROM app_user WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findDeletedIds(int limit);
+
+    /**
+     * Användarnamnet även för en borttagen användare (native SQL, förbi
+     * @SQLRestriction) – behövs för att evicta cachar nycklade på namnet.
+     */
+    @Query(value = "SELECT username FROM app_user WHERE id = :id", nativeQuery = true)
+    Optional<String> findUsernameIncludingDeleted(Long id);
+
+    /**
+     * Tar bort raden för en borttagen användare (när dess posts är rensade).
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM app_user WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int purgeDeleted(Long id);
+
+    /**
+     * Hämtar alla användare i listan som DTO – en query för hela listan.
+     * Används vid bulk-import för att validera userId utan att ladda entiteter.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT " + USER_RESPONSE + " FROM User u WHERE u.id IN :ids")
+    List<UserResponseDTO> findResponsesByIds(Collection<Long> ids);
+
+    /**
+     * Hämtar bara det som behövs för inloggning (id, username, hash, roll, version).
+     * Används av CustomUserDetailService istället för hela User-entiteten.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT new se.jensen.mikael.springboot.security.UserCredentials("
+            + "u.id, u.username, u.password, u.role, u.version)"
+            + " FROM User u WHERE u.username = :username")
+    Optional<UserCredentials> findCredentialsByUsername(String username);
+
+    /**
+     * Alla användare som en framåtläsande ström av DTO:er (för export).
+     * Måste konsumeras inom en transaktion.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = PostRepository.EXPORT_FETCH_SIZE))
+    @Query("SELECT " + USER_RESPONSE + " FROM User u ORDER BY u.id")
+    Stream<UserResponseDTO> streamAllResponses();
 }
@@ -0,0 +1,38 @@
+package se.jensen.mikael.springboot.repository;
+
+import se.jensen.mikael.springboot.dto.UserCursor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Egna query-metoder för User som inte går att uttrycka med @Query,
+ * eftersom WHERE och ORDER BY beror på vilka filter och vilken sortering
+ * klienten valt. Implementeras i UserRepositoryCustomImpl.
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Hämtar en sida användare som projektion.
+     *
+     * @param type              UserResponseDTO eller UserSummaryDTO
+     * @param sort              sorteringsnyckel (stigande, id som tie-break)
+     * @param usernamePrefix    filter på början av username (kan vara null)
+     * @param displayNamePrefix filter på början av displayName (kan vara null)
+     * @param after             cursor till sista raden i föregående sida (kan vara null)
+     * @param limit             max antal rader
+     */
+    <T> List<T> findUserPage(Class<T> type, UserSort sort, String usernamePrefix, String displayNamePrefix,
+                             UserCursor after, int limit);
+
+    /**
+     * Uppdaterar bara de angivna kolumnerna i ett enda UPDATE och räknar
+     * upp version. Ingen SELECT före och ingen dirty checking.
+     *
+     * @param id              användarens id
+     * @param expectedVersion uppdatera bara om raden har denna version (null = oavsett version)
+     * @param changes         attributnamn i User → nytt värde (bara tillåtna attribut)
+     * @return antal uppdaterade rader (0 om usern saknas eller versionen inte stämmer)
+     */
+    int patchUser(long id, Long expectedVersion, Map<String, Object> changes);
+}
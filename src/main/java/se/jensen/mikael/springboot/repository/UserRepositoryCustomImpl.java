@@ -0,0 +1,130 @@
+package se.jensen.mikael.springboot.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.dto.UserCursor;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.dto.UserSummaryDTO;
+import se.jensen.mikael.springboot.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Implementation av UserRepositoryCustom.
+ * JPQL byggs bara av fasta delar (UserSort, projektionerna nedan);
+ * allt klienten skickar in binds som parametrar.
+ */
+class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    /**
+     * Konstruktoruttryck för UserSummaryDTO – utan bio och profileImagePath.
+     */
+    static final String USER_SUMMARY = "new se.jensen.mikael.springboot.dto.UserSummaryDTO("
+            + "u.id, u.username, u.email, u.role, u.displayName)";
+
+    // Tillåtna projektioner
+    private static final Map<Class<?>, String> PROJECTIONS = Map.of(
+            UserResponseDTO.class, UserRepository.USER_RESPONSE,
+            UserSummaryDTO.class, USER_SUMMARY
+    );
+
+    // Attribut som patchUser får skriva
+    private static final Set<String> PATCHABLE = Set.of(
+            "username", "email", "password", "role", "displayName", "bio", "profileImagePath");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T> List<T> findUserPage(Class<T> type, UserSort sort, String usernamePrefix, String displayNamePrefix,
+                                    UserCursor after, int limit) {
+
+        String projection = PROJECTIONS.get(type);
+        if (projection == null) {
+            throw new IllegalArgumentException("Okänd projektion: " + type.getSimpleName());
+        }
+
+        List<String> where = new ArrayList<>();
+        // Prefix-LIKE utan inledande % kan läsas som ett intervall i ett index –
+        // i PostgreSQL med icke-C-collation bara i text_pattern_ops-indexen (se User)
+        if (usernamePrefix != null) {
+            where.add("u.username LIKE :usernamePrefix ESCAPE '!'");
+        }
+        if (displayNamePrefix != null) {
+            where.add("u.displayName LIKE :displayNamePrefix ESCAPE '!'");
+        }
+        // Keyset: raderna efter cursorn i (sorteringskolumn, id)
+        if (after != null) {
+            if (sort == UserSort.ID) {
+                where.add("u.id > :afterId");
+            } else {
+                where.add(sort.path() + " >= :afterValue AND (" + sort.path() + " > :afterValue OR u.id > :afterId)");
+            }
+        }
+
+        StringBuilder jpql = new StringBuilder("SELECT ").append(projection).append(" FROM User u");
+        if (!where.isEmpty()) {
+            jpql.append(" WHERE ").append(String.join(" AND ", where));
+        }
+        jpql.append(" ORDER BY ");
+        if (sort != UserSort.ID) {
+            jpql.append(sort.path()).append(", ");
+        }
+        jpql.append("u.id");
+
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), type);
+        if (usernamePrefix != null) {
+            query.setParameter("usernamePrefix", likePrefix(usernamePrefix));
+        }
+        if (displayNamePrefix != null) {
+            query.setParameter("displayNamePrefix", likePrefix(displayNamePrefix));
+        }
+        if (after != null) {
+            query.setParameter("afterId", after.id());
+            if (sort != UserSort.ID) {
+                query.setParameter("afterValue", after.value());
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    @Transactional
+    public int patchUser(long id, Long expectedVersion, Map<String, Object> changes) {
+        if (changes.isEmpty() || !PATCHABLE.containsAll(changes.keySet())) {
+            throw new IllegalArgumentException("Ogiltiga fält att uppdatera: " + changes.keySet());
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+        Root<User> u = update.from(User.class);
+
+        changes.forEach((attribute, value) -> update.set(u.get(attribute), value));
+        update.set(u.<Long>get("version"), cb.sum(u.<Long>get("version"), 1L));
+
+        Predicate where = cb.equal(u.get("id"), id);
+        if (expectedVersion != null) {
+            where = cb.and(where, cb.equal(u.get("version"), expectedVersion));
+        }
+        update.where(where);
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    // Escapar LIKE-tecknen så att klientens text matchas bokstavligt
+    private static String likePrefix(String prefix) {
+        return prefix.replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_") + "%";
+    }
+}
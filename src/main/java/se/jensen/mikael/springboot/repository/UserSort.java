@@ -0,0 +1,60 @@
+package se.jensen.mikael.springboot.repository;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Tillåtna sorteringsnycklar för GET /users.
+ * Klienten väljer bara namnet (?sort=); JPQL-uttrycket kommer härifrån
+ * och byggs aldrig av klientens text. Varje nyckel har ett index
+ * (id = PK, username = unik, display_name = idx_app_user_display_name_id).
+ */
+public enum UserSort {
+
+    ID("id", "u.id", null),
+    USERNAME("username", "u.username", UserKey::username),
+    DISPLAY_NAME("displayName", "u.displayName", UserKey::displayName);
+
+    /**
+     * Det en sorteringsnyckel behöver från en rad för att bygga en cursor.
+     */
+    public record UserKey(Long id, String username, String displayName) {
+    }
+
+    private final String param;
+    private final String path;
+    private final Function<UserKey, String> valueOf;
+
+    UserSort(String param, String path, Function<UserKey, String> valueOf) {
+        this.param = param;
+        this.path = path;
+        this.valueOf = valueOf;
+    }
+
+    // Namnet i ?sort= och i cursorn
+    public String param() {
+        return param;
+    }
+
+    // Kolumnen i JPQL
+    String path() {
+        return path;
+    }
+
+    // Värdet i sorteringskolumnen för en rad (null för ID, där id räcker)
+    public String valueOf(UserKey key) {
+        return valueOf == null ? null : valueOf.apply(key);
+    }
+
+    /**
+     * Slår upp en sorteringsnyckel från ?sort=.
+     * Kastar IllegalArgumentException (→ 400) för okända nycklar.
+     */
+    public static UserSort fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(s -> s.param.equals(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "Ogiltig sort: " + param + " (tillåtna: id, username, displayName)"));
+    }
+}
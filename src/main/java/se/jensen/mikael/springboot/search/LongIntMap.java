@@ -0,0 +1,112 @@
+package se.jensen.mikael.springboot.search;
+
+import java.util.Arrays;
+
+/**
+ * Hashtabell long → int utan boxade nycklar eller Entry-objekt: två
+ * parallella arrayer med öppen adressering och linjär sondering.
+ * Värden måste vara ≥ 0; get och remove returnerar MISSING när nyckeln saknas.
+ * Inte trådsäker, skyddas av låset i PostSearchIndex.
+ */
+final class LongIntMap {
+
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values; // MISSING = tom plats
+    private int size;
+
+    LongIntMap() {
+        keys = new long[16];
+        values = new int[16];
+        Arrays.fill(values, MISSING);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != MISSING; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return MISSING;
+    }
+
+    void put(long key, int value) {
+        // Högst halvfull – korta sonderingskedjor
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != MISSING) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    /**
+     * Tar bort nyckeln och returnerar dess värde, eller MISSING.
+     */
+    int remove(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (values[i] != MISSING && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == MISSING) {
+            return MISSING;
+        }
+        int removed = values[i];
+        values[i] = MISSING;
+        size--;
+
+        // Flytta bakåt de efterföljande poster vars kedja gick genom luckan,
+        // så att get inte stannar för tidigt (ingen "tombstone" behövs)
+        int gap = i;
+        for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = slot(keys[j], mask);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                values[j] = MISSING;
+                gap = j;
+            }
+        }
+        return removed;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    // Snowflake-id har sekvensen i de låga bitarna – blanda alla bitar (fmix64 från MurmurHash3)
+    private static int slot(long key, int mask) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+}
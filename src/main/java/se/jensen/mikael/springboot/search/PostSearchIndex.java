@@ -0,0 +1,359 @@
+package se.jensen.mikael.springboot.search;
+
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverterat index i minnet över Post.text.
+ * <p>
+ * - Texten delas upp i tokens (gemener, bokstäver/siffror – även åäö)
+ * - Varje token pekar på en PostingList med post-id
+ * - En sökning är AND mellan alla ord; "citerade fraser" måste dessutom
+ *   stå i följd i texten
+ * - Träffar rankas på aktualitet: högst id först (id är tidsordnade)
+ * <p>
+ * Indexet håller en ögonblicksbild av varje post – text, tidsstämpel och
+ * författarens id – så att en sökning besvaras helt ur minnet (författarens
+ * profil hämtar PostSearchService ur UserCache). Snapshotet ligger i
+ * kolumner av primitiva arrayer indexerade på en intern plats (slot), och
+ * post-id → plats slås upp i en LongIntMap: inga Long-nycklar, Entry- eller
+ * Doc-objekt per post, bara texten som String. Per post kostar det ca
+ * 56 byte (kolumnerna och LongIntMap) plus texten, och 8 byte per ord i
+ * postinglistorna. Orden sparas
+ * inte separat – texten tokeniseras om när en fras kontrolleras och när
+ * posten tas bort.
+ * <p>
+ * Beter sig likadant på H2 och PostgreSQL. Indexet hålls uppdaterat
+ * från PostService/UserService och byggs vid start av PostSearchService.
+ */
+@Component
+public class PostSearchIndex {
+
+    /**
+     * En sökträff: postens snapshot i indexet. authorId är null om posten
+     * saknar författare.
+     */
+    public record Hit(long id, String text, Instant createdAt, Long authorId) {
+    }
+
+    private static final int INITIAL_SLOTS = 64;
+    // authorIds-värde för poster utan författare (Snowflake-id är alltid > 0)
+    private static final long NO_AUTHOR = 0L;
+    // createdSeconds-värde för poster utan tidsstämpel
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    // ---- Snapshot per plats; texts[slot] == null betyder ledig plats ----
+    private long[] postIds = new long[INITIAL_SLOTS];
+    private long[] authorIds = new long[INITIAL_SLOTS];
+    private long[] createdSeconds = new long[INITIAL_SLOTS];
+    private int[] createdNanos = new int[INITIAL_SLOTS];
+    private String[] texts = new String[INITIAL_SLOTS];
+    private int slotCount; // platser som använts hittills (lediga inräknade)
+
+    // Lediga platser (stack), återanvänds innan nya tas
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    private final LongIntMap slotById = new LongIntMap();
+
+    // Poster som tagits bort medan indexet byggs – får inte läggas tillbaka av bygget
+    private Set<Long> removedDuringRebuild;
+
+    // Många läsare samtidigt, skrivningar (create/update/delete) är korta
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Lägger till eller ersätter en post i indexet.
+     */
+    public void index(PostResponseDTO post) {
+        lock.writeLock().lock();
+        try {
+            put(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lägger bara till posten om den inte redan finns.
+     * Används när indexet byggs vid start, så att en ändring som hunnit
+     * indexeras under tiden inte skrivs över med gammal text.
+     */
+    public void indexIfAbsent(PostResponseDTO post) {
+        lock.writeLock().lock();
+        try {
+            boolean removed = removedDuringRebuild != null && removedDuringRebuild.contains(post.id());
+            if (!removed && slotById.get(post.id()) == LongIntMap.MISSING) {
+                put(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Markerar att indexet börjar byggas från databasen.
+     * Borttagningar fram till endRebuild() kommer ihåg så att bygget inte
+     * återskapar poster som redan raderats.
+     */
+    public void beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            removedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            removedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tar bort en post ur indexet.
+     */
+    public void remove(long postId) {
+        lock.writeLock().lock();
+        try {
+            removeDoc(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tar bort alla poster av en författare (när användaren raderas).
+     * Går igenom authorIds-kolumnen – ett sekventiellt svep över en long[]
+     * är billigt, och användare raderas sällan.
+     */
+    public void removeAuthor(long userId) {
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (texts[slot] != null && authorIds[slot] == userId) {
+                    removeDoc(postIds[slot]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Söker poster som innehåller alla ord (och fraser inom citattecken) i query.
+     * Returnerar högst limit träffar, nyast först.
+     */
+    public List<Hit> search(String query, int limit) {
+        List<List<String>> phrases = new ArrayList<>();
+        Set<String> terms = new LinkedHashSet<>();
+        parseQuery(query, terms, phrases);
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Hämta postinglistor; saknas ett ord finns inga träffar (AND)
+            List<PostingList> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    return List.of();
+                }
+                lists.add(list);
+            }
+            // Kortaste listan först – den styr hur många kandidater vi testar
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            PostingList shortest = lists.get(0);
+
+            List<Hit> hits = new ArrayList<>(Math.min(limit, shortest.size()));
+            // Baklänges = högst id först = nyast först, så vi kan sluta vid limit
+            for (int i = shortest.size() - 1; i >= 0 && hits.size() < limit; i--) {
+                long id = shortest.get(i);
+                if (!inAll(lists, id)) {
+                    continue;
+                }
+                int slot = slotById.get(id);
+                if (phrases.isEmpty() || containsPhrases(tokenize(texts[slot]), phrases)) {
+                    hits.add(hit(slot));
+                }
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Antal indexerade poster.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // -----------------------------------------------------------
+    // Tokenisering
+    // -----------------------------------------------------------
+
+    /**
+     * Delar upp text i tokens: gemener, sammanhängande bokstäver/siffror.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(lower.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    // Delar upp query i fraser ("...") och lösa ord; alla ord hamnar i terms
+    private static void parseQuery(String query, Set<String> terms, List<List<String>> phrases) {
+        if (query == null) {
+            return;
+        }
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> tokens = tokenize(parts[i]);
+            terms.addAll(tokens);
+            // Udda delar ligger inom citattecken
+            if (i % 2 == 1 && tokens.size() > 1) {
+                phrases.add(tokens);
+            }
+        }
+    }
+
+    // -----------------------------------------------------------
+    // Interna hjälpmetoder (anropas med låset taget)
+    // -----------------------------------------------------------
+
+    private void put(PostResponseDTO post) {
+        unindex(post.id());
+
+        String text = post.text() == null ? "" : post.text();
+        for (String word : tokenize(text)) {
+            postings.computeIfAbsent(word, w -> new PostingList()).add(post.id());
+        }
+
+        int slot = allocateSlot();
+        postIds[slot] = post.id();
+        authorIds[slot] = post.user() == null ? NO_AUTHOR : post.user().id();
+        createdSeconds[slot] = post.createdAt() == null ? NO_TIME : post.createdAt().getEpochSecond();
+        createdNanos[slot] = post.createdAt() == null ? 0 : post.createdAt().getNano();
+        texts[slot] = text;
+        slotById.put(post.id(), slot);
+    }
+
+    private void removeDoc(long postId) {
+        if (removedDuringRebuild != null) {
+            removedDuringRebuild.add(postId);
+        }
+        unindex(postId);
+    }
+
+    private void unindex(long postId) {
+        int slot = slotById.remove(postId);
+        if (slot == LongIntMap.MISSING) {
+            return;
+        }
+        for (String token : tokenize(texts[slot])) {
+            PostingList list = postings.get(token);
+            if (list != null && list.remove(postId)) {
+                postings.remove(token);
+            }
+        }
+        texts[slot] = null; // släpp texten
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == texts.length) {
+            int capacity = slotCount * 2;
+            postIds = Arrays.copyOf(postIds, capacity);
+            authorIds = Arrays.copyOf(authorIds, capacity);
+            createdSeconds = Arrays.copyOf(createdSeconds, capacity);
+            createdNanos = Arrays.copyOf(createdNanos, capacity);
+            texts = Arrays.copyOf(texts, capacity);
+        }
+        return slotCount++;
+    }
+
+    private Hit hit(int slot) {
+        Instant createdAt = createdSeconds[slot] == NO_TIME ? null
+                : Instant.ofEpochSecond(createdSeconds[slot], createdNanos[slot]);
+        Long authorId = authorIds[slot] == NO_AUTHOR ? null : authorIds[slot];
+        return new Hit(postIds[slot], texts[slot], createdAt, authorId);
+    }
+
+    private static boolean inAll(List<PostingList> lists, long id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsPhrases(List<String> tokens, List<List<String>> phrases) {
+        for (List<String> phrase : phrases) {
+            if (!containsPhrase(tokens, phrase)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsPhrase(List<String> tokens, List<String> phrase) {
+        outer:
+        for (int start = 0; start + phrase.size() <= tokens.size(); start++) {
+            for (int j = 0; j < phrase.size(); j++) {
+                if (!tokens.get(start + j).equals(phrase.get(j))) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
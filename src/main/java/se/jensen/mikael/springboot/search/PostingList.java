@@ -0,0 +1,68 @@
+package se.jensen.mikael.springboot.search;
+
+import java.util.Arrays;
+
+/**
+ * Kompakt postinglista: sorterade post-id (stigande) i en long[].
+ * Inga boxade Long-objekt – ca 8 byte per post och term.
+ * Inte trådsäker, skyddas av låset i PostSearchIndex.
+ */
+final class PostingList {
+
+    private long[] ids = new long[4];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    long get(int i) {
+        return ids[i];
+    }
+
+    /**
+     * Lägger till ett id. Nya poster har högst id (tidsordnade id), så det
+     * vanliga fallet är en append i slutet.
+     */
+    void add(long id) {
+        if (size > 0 && ids[size - 1] >= id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return; // finns redan
+            }
+            insertAt(-pos - 1, id);
+            return;
+        }
+        ensureCapacity();
+        ids[size++] = id;
+    }
+
+    /**
+     * Tar bort ett id. Returnerar true om listan blev tom.
+     */
+    boolean remove(long id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+        return size == 0;
+    }
+
+    boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    private void insertAt(int pos, long id) {
+        ensureCapacity();
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        ids[pos] = id;
+        size++;
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.mikael.springboot.exception.ServerBusyException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PasswordEncoder som kör hashning och verifiering (BCrypt) i en egen,
+ * begränsad trådpool istället för på Tomcats request-trådar.
+ * <p>
+ * - Högst "threads" hashningar körs samtidigt, så en våg av inloggningar
+ *   kan inte ta all CPU från resten av API:t
+ * - Högst "queueCapacity" väntar i kö; är kön full kastas
+ *   ServerBusyException direkt (→ 503 + Retry-After) istället för att
+ *   requesten blir hängande
+ * - stats() visar ködjup och latens, för att kunna dimensionera poolen
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long retryAfterSeconds) {
+        this.delegate = delegate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                daemonThreads("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Billig kontroll av hashens format – behöver inte poolen
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Ködjup, aktiva trådar och latens (kötid + hashtid) för övervakning.
+     */
+    public Map<String, Long> stats() {
+        long count = completed.sum();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("poolSize", (long) executor.getMaximumPoolSize());
+        stats.put("activeThreads", (long) executor.getActiveCount());
+        stats.put("queueDepth", (long) executor.getQueue().size());
+        stats.put("queueCapacity", (long) (executor.getQueue().size() + executor.getQueue().remainingCapacity()));
+        stats.put("completed", count);
+        stats.put("rejected", rejected.sum());
+        stats.put("avgQueueMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(queueNanos.sum() / count));
+        stats.put("avgHashMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hashNanos.sum() / count));
+        stats.put("maxHashMicros", TimeUnit.NANOSECONDS.toMicros(maxHashNanos.get()));
+        return stats;
+    }
+
+    /**
+     * Stänger poolen när applikationen stängs. Pågående hashningar får bli klara.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // Kör task i poolen och väntar på resultatet på anroparens tråd
+    private <T> T run(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    queueNanos.add(start - submittedAt);
+                    hashNanos.add(elapsed);
+                    maxHashNanos.accumulateAndGet(elapsed, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServerBusyException("Servern är hårt belastad, försök igen om en stund", retryAfterSeconds);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Avbruten i väntan på lösenordshashning", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,50 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Omvandlar en Jwt:s scope-claim till authorities och cachar resultatet
+ * per scope-sträng. Det finns bara en handfull olika scopes (t.ex.
+ * "ROLE_USER", "ROLE_ADMIN"), så samma oföränderliga lista kan delas av
+ * alla requests istället för att byggas om varje gång.
+ */
+public class CachingAuthoritiesConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    private final Converter<Jwt, Collection<GrantedAuthority>> delegate;
+    private final String claimName;
+    private final int maxSize;
+
+    private final ConcurrentHashMap<String, List<GrantedAuthority>> byScope = new ConcurrentHashMap<>();
+
+    public CachingAuthoritiesConverter(Converter<Jwt, Collection<GrantedAuthority>> delegate, String claimName,
+                                       int maxSize) {
+        this.delegate = delegate;
+        this.claimName = claimName;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        Object scope = jwt.getClaims().get(claimName);
+        if (!(scope instanceof String key)) {
+            // Ovanligt format (t.ex. lista) – konvertera utan cache
+            return delegate.convert(jwt);
+        }
+        List<GrantedAuthority> cached = byScope.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        List<GrantedAuthority> authorities = List.copyOf(delegate.convert(jwt));
+        // Begränsad storlek – okända scopes ska inte kunna fylla minnet
+        if (byScope.size() < maxSize) {
+            byScope.putIfAbsent(key, authorities);
+        }
+        return authorities;
+    }
+}
@@ -0,0 +1,204 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JwtDecoder som cachar redan verifierade tokens.
+ * <p>
+ * En klient skickar samma bearer-token vid varje request. Första gången
+ * verifieras signaturen (RSA) och claims av delegate; därefter returneras
+ * samma Jwt direkt ur cachen fram till tokenens exp.
+ * <p>
+ * - Nyckeln är SHA-256 av tokenen, så själva tokensträngarna sparas inte
+ * - Cachen är begränsad till maxSize tokens. Är den full kastas utgångna
+ *   tokens och tokens som inte använts sedan förra varvet i kön (CLOCK, som
+ *   i TtlCache) – amorterat O(1) per ny token
+ * - alwaysValidate körs vid varje anrop, även vid träff – för kontroller
+ *   som kan ändras under tokenens livstid (t.ex. spärrade tokens)
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+
+    // SHA-256 av tokenen som fyra long – liten nyckel med billig equals/hashCode
+    private record TokenKey(long a, long b, long c, long d) {
+    }
+
+    private static final class Entry {
+
+        final TokenKey key;
+        final Jwt jwt;
+        final Instant expiresAt;
+
+        // Satt vid träff sedan tokenen senast passerade i evictionkön
+        volatile boolean referenced;
+
+        Entry(TokenKey key, Jwt jwt, Instant expiresAt) {
+            this.key = key;
+            this.jwt = jwt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // MessageDigest är inte trådsäker; en instans per tråd
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final JwtDecoder delegate;
+    private final int maxSize;
+    private final OAuth2TokenValidator<Jwt> alwaysValidate;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<TokenKey, Entry> entries = new ConcurrentHashMap<>();
+
+    // Evictionordning (CLOCK); ersatta poster hoppas över, hålls under 2 * maxSize
+    private final ConcurrentLinkedQueue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    public CachingJwtDecoder(JwtDecoder delegate, int maxSize, OAuth2TokenValidator<Jwt> alwaysValidate) {
+        this(delegate, maxSize, alwaysValidate, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, int maxSize, OAuth2TokenValidator<Jwt> alwaysValidate, Clock clock) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.alwaysValidate = alwaysValidate;
+        this.clock = clock;
+    }
+
+    /**
+     * Validator som alltid godkänner – när inga extra kontroller behövs.
+     */
+    public static OAuth2TokenValidator<Jwt> noExtraValidation() {
+        return jwt -> OAuth2TokenValidatorResult.success();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        TokenKey key = keyOf(token);
+        Instant now = clock.instant();
+
+        Entry entry = entries.get(key);
+        if (entry != null && now.isBefore(entry.expiresAt)) {
+            validate(entry.jwt);
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            hitNanos.add(System.nanoTime() - start);
+            return entry.jwt;
+        }
+        if (entry != null && entries.remove(key, entry)) {
+            evictions.increment();
+        }
+
+        // Miss: full verifiering av signatur och claims
+        Jwt jwt = delegate.decode(token);
+        validate(jwt);
+
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt != null && now.isBefore(expiresAt)) {
+            Entry added = new Entry(key, jwt, expiresAt);
+            entries.put(key, added);
+            order.add(added);
+            queued.incrementAndGet();
+            evict(now);
+        }
+        misses.increment();
+        missNanos.add(System.nanoTime() - start);
+        return jwt;
+    }
+
+    /**
+     * Träffar, missar och genomsnittlig tid per decode vid träff respektive
+     * miss – skillnaden är vad cachen sparar per request.
+     */
+    public Map<String, Long> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("size", (long) entries.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("evictions", evictions.sum());
+        stats.put("avgHitMicros", hitCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(hitNanos.sum() / hitCount));
+        stats.put("avgMissMicros", missCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(missNanos.sum() / missCount));
+        return stats;
+    }
+
+    // Kör kontrollerna som måste göras vid varje request
+    private void validate(Jwt jwt) {
+        OAuth2TokenValidatorResult result = alwaysValidate.validate(jwt);
+        if (result.hasErrors()) {
+            String description = result.getErrors().iterator().next().getDescription();
+            throw new JwtValidationException(description, result.getErrors());
+        }
+    }
+
+    /**
+     * Antal poster i evictionkön, inklusive ersatta (för tester).
+     */
+    int queued() {
+        return queued.get();
+    }
+
+    // CLOCK: går fram i kön tills cachen ryms och kön är kort nog
+    private void evict(Instant now) {
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Entry entry = order.poll();
+            if (entry == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            if (entries.get(entry.key) != entry) {
+                continue; // ersatt av en senare decode av samma token
+            }
+            if (!now.isBefore(entry.expiresAt) || (entries.size() > maxSize && !entry.referenced)) {
+                if (entries.remove(entry.key, entry)) {
+                    evictions.increment();
+                }
+                continue;
+            }
+            // Andra chansen
+            entry.referenced = false;
+            order.add(entry);
+            queued.incrementAndGet();
+        }
+    }
+
+    private static TokenKey keyOf(String token) {
+        byte[] digest = SHA_256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer buffer = ByteBuffer.wrap(digest);
+        return new TokenKey(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+}
@@ -4,13 +4,14 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import se.jensen.mikael.springboot.model.User;
 import se.jensen.mikael.springboot.repository.UserRepository;
 
 /**
  * CustomUserDetailService används av Spring Security för autentisering.
- * Klassen hämtar en användare från databasen baserat på användarnamn
+ * Klassen hämtar en användares inloggningsuppgifter baserat på användarnamn
  * och returnerar ett UserDetails-objekt som Spring Security kan använda.
+ * Uppgifterna läses genom UserCredentialsCache, så upprepade inloggningar
+ * inte går till databasen varje gång.
  */
 @Service
 public class CustomUserDetailService implements UserDetailsService {
@@ -18,23 +19,28 @@ public class CustomUserDetailService implements UserDetailsService {
     // Repository för att hämta användare från databasen
     private final UserRepository userRepository;
 
+    // Kort-TTL-cache för inloggningsuppgifter
+    private final UserCredentialsCache credentialsCache;
+
     // Konstruktor för Dependency Injection
-    public CustomUserDetailService(UserRepository userRepository) {
+    public CustomUserDetailService(UserRepository userRepository, UserCredentialsCache credentialsCache) {
         this.userRepository = userRepository;
+        this.credentialsCache = credentialsCache;
     }
 
     /**
-     * Hämtar en användare från databasen baserat på username.
+     * Hämtar en användare baserat på username, från cachen eller databasen.
      * Anropas automatiskt av Spring Security vid login.
      */
     @Override
     public UserDetails loadUserByUsername(String username) {
-        // Hämta user från DB
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() ->
-                        new UsernameNotFoundException("User not found: " + username));
+        // Hämta bara id, username, hash och roll från DB (ingen entitet)
+        UserCredentials credentials = credentialsCache.get(username, key ->
+                userRepository.findCredentialsByUsername(key)
+                        .orElseThrow(() ->
+                                new UsernameNotFoundException("User not found: " + key)));
 
         // Returnera vår wrapper MyUserDetails
-        return new MyUserDetails(user);
+        return new MyUserDetails(credentials);
     }
 }
@@ -0,0 +1,124 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.jwk.JWK;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.model.JwtSigningKey;
+import se.jensen.mikael.springboot.repository.JwtSigningKeyRepository;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * JwtKeyStore i databasen (tabellen jwt_signing_key, se JwtSigningKey).
+ * <p>
+ * Nycklarnas privata delar krypteras med AES-GCM och nyckeln i
+ * JWT_KEY_ENCRYPTION_KEY (base64, 32 byte), med kid som extra autentiserad
+ * data – en rad kan inte flyttas till ett annat kid. Saknas nyckeln är
+ * lagringen avstängd och signeringsnyckeln kan inte roteras.
+ * <p>
+ * Läser alltid från primären: en släpande replika kan sakna en nyss skapad
+ * next-nyckel.
+ */
+@Component
+public class JpaJwtKeyStore implements JwtKeyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(JpaJwtKeyStore.class);
+
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private final JwtSigningKeyRepository repository;
+    private final SecretKeySpec encryptionKey;
+    private final SecureRandom random = new SecureRandom();
+
+    public JpaJwtKeyStore(JwtSigningKeyRepository repository,
+                          @Value("${security.jwt.key-encryption-key:}") String encryptionKey) {
+        this.repository = repository;
+        if (encryptionKey.isBlank()) {
+            logger.warn("JWT_KEY_ENCRYPTION_KEY not set, JWT key rotation is disabled");
+            this.encryptionKey = null;
+        } else {
+            byte[] bytes = Base64.getDecoder().decode(encryptionKey);
+            if (bytes.length != 32) {
+                throw new IllegalStateException("JWT_KEY_ENCRYPTION_KEY måste vara 32 byte (base64)");
+            }
+            this.encryptionKey = new SecretKeySpec(bytes, "AES");
+        }
+    }
+
+    @Override
+    public boolean enabled() {
+        return encryptionKey != null;
+    }
+
+    @Override
+    public List<StoredKey> load() {
+        return ReplicaRoutingDataSource.onPrimary(repository::findAll).stream()
+                .map(row -> new StoredKey(decrypt(row.getKid(), row.getKeyData()),
+                        row.getPublishedAt(), row.getActivatedAt()))
+                .toList();
+    }
+
+    @Override
+    public void insert(JWK key, Instant publishedAt) {
+        repository.save(new JwtSigningKey(key.getKeyID(), encrypt(key), publishedAt));
+    }
+
+    @Override
+    public boolean activate(String kid, Instant activatedAt) {
+        return repository.activate(kid, activatedAt) == 1;
+    }
+
+    @Override
+    public void delete(String kid) {
+        repository.deleteById(kid);
+    }
+
+    private String encrypt(JWK key) {
+        try {
+            byte[] iv = new byte[IV_BYTES];
+            random.nextBytes(iv);
+            Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key.getKeyID(), iv);
+            byte[] encrypted = cipher.doFinal(key.toJSONString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(
+                    ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Kunde inte kryptera JWT-nyckel " + key.getKeyID(), e);
+        }
+    }
+
+    private JWK decrypt(String kid, String keyData) {
+        try {
+            byte[] bytes = Base64.getDecoder().decode(keyData);
+            Cipher cipher = cipher(Cipher.DECRYPT_MODE, kid, Arrays.copyOf(bytes, IV_BYTES));
+            byte[] json = cipher.doFinal(bytes, IV_BYTES, bytes.length - IV_BYTES);
+            return JWK.parse(new String(json, StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException | ParseException e) {
+            throw new IllegalStateException("Kunde inte läsa JWT-nyckel " + kid, e);
+        }
+    }
+
+    private Cipher cipher(int mode, String kid, byte[] iv) throws GeneralSecurityException {
+        if (encryptionKey == null) {
+            throw new IllegalStateException("JWT_KEY_ENCRYPTION_KEY saknas");
+        }
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+        cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+        return cipher;
+    }
+}
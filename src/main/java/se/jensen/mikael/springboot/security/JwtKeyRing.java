@@ -0,0 +1,262 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.AsymmetricJWK;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.proc.JWSKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import se.jensen.mikael.springboot.exception.PreconditionFailedException;
+import se.jensen.mikael.springboot.security.JwtKeyStore.StoredKey;
+import se.jensen.mikael.springboot.service.TokenService;
+
+import java.security.Key;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signeringsnycklarna för JWT, med rotation utan driftstopp.
+ * <p>
+ * Ringen har tre sorters nycklar:
+ * - active: signerar nya tokens
+ * - next: publiceras i JWKS men signerar inget ännu, så att andra tjänster
+ *   hunnit hämta den innan den tas i bruk
+ * - retiring: tidigare active, verifierar tokens som ännu inte gått ut
+ * <p>
+ * rotate() gör next till active och active till retiring. En retiring-nyckel
+ * tas bort när alla tokens den signerat gått ut och JWKS-cachen hos andra
+ * hunnit förnyas.
+ * <p>
+ * Nycklar som skapas vid rotation sparas i JwtKeyStore (databasen) och delas
+ * av alla instanser: refresh() läser in dem med jämna mellanrum, så en
+ * rotation på en nod slår igenom på alla inom refresh-intervallet. Startnyckeln
+ * (från miljön) signerar tills den första rotationen. rotate() vägrar göra
+ * next till active innan den publicerats i minst JWKS_MAX_AGE plus
+ * refresh-intervallet – annars kan andra noder, och klienter med cachad
+ * JWKS, sakna nyckeln när den börjar signera.
+ * <p>
+ * Verifiering slår upp nyckeln på tokenens kid i en map – O(1) oavsett hur
+ * många nycklar ringen har. Hela tillståndet är oföränderligt och byts ut
+ * vid rotation, så läsningar behöver inga lås.
+ */
+public class JwtKeyRing implements JWSKeySelector<SecurityContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    /**
+     * Hur länge andra får cacha /.well-known/jwks.json.
+     */
+    public static final Duration JWKS_MAX_AGE = Duration.ofMinutes(5);
+
+    private record Retiring(JWK key, Instant removeAfter) {
+    }
+
+    private record State(JWK active, List<StoredKey> next, List<Retiring> retiring,
+                         Map<String, List<Key>> verificationKeys, JWKSet signingKeys, String publicJwks) {
+    }
+
+    private final JWK initialKey;
+    private final JwtKeyStore store;
+    private final Duration refreshInterval;
+    private final JWSAlgorithm algorithm;
+    private final Clock clock;
+    private volatile State state;
+
+    public JwtKeyRing(JWK initialKey, JwtKeyStore store, Duration refreshInterval) {
+        this(initialKey, store, refreshInterval, Clock.systemUTC());
+    }
+
+    JwtKeyRing(JWK initialKey, JwtKeyStore store, Duration refreshInterval, Clock clock) {
+        this.initialKey = initialKey;
+        this.store = store;
+        this.refreshInterval = refreshInterval;
+        this.algorithm = JWSAlgorithm.parse(initialKey.getAlgorithm().getName());
+        this.clock = clock;
+        // Bara startnyckeln tills refresh() läst in de delade nycklarna
+        this.state = build(initialKey, List.of(), List.of());
+    }
+
+    /**
+     * Nyckeln som signerar nya tokens.
+     */
+    public JWK active() {
+        return state.active();
+    }
+
+    /**
+     * Alla nycklar med privata delar – för JwtEncoder, som väljer på kid.
+     */
+    public JWKSet signingKeys() {
+        return state.signingKeys();
+    }
+
+    /**
+     * JWKS-dokumentet (bara publika delar), färdigserialiserat.
+     */
+    public String publicJwks() {
+        return state.publicJwks();
+    }
+
+    /**
+     * Verifieringsnyckeln för tokenens kid. Okänd kid eller fel algoritm
+     * ger en tom lista, och tokenen underkänns.
+     */
+    @Override
+    public List<? extends Key> selectJWSKeys(JWSHeader header, SecurityContext context) {
+        if (!algorithm.equals(header.getAlgorithm()) || header.getKeyID() == null) {
+            return List.of();
+        }
+        return state.verificationKeys().getOrDefault(header.getKeyID(), List.of());
+    }
+
+    /**
+     * Byter signeringsnyckel: next blir active, active blir retiring och en
+     * ny next skapas. Returnerar kid för den nya active-nyckeln.
+     * PreconditionFailedException (→ 412) om next inte publicerats länge nog
+     * eller om lagringen inte är konfigurerad.
+     */
+    public synchronized String rotate() {
+        if (!store.enabled()) {
+            throw new PreconditionFailedException("Nyckelrotation kräver JWT_KEY_ENCRYPTION_KEY");
+        }
+        reload();
+        StoredKey next = state.next().get(0);
+        Instant now = clock.instant();
+        Instant earliest = next.publishedAt().plus(JWKS_MAX_AGE).plus(refreshInterval);
+        if (now.isBefore(earliest)) {
+            throw new PreconditionFailedException("Nästa nyckel " + next.key().getKeyID()
+                    + " har inte publicerats länge nog, rotera tidigast " + earliest);
+        }
+        if (store.activate(next.key().getKeyID(), now)) {
+            store.insert(generate(), now);
+            logger.info("JWT signing key rotated, active kid {}", next.key().getKeyID());
+        }
+        // Roterade en annan nod samtidigt gäller dess rotation
+        reload();
+        return state.active().getKeyID();
+    }
+
+    /**
+     * Läser in de delade nycklarna, skapar en next-nyckel om ingen finns och
+     * tar bort retiring-nycklar vars tokens alla har gått ut. Ett fel loggas
+     * och nuvarande nycklar behålls till nästa försök.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${security.jwt.key-refresh-interval-ms:30000}")
+    public void refresh() {
+        if (!store.enabled()) {
+            return;
+        }
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            logger.warn("Could not load JWT signing keys, keeping current ones: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * kid → roll (active, next, retiring), för övervakning.
+     */
+    public Map<String, String> keys() {
+        State current = state;
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put(current.active().getKeyID(), "active");
+        current.next().forEach(next -> keys.put(next.key().getKeyID(), "next"));
+        current.retiring().forEach(retiring -> keys.put(retiring.key().getKeyID(), "retiring"));
+        return keys;
+    }
+
+    private synchronized void reload() {
+        Instant now = clock.instant();
+        List<StoredKey> stored = new ArrayList<>(store.load());
+        if (stored.stream().noneMatch(key -> key.activatedAt() == null)) {
+            JWK next = generate();
+            store.insert(next, now);
+            stored.add(new StoredKey(next, now, null));
+        }
+
+        List<StoredKey> activated = stored.stream()
+                .filter(key -> key.activatedAt() != null)
+                .sorted(Comparator.comparing(StoredKey::activatedAt))
+                .toList();
+        List<StoredKey> next = stored.stream()
+                .filter(key -> key.activatedAt() == null)
+                .sorted(Comparator.comparing(StoredKey::publishedAt))
+                .toList();
+
+        // Varje nyckel före den senast aktiverade är retiring från att efterträdaren aktiverades
+        JWK active = initialKey;
+        List<Retiring> retiring = new ArrayList<>();
+        for (StoredKey key : activated) {
+            Instant removeAfter = key.activatedAt().plus(retireAfter());
+            if (now.isBefore(removeAfter)) {
+                retiring.add(new Retiring(active, removeAfter));
+            } else if (active != initialKey) {
+                store.delete(active.getKeyID());
+            }
+            active = key.key();
+        }
+        state = build(active, next, retiring);
+    }
+
+    // Tokens signerade med en nyckel gäller högst ACCESS_TOKEN_TTL efter att den slutat
+    // signera – på andra noder först när de läst in rotationen
+    private Duration retireAfter() {
+        return TokenService.ACCESS_TOKEN_TTL.plus(JWKS_MAX_AGE).plus(refreshInterval);
+    }
+
+    private static State build(JWK active, List<StoredKey> next, List<Retiring> retiring) {
+        List<JWK> all = new ArrayList<>();
+        all.add(active);
+        next.forEach(n -> all.add(n.key()));
+        retiring.forEach(r -> all.add(r.key()));
+
+        Map<String, List<Key>> verificationKeys = new HashMap<>();
+        for (JWK key : all) {
+            try {
+                verificationKeys.put(key.getKeyID(), List.of(((AsymmetricJWK) key).toPublicKey()));
+            } catch (JOSEException e) {
+                throw new IllegalStateException("Ogiltig JWT-nyckel " + key.getKeyID(), e);
+            }
+        }
+
+        JWKSet signingKeys = new JWKSet(all);
+        return new State(active, List.copyOf(next), List.copyOf(retiring), Map.copyOf(verificationKeys),
+                signingKeys, signingKeys.toPublicJWKSet().toString());
+    }
+
+    // Ny nyckel med samma algoritm som ringen; kid = RFC 7638-tumavtryck
+    private JWK generate() {
+        try {
+            if (JWSAlgorithm.RS256.equals(algorithm)) {
+                return new RSAKeyGenerator(2048)
+                        .algorithm(JWSAlgorithm.RS256)
+                        .keyIDFromThumbprint(true)
+                        .generate();
+            }
+            if (JWSAlgorithm.ES256.equals(algorithm)) {
+                return new ECKeyGenerator(Curve.P_256)
+                        .algorithm(JWSAlgorithm.ES256)
+                        .keyIDFromThumbprint(true)
+                        .generate();
+            }
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Kunde inte skapa JWT-nyckel", e);
+        }
+        throw new IllegalStateException("Algoritmen stöds inte: " + algorithm);
+    }
+}
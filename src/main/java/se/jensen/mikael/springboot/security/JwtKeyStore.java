@@ -0,0 +1,38 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.jwk.JWK;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Delad lagring för nycklar som skapas vid rotation (se JwtKeyRing).
+ * Alla instanser läser samma nycklar, så en rotation på en nod slår igenom
+ * på alla vid nästa JwtKeyRing.refresh.
+ */
+public interface JwtKeyStore {
+
+    /**
+     * En lagrad nyckel. activatedAt är null så länge nyckeln är next.
+     */
+    record StoredKey(JWK key, Instant publishedAt, Instant activatedAt) {
+    }
+
+    /**
+     * False om lagringen inte är konfigurerad – ringen kör då bara med
+     * startnyckeln och kan inte roteras.
+     */
+    boolean enabled();
+
+    List<StoredKey> load();
+
+    void insert(JWK key, Instant publishedAt);
+
+    /**
+     * Gör nyckeln till active. False om den redan aktiverats (t.ex. av en
+     * annan nod som roterade samtidigt).
+     */
+    boolean activate(String kid, Instant activatedAt);
+
+    void delete(String kid);
+}
@@ -0,0 +1,285 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.exception.TooManyRequestsException;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stoppar lösenordsgissning innan BCrypt körs.
+ * <p>
+ * Misslyckade inloggningar räknas per användarnamn och per klient-IP i ett
+ * glidande fönster. När ett tak nås avvisas nya försök med 429 direkt i
+ * AuthController – utan att AuthenticationManager (och BCrypt) anropas.
+ * <p>
+ * Varje nyckel (namn eller IP) räknas på två ställen:
+ * - en count-min-skiss (fasta arrayer, två rader) som snabbt svarar "under
+ *   taket" för nästan alla försök. Kollisioner ger bara för höga värden.
+ * - en exakt tabell, begränsad till max-tracked nycklar, som bekräftar en
+ *   spärr innan den ges. Många olika namn som krockar i skissen kan alltså
+ *   inte spärra ett namn som själv inte misslyckats.
+ * Är tabellen full (fler olika nycklar i fönstret än max-tracked) gäller
+ * skissen ensam för nycklar som inte finns i tabellen. Skissen dimensioneras
+ * för den volymen: med 65536 celler per rad krävs runt en halv miljon
+ * misslyckanden per fönster innan krockar ensamma når taket på 10.
+ * <p>
+ * Varje cell är en long med fönsternummer och räknare för nuvarande och
+ * föregående fönster; den uppdateras med CAS utan lås. Gamla fönster räknas
+ * som noll, så räknarna klingar av av sig själva.
+ */
+@Component
+public class LoginThrottle {
+
+    private final Counter byUsername;
+    private final Counter byIp;
+    private final int maxPerUsername;
+    private final int maxPerIp;
+    private final long windowMillis;
+    private final Clock clock;
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder blockedByUsername = new LongAdder();
+    private final LongAdder blockedByIp = new LongAdder();
+    private final LongAdder sketchOnly = new LongAdder();
+
+    // Två konstruktorer (den andra för tester) – Spring ska använda denna
+    @Autowired
+    public LoginThrottle(@Value("${security.login-throttle.window-seconds:300}") long windowSeconds,
+                         @Value("${security.login-throttle.max-failures-per-username:10}") int maxPerUsername,
+                         @Value("${security.login-throttle.max-failures-per-ip:50}") int maxPerIp,
+                         @Value("${security.login-throttle.stripes:65536}") int stripes,
+                         @Value("${security.login-throttle.max-tracked:100000}") int maxTracked) {
+        this(windowSeconds, maxPerUsername, maxPerIp, stripes, maxTracked, Clock.systemUTC());
+    }
+
+    LoginThrottle(long windowSeconds, int maxPerUsername, int maxPerIp, int stripes, int maxTracked,
+                  Clock clock) {
+        this.windowMillis = windowSeconds * 1000;
+        this.maxPerUsername = maxPerUsername;
+        this.maxPerIp = maxPerIp;
+        this.byUsername = new Counter(stripes, maxTracked);
+        this.byIp = new Counter(stripes, maxTracked);
+        this.clock = clock;
+    }
+
+    /**
+     * Kastar TooManyRequestsException (→ 429) om användarnamnet eller IP:t
+     * har för många misslyckade försök i fönstret.
+     */
+    public void check(String username, String ip) {
+        long now = clock.millis();
+        long window = now / windowMillis;
+        double elapsed = (double) (now % windowMillis) / windowMillis;
+
+        if (byUsername.atLimit(normalize(username), window, elapsed, maxPerUsername)) {
+            blockedByUsername.increment();
+            throw tooMany(now);
+        }
+        if (byIp.atLimit(ip, window, elapsed, maxPerIp)) {
+            blockedByIp.increment();
+            throw tooMany(now);
+        }
+    }
+
+    /**
+     * Registrerar en misslyckad inloggning.
+     */
+    public void recordFailure(String username, String ip) {
+        long window = clock.millis() / windowMillis;
+        byUsername.increment(normalize(username), window);
+        byIp.increment(ip, window);
+        failures.increment();
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("failures", failures.sum());
+        stats.put("blockedByUsername", blockedByUsername.sum());
+        stats.put("blockedByIp", blockedByIp.sum());
+        stats.put("blocked", blockedByUsername.sum() + blockedByIp.sum());
+        stats.put("trackedUsernames", (long) byUsername.exact.size());
+        stats.put("trackedIps", (long) byIp.exact.size());
+        // Spärrar som bara skissen kunde avgöra (tabellen full)
+        stats.put("sketchOnly", sketchOnly.sum());
+        return stats;
+    }
+
+    // Ungefärlig väntetid: tills nuvarande fönster är slut och börjar vägas ned
+    private TooManyRequestsException tooMany(long now) {
+        long retryAfterSeconds = Math.max(1, (windowMillis - now % windowMillis + 999) / 1000);
+        return new TooManyRequestsException("För många misslyckade inloggningar, försök igen senare",
+                retryAfterSeconds);
+    }
+
+    private static String normalize(String username) {
+        return username == null ? "" : username.toLowerCase(Locale.ROOT);
+    }
+
+    // ---- RÄKNARE ----
+
+    /**
+     * Skiss framför en exakt tabell för en sorts nyckel.
+     */
+    private final class Counter {
+
+        private final Sketch sketch;
+        private final Map<String, AtomicLong> exact = new ConcurrentHashMap<>();
+        private final int maxTracked;
+
+        // Senaste fönstret då tabellen rensades – högst en rensning per fönster
+        private final AtomicLong prunedWindow = new AtomicLong(-1);
+
+        Counter(int stripes, int maxTracked) {
+            this.sketch = new Sketch(stripes);
+            this.maxTracked = maxTracked;
+        }
+
+        void increment(String key, long window) {
+            sketch.increment(key, window);
+            AtomicLong cell = exact.get(key);
+            if (cell == null) {
+                if (exact.size() >= maxTracked && !prune(window)) {
+                    return;
+                }
+                cell = exact.computeIfAbsent(key, k -> new AtomicLong());
+            }
+            Cells.increment(cell, window);
+        }
+
+        boolean atLimit(String key, long window, double elapsed, int max) {
+            if (sketch.estimate(key, window, elapsed) < max) {
+                return false;
+            }
+            AtomicLong cell = exact.get(key);
+            if (cell != null) {
+                return Cells.estimate(cell.get(), window, elapsed) >= max;
+            }
+            if (exact.size() < maxTracked) {
+                // Tabellen har plats, så nyckeln har inga misslyckanden – bara krockar
+                return false;
+            }
+            sketchOnly.increment();
+            return true;
+        }
+
+        // Tar bort nycklar vars fönster är slut; true om det blev plats
+        private boolean prune(long window) {
+            long last = prunedWindow.get();
+            if (last != window && prunedWindow.compareAndSet(last, window)) {
+                exact.values().removeIf(cell -> Cells.estimate(cell.get(), window, 0) == 0);
+            }
+            return exact.size() < maxTracked;
+        }
+    }
+
+    /**
+     * Glidande fönsterräknare packad i en long.
+     * Cell: fönsternummer (32 bitar) | föregående (16) | nuvarande (16).
+     */
+    private static final class Cells {
+
+        private static final long MAX_COUNT = 0xFFFF;
+
+        static long next(long cell, long window) {
+            long cellWindow = cell >>> 32;
+            long previous;
+            long current;
+            if (cellWindow == (window & 0xFFFFFFFFL)) {
+                previous = (cell >>> 16) & MAX_COUNT;
+                current = Math.min(MAX_COUNT, (cell & MAX_COUNT) + 1);
+            } else if (cellWindow == ((window - 1) & 0xFFFFFFFFL)) {
+                previous = cell & MAX_COUNT;
+                current = 1;
+            } else {
+                previous = 0;
+                current = 1;
+            }
+            return (window & 0xFFFFFFFFL) << 32 | previous << 16 | current;
+        }
+
+        static void increment(AtomicLong cell, long window) {
+            long value;
+            do {
+                value = cell.get();
+            } while (!cell.compareAndSet(value, next(value, window)));
+        }
+
+        // Glidande fönster: föregående fönster vägs ned med hur långt vi kommit i nuvarande
+        static double estimate(long cell, long window, double elapsed) {
+            long cellWindow = cell >>> 32;
+            if (cellWindow == (window & 0xFFFFFFFFL)) {
+                return ((cell >>> 16) & MAX_COUNT) * (1 - elapsed) + (cell & MAX_COUNT);
+            }
+            if (cellWindow == ((window - 1) & 0xFFFFFFFFL)) {
+                return (cell & MAX_COUNT) * (1 - elapsed);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Count-min-skiss med två rader glidande fönsterräknare (se Cells).
+     */
+    private static final class Sketch {
+
+        private final AtomicLongArray row0;
+        private final AtomicLongArray row1;
+        private final int mask;
+        private final long seed = new SecureRandom().nextLong();
+
+        Sketch(int stripes) {
+            int size = Integer.highestOneBit(Math.max(2, stripes - 1)) << 1;
+            this.row0 = new AtomicLongArray(size);
+            this.row1 = new AtomicLongArray(size);
+            this.mask = size - 1;
+        }
+
+        void increment(String key, long window) {
+            long h = hash(key);
+            increment(row0, (int) h & mask, window);
+            increment(row1, (int) (h >>> 32) & mask, window);
+        }
+
+        double estimate(String key, long window, double elapsed) {
+            long h = hash(key);
+            return Math.min(
+                    Cells.estimate(row0.get((int) h & mask), window, elapsed),
+                    Cells.estimate(row1.get((int) (h >>> 32) & mask), window, elapsed));
+        }
+
+        private static void increment(AtomicLongArray row, int index, long window) {
+            long cell;
+            do {
+                cell = row.get(index);
+            } while (!row.compareAndSet(index, cell, Cells.next(cell, window)));
+        }
+
+        // Slumpat frö: en angripare kan inte räkna ut namn som krockar med offrets
+        private long hash(String key) {
+            long h = seed;
+            if (key != null) {
+                for (int i = 0; i < key.length(); i++) {
+                    h = (h ^ key.charAt(i)) * 0x100000001B3L;
+                }
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
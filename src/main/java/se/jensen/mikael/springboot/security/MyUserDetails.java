@@ -4,43 +4,42 @@ import org.jspecify.annotations.Nullable;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import se.jensen.mikael.springboot.model.User;
 
 import java.util.Collection;
 import java.util.List;
 
 /**
  * Implementerar UserDetails, som Spring Security använder
- * Wrappas runt vår egen User-entity
+ * Wrappas runt UserCredentials (inte JPA-entiteten)
  * Hanterar username, password och authorities (roller)
  * Returnerar alltid true för account-status (kan byggas ut senare)
  */
 public class MyUserDetails implements UserDetails {
 
-    // Referens till vår egen User-entity
-    private final User user;
+    // Användarens inloggningsuppgifter
+    private final UserCredentials credentials;
 
-    // Konstruktor som tar in en User
-    public MyUserDetails(User user) {
-        this.user = user;
+    // Konstruktor som tar in UserCredentials
+    public MyUserDetails(UserCredentials credentials) {
+        this.credentials = credentials;
     }
 
 
     @Override
     public String getUsername() {
-        return user.getUsername();
+        return credentials.username();
     }
 
 
     @Override
     public @Nullable String getPassword() {
-        return user.getPassword();
+        return credentials.passwordHash();
     }
 
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return List.of(new SimpleGrantedAuthority("ROLE_" + user.getRole()));
+        return List.of(new SimpleGrantedAuthority("ROLE_" + credentials.role()));
     }
 
 
@@ -65,7 +64,11 @@ public class MyUserDetails implements UserDetails {
     }
 
 
-    public User getDomainUser() {
-        return user;
+    public Long getUserId() {
+        return credentials.id();
+    }
+
+    public Long getProfileVersion() {
+        return credentials.version();
     }
 }
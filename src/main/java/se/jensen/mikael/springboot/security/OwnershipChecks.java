@@ -0,0 +1,59 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.service.UserService;
+
+/**
+ * Ägarkontroller för @PreAuthorize, t.ex.
+ * {@code @PreAuthorize("hasRole('ADMIN') or @ownership.isSelf(authentication, #id)")}
+ * Användarens id läses ur tokenens uid-claim, så kontrollen kräver
+ * ingen databasfråga. Äldre tokens utan uid slås upp via username.
+ */
+@Component("ownership")
+public class OwnershipChecks {
+
+    private final UserService userService;
+    private final PostRepository postRepository;
+
+    public OwnershipChecks(UserService userService, PostRepository postRepository) {
+        this.userService = userService;
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * True om den inloggade användaren är användaren med userId.
+     */
+    public boolean isSelf(Authentication authentication, Long userId) {
+        if (authentication == null || userId == null) {
+            return false;
+        }
+        return userId.equals(currentUserId(authentication));
+    }
+
+    /**
+     * True om den inloggade användaren har skrivit posten med postId.
+     * Poster som saknas eller saknar författare ägs inte av någon (→ 403).
+     */
+    public boolean isPostAuthor(Authentication authentication, Long postId) {
+        if (authentication == null || postId == null) {
+            return false;
+        }
+        return postRepository.findAuthorIdById(postId)
+                .map(authorId -> authorId.equals(currentUserId(authentication)))
+                .orElse(false);
+    }
+
+    private Long currentUserId(Authentication authentication) {
+        if (authentication instanceof JwtAuthenticationToken jwtAuth) {
+            Long tokenUserId = TokenClaims.userId(jwtAuth.getToken());
+            if (tokenUserId != null) {
+                return tokenUserId;
+            }
+        }
+        // Fallback för tokens utan uid (cachad uppslagning)
+        return userService.getUserByUsername(authentication.getName()).id();
+    }
+}
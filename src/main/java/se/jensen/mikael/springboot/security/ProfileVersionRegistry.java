@@ -0,0 +1,77 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.cache.TtlCache;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Användarnas aktuella profilversion (app_user.version), cachad per nod.
+ * <p>
+ * En JWT bär profilen som claims (se TokenClaims) och User.version som
+ * "ver". ProfileVersionValidator underkänner tokens med äldre ver än
+ * versionen här – annars skulle gamla claims gälla tills tokenen går ut.
+ * <p>
+ * Versionen läses från databasen (primären) och cachas i
+ * security.profile-version.ttl-seconds. Databasen är den delade sanningen:
+ * en ändring på en annan nod, eller före en omstart, slår igenom här senast
+ * när cachen gått ut. På noden som gjorde ändringen invaliderar UserService
+ * direkt efter commit. En borttagen användare (deleted_at satt, eller
+ * raden borta) har ingen version, och alla dess tokens underkänns.
+ */
+@Component
+public class ProfileVersionRegistry {
+
+    // Version som gör alla tokens för en borttagen användare inaktuella
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final Function<Long, Optional<Long>> loader;
+    private final TtlCache<Long, Long> versions;
+
+    // Två konstruktorer (den andra för tester) – Spring ska använda denna
+    @Autowired
+    public ProfileVersionRegistry(UserRepository userRepository,
+                                  @Value("${security.profile-version.cache-size:100000}") int maxSize,
+                                  @Value("${security.profile-version.ttl-seconds:30}") long ttlSeconds) {
+        this(userRepository::findVersionById, maxSize, ttlSeconds);
+    }
+
+    ProfileVersionRegistry(Function<Long, Optional<Long>> loader, int maxSize, long ttlSeconds) {
+        this.loader = loader;
+        this.versions = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Glömmer användarens cachade version – anropas efter commit när profilen
+     * ändrats eller användaren tagits bort. Nästa token läser om den.
+     */
+    public void invalidate(long userId) {
+        versions.invalidate(userId);
+    }
+
+    /**
+     * True om tokenens version är äldre än användarens aktuella version.
+     */
+    public boolean isStale(long userId, long tokenVersion) {
+        return tokenVersion < versions.get(userId, this::load);
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        return versions.stats();
+    }
+
+    // Från primären: en släpande replika kan ha den gamla versionen kvar
+    private Long load(Long userId) {
+        return ReplicaRoutingDataSource.onPrimary(() -> loader.apply(userId)).orElse(DELETED);
+    }
+}
@@ -0,0 +1,38 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Underkänner tokens vars profilversion (ver) är äldre än användarens
+ * aktuella version i ProfileVersionRegistry. Körs vid varje request,
+ * även när tokenen kommer från CachingJwtDecoder; versionen kommer då
+ * oftast ur registrets cache.
+ * Tokens utan uid/ver (utfärdade före claims fanns) släpps igenom.
+ */
+public class ProfileVersionValidator implements OAuth2TokenValidator<Jwt> {
+
+    private static final OAuth2TokenValidatorResult STALE = OAuth2TokenValidatorResult.failure(
+            new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "Profilen har ändrats, hämta en ny token", null));
+
+    private static final OAuth2TokenValidatorResult VALID = OAuth2TokenValidatorResult.success();
+
+    private final ProfileVersionRegistry registry;
+
+    public ProfileVersionValidator(ProfileVersionRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        Long userId = TokenClaims.userId(jwt);
+        Long version = TokenClaims.profileVersion(jwt);
+        if (userId != null && version != null && registry.isStale(userId, version)) {
+            return STALE;
+        }
+        return VALID;
+    }
+}
@@ -0,0 +1,84 @@
+package se.jensen.mikael.springboot.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Begränsar anropstakten per klient innan requesten når controllers.
+ * <p>
+ * Läggs efter BearerTokenAuthenticationFilter i SecurityFilterChain, så en
+ * inloggad klient räknas på JWT:ns subject och en anonym på IP. IP:t är
+ * getRemoteAddr, som Tomcat bara hämtar ur X-Forwarded-For när anslutningen
+ * kommer från en betrodd proxy (server.forward-headers-strategy=native) –
+ * aldrig direkt ur en header klienten själv sätter. Gruppen
+ * väljs på route: /request-token* är AUTH, GET/HEAD är READS och övriga
+ * metoder WRITES (se RateLimiter för gränserna).
+ * <p>
+ * Svaret får RateLimit-Limit, RateLimit-Remaining och RateLimit-Reset;
+ * vid 429 även Retry-After. Registreras inte som @Component – då skulle
+ * Spring Boot dessutom lägga den i servlet-kedjan och räkna två gånger.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+
+    public RateLimitFilter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain chain) throws ServletException, IOException {
+        RateLimiter.Decision decision = rateLimiter.tryAcquire(group(request), clientKey(request));
+        if (decision == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.setHeader("RateLimit-Limit", String.valueOf(decision.limit()));
+        response.setHeader("RateLimit-Remaining", String.valueOf(decision.remaining()));
+        response.setHeader("RateLimit-Reset", String.valueOf(decision.resetSeconds()));
+
+        if (!decision.allowed()) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("För många anrop, försök igen senare");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    static RateLimiter.Group group(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith("/request-token")) {
+            return RateLimiter.Group.AUTH;
+        }
+        String method = request.getMethod();
+        if ("GET".equals(method) || "HEAD".equals(method)) {
+            return RateLimiter.Group.READS;
+        }
+        return RateLimiter.Group.WRITES;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth instanceof JwtAuthenticationToken jwt) {
+            return "sub:" + jwt.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+}
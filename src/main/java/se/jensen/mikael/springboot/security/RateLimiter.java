@@ -0,0 +1,169 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per klient och route-grupp (se RateLimitFilter).
+ * <p>
+ * Implementerad som GCRA: i stället för antal tokens sparas bara tiden då
+ * hinken är full igen (TAT), i en AtomicLong per nyckel. Ett anrop är en
+ * läsning och en CAS – inga lås och ingen bakgrundspåfyllning.
+ * <p>
+ * En hink vars TAT passerats är full och likvärdig med en som saknas, så
+ * sådana tas bort regelbundet. Blir det ändå fler än max-keys nycklar
+ * (t.ex. en flod av nya IP-adresser) delar alla nya klienter på en
+ * gemensam hink per grupp tills städningen hunnit ikapp. Minnet hålls
+ * begränsat och gränsen gäller fortfarande – den som redan har en egen
+ * hink påverkas inte, nya klienter får dela på en klients kvot.
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * Route-grupper med egna gränser.
+     */
+    public enum Group {
+        READS, WRITES, AUTH
+    }
+
+    /**
+     * Resultatet av ett anrop till tryAcquire. Tiderna är i hela sekunder.
+     */
+    public record Decision(boolean allowed, int limit, long remaining, long resetSeconds, long retryAfterSeconds) {
+    }
+
+    /**
+     * Gräns för en grupp: genomsnittligt antal anrop per minut och hur många
+     * som får komma i en skur. perMinute 0 stänger av gränsen.
+     */
+    public record GroupLimit(int perMinute, int burst) {
+    }
+
+    // Intervall mellan tokens och hur många intervall i förväg TAT får ligga (= burst)
+    private record Limit(int burst, long intervalNanos) {
+    }
+
+    private final Map<Group, Limit> limits = new EnumMap<>(Group.class);
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    // Delad hink per grupp för nya klienter när buckets är full
+    private final Map<Group, AtomicLong> overflow = new EnumMap<>(Group.class);
+    private final int maxKeys;
+    private final LongSupplier nanoTime;
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    // Två konstruktorer (den andra för tester) – Spring ska använda denna
+    @Autowired
+    public RateLimiter(@Value("${security.rate-limit.reads.per-minute:600}") int readsPerMinute,
+                       @Value("${security.rate-limit.reads.burst:100}") int readsBurst,
+                       @Value("${security.rate-limit.writes.per-minute:60}") int writesPerMinute,
+                       @Value("${security.rate-limit.writes.burst:20}") int writesBurst,
+                       @Value("${security.rate-limit.auth.per-minute:20}") int authPerMinute,
+                       @Value("${security.rate-limit.auth.burst:10}") int authBurst,
+                       @Value("${security.rate-limit.max-keys:100000}") int maxKeys) {
+        this(Map.of(
+                Group.READS, new GroupLimit(readsPerMinute, readsBurst),
+                Group.WRITES, new GroupLimit(writesPerMinute, writesBurst),
+                Group.AUTH, new GroupLimit(authPerMinute, authBurst)
+        ), maxKeys, System::nanoTime);
+    }
+
+    RateLimiter(Map<Group, GroupLimit> limits, int maxKeys, LongSupplier nanoTime) {
+        limits.forEach((group, limit) -> {
+            if (limit.perMinute() > 0) {
+                this.limits.put(group, new Limit(Math.max(1, limit.burst()),
+                        TimeUnit.MINUTES.toNanos(1) / limit.perMinute()));
+            }
+        });
+        this.maxKeys = maxKeys;
+        this.nanoTime = nanoTime;
+        long start = nanoTime.getAsLong();
+        for (Group group : this.limits.keySet()) {
+            overflow.put(group, new AtomicLong(start));
+        }
+    }
+
+    /**
+     * Tar en token ur hinken för key i group. Null om gruppen saknar gräns.
+     */
+    public Decision tryAcquire(Group group, String key) {
+        Limit limit = limits.get(group);
+        if (limit == null) {
+            return null;
+        }
+        long now = nanoTime.getAsLong();
+
+        String bucketKey = group.ordinal() + key;
+        AtomicLong tat = buckets.get(bucketKey);
+        if (tat == null) {
+            if (buckets.size() >= maxKeys) {
+                overflowed.increment();
+                tat = overflow.get(group);
+            } else {
+                tat = buckets.computeIfAbsent(bucketKey, k -> new AtomicLong(now));
+            }
+        }
+        return acquire(tat, limit, now);
+    }
+
+    /**
+     * Tar bort hinkar som hunnit fyllas – de beter sig som nya.
+     */
+    @Scheduled(fixedDelayString = "${security.rate-limit.evict-interval-ms:60000}")
+    public void evictStale() {
+        long now = nanoTime.getAsLong();
+        buckets.values().removeIf(tat -> tat.get() - now <= 0);
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("buckets", (long) buckets.size());
+        stats.put("allowed", allowed.sum());
+        stats.put("limited", limited.sum());
+        stats.put("overflowed", overflowed.sum());
+        return stats;
+    }
+
+    // En läsning och en CAS: flytta fram TAT ett intervall om det ryms inom burst
+    private Decision acquire(AtomicLong tat, Limit limit, long now) {
+        long tolerance = limit.intervalNanos() * limit.burst();
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + limit.intervalNanos();
+            long ahead = next - now;
+            if (ahead > tolerance) {
+                limited.increment();
+                return new Decision(false, limit.burst(), 0, seconds(current - now),
+                        seconds(ahead - tolerance));
+            }
+            if (tat.compareAndSet(current, next)) {
+                allowed.increment();
+                return new Decision(true, limit.burst(), (tolerance - ahead) / limit.intervalNanos(),
+                        seconds(ahead), 0);
+            }
+        }
+    }
+
+    private static long seconds(long nanos) {
+        return Math.max(0, (nanos + 999_999_999L) / 1_000_000_000L);
+    }
+}
@@ -0,0 +1,222 @@
+package se.jensen.mikael.springboot.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+import se.jensen.mikael.springboot.model.RefreshTokenFamily;
+import se.jensen.mikael.springboot.repository.RefreshTokenFamilyRepository;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lagrar refresh-tokens i databasen (tabellen refresh_token_family, se
+ * RefreshTokenFamily), roterande och engångs. Alla instanser delar
+ * familjerna, så en token kan roteras på vilken nod som helst och
+ * sessionerna överlever omstart.
+ * <p>
+ * En refresh-token ser ut som "familj.hemlighet". Varje inloggning skapar
+ * en ny familj, och för varje familj sparas bara en SHA-256-hash av den
+ * senast utfärdade hemligheten, användarens id och utgångstiden – en
+ * liten post per inloggad session, aldrig själva tokenen.
+ * <p>
+ * Familjen pekar på id, inte användarnamn: ett namn som byts eller frigörs
+ * när användaren raderas kan registreras av någon annan, och får då inte
+ * ärva de gamla sessionerna. UserService avslutar dessutom alla familjer
+ * när namn eller lösenord ändras och när användaren raderas.
+ * <p>
+ * - rotate() byter ut hemligheten med en villkorad UPDATE, så en token
+ *   fungerar en gång även när två noder får den samtidigt
+ * - Visas en gammal hemlighet för en familj (återanvändning, t.ex. en
+ *   stulen token) spärras hela familjen – både angriparen och den riktiga
+ *   klienten måste logga in igen
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final int FAMILY_BYTES = 16;
+    // Base64url av FAMILY_BYTES; längre id:n kan inte finnas i tabellen
+    private static final int MAX_FAMILY_ID_LENGTH = 32;
+    private static final int SECRET_BYTES = 32;
+
+    /**
+     * Resultatet av en lyckad rotation: vems (id) tokenen är och den nya tokenen.
+     */
+    public record Rotation(long userId, String refreshToken) {
+    }
+
+    // En token uppdelad i familj och hash av hemligheten
+    private record Presented(String familyId, String secretHash) {
+    }
+
+    private final RefreshTokenFamilyRepository repository;
+    private final Duration ttl;
+    private final Clock clock;
+    private final SecureRandom random = new SecureRandom();
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder rotations = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reuseDetected = new LongAdder();
+
+    // Två konstruktorer (den andra för tester) – Spring ska använda denna
+    @Autowired
+    public RefreshTokenStore(RefreshTokenFamilyRepository repository,
+                             @Value("${security.jwt.refresh-ttl-days:14}") long ttlDays) {
+        this(repository, Duration.ofDays(ttlDays), Clock.systemUTC());
+    }
+
+    RefreshTokenStore(RefreshTokenFamilyRepository repository, Duration ttl, Clock clock) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Skapar en ny familj (vid inloggning) och returnerar dess första refresh-token.
+     */
+    public String issue(long userId) {
+        String familyId = encode(randomBytes(FAMILY_BYTES));
+        byte[] secret = randomBytes(SECRET_BYTES);
+        repository.save(new RefreshTokenFamily(familyId, sha256(secret), userId, clock.instant().plus(ttl)));
+        issued.increment();
+
+        return familyId + "." + encode(secret);
+    }
+
+    /**
+     * Byter en refresh-token mot en ny. Den gamla slutar gälla direkt.
+     * Kastar BadCredentialsException (→ 401) om tokenen är okänd, utgången
+     * eller redan använd.
+     */
+    public Rotation rotate(String refreshToken) {
+        Presented presented = parse(refreshToken);
+        if (presented == null) {
+            rejected.increment();
+            throw new BadCredentialsException("Ogiltig refresh-token");
+        }
+
+        // Från primären: en släpande replika kan ha en redan roterad hemlighet
+        Instant now = clock.instant();
+        RefreshTokenFamily family = ReplicaRoutingDataSource.onPrimary(
+                () -> repository.findById(presented.familyId()).orElse(null));
+        if (family == null || !now.isBefore(family.getExpiresAt())) {
+            rejected.increment();
+            throw new BadCredentialsException("Ogiltig refresh-token");
+        }
+
+        byte[] newSecret = randomBytes(SECRET_BYTES);
+        // Hemligheten byts bara om den presenterade fortfarande är den senaste.
+        // Misslyckas det har tokenen redan använts – här eller samtidigt på en
+        // annan nod – och hela familjen spärras
+        if (!MessageDigest.isEqual(bytes(family.getSecretHash()), bytes(presented.secretHash()))
+                || repository.rotate(presented.familyId(), presented.secretHash(), sha256(newSecret),
+                now.plus(ttl), now) != 1) {
+            repository.deleteById(presented.familyId());
+            reuseDetected.increment();
+            rejected.increment();
+            logger.warn("Refresh token reuse detected, session revoked");
+            throw new BadCredentialsException("Ogiltig refresh-token");
+        }
+        rotations.increment();
+        return new Rotation(family.getUserId(), presented.familyId() + "." + encode(newSecret));
+    }
+
+    /**
+     * Avslutar sessionen som refreshToken tillhör (logout).
+     * Okända eller felaktiga tokens ignoreras.
+     */
+    public void revoke(String refreshToken) {
+        Presented presented = parse(refreshToken);
+        if (presented != null) {
+            repository.deleteByIdAndSecretHash(presented.familyId(), presented.secretHash());
+        }
+    }
+
+    /**
+     * Avslutar alla användarens sessioner – när namn/lösenord ändras,
+     * vid radering och admin-revoke.
+     */
+    public void revokeAll(long userId) {
+        repository.deleteByUserId(userId);
+    }
+
+    /**
+     * Tar bort utgångna sessioner.
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        try {
+            repository.deleteExpired(clock.instant());
+        } catch (RuntimeException e) {
+            logger.warn("Could not purge expired refresh tokens: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("sessions", repository.count());
+        stats.put("issued", issued.sum());
+        stats.put("rotations", rotations.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("reuseDetected", reuseDetected.sum());
+        return stats;
+    }
+
+    // Delar "familj.hemlighet"; null om tokenen inte kan vara giltig
+    private static Presented parse(String refreshToken) {
+        int dot = refreshToken == null ? -1 : refreshToken.indexOf('.');
+        if (dot < 1 || dot > MAX_FAMILY_ID_LENGTH) {
+            return null;
+        }
+        try {
+            byte[] secret = Base64.getUrlDecoder().decode(refreshToken.substring(dot + 1));
+            return new Presented(refreshToken.substring(0, dot), sha256(secret));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return encode(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Underkänner spärrade tokens (se TokenRevocationStore).
+ * Körs vid varje request, även när tokenen kommer från CachingJwtDecoder.
+ * Resultaten är konstanter, så en godkänd token kostar ingen allokering.
+ */
+public class RevocationValidator implements OAuth2TokenValidator<Jwt> {
+
+    private static final OAuth2TokenValidatorResult REVOKED = OAuth2TokenValidatorResult.failure(
+            new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "Tokenen är spärrad", null));
+
+    private static final OAuth2TokenValidatorResult VALID = OAuth2TokenValidatorResult.success();
+
+    private final TokenRevocationStore store;
+
+    public RevocationValidator(TokenRevocationStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public OAuth2TokenValidatorResult validate(Jwt jwt) {
+        return store.isRevoked(jwt) ? REVOKED : VALID;
+    }
+}
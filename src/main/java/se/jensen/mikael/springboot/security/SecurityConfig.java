@@ -1,12 +1,23 @@
 package se.jensen.mikael.springboot.security;
 
-import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
@@ -14,13 +25,16 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.authentication.BearerTokenAuthenticationFilter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -30,10 +44,13 @@ import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.PKCS8EncodedKeySpec;
 import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.List;
 
@@ -47,11 +64,14 @@ import java.util.List;
 @Configuration        // Spring vet att detta är en konfigurationsklass
 public class SecurityConfig {
 
+    private static final Logger logger =
+            LoggerFactory.getLogger(SecurityConfig.class);
+
     /**
      * Här definieras alla regler för HTTP-säkerhet
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, RateLimiter rateLimiter) throws Exception {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()));
 
 
@@ -63,6 +83,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(
                                 "/request-token",
+                                "/request-token/refresh",
+                                "/.well-known/jwks.json",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
                                 "/swagger-ui.html"
@@ -70,6 +92,8 @@ public class SecurityConfig {
                         ).permitAll()
                         //släpper igenom Post/users så att vi kan skapa nya användare.
                         .requestMatchers(HttpMethod.POST, "/users").permitAll()
+                        // registreringsformuläret kollar lediga namn innan inloggning
+                        .requestMatchers(HttpMethod.GET, "/users/availability").permitAll()
                         .anyRequest().authenticated()
                 )
 
@@ -78,6 +102,9 @@ public class SecurityConfig {
                                 jwt.jwtAuthenticationConverter(
                                         jwtAuthenticationConverter())));
 
+        // Anropstakt per klient – efter JWT-filtret så att subject är känt
+        http.addFilterAfter(new RateLimitFilter(rateLimiter), BearerTokenAuthenticationFilter.class);
+
 
         // Bygg och returnera SecurityFilterChain
         return http.build();
@@ -86,16 +113,25 @@ public class SecurityConfig {
     /**
      * Används för att hash:a lösenord vid skapande och jämförelse
      * BCrypt är säkert och rekommenderat
+     * Körs i en egen begränsad pool (se BoundedPasswordEncoder);
+     * threads=0 betyder en tråd per CPU-kärna
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${security.password-hash.threads:0}") int threads,
+            @Value("${security.password-hash.queue-capacity:64}") int queueCapacity,
+            @Value("${security.password-hash.retry-after-seconds:1}") long retryAfterSeconds
+    ) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, retryAfterSeconds);
     }
 
 
     /**
      * Skapar RSA KeyPair från Base64-strängar i .env eller properties
+     * Lazy – behövs bara när security.jwt.algorithm=RS256
      */
+    @Lazy
     @Bean
     public KeyPair keyPair(
             @Value("${JWT_PRIVATE_KEY}") String privateKey,
@@ -114,16 +150,76 @@ public class SecurityConfig {
     }
 
     /**
-     * Skapar en JWKSource som JWT-encoder använder
+     * Nyckelringen som signerar och verifierar JWT (se JwtKeyRing).
+     * Startnyckeln väljs med security.jwt.algorithm:
+     * - RS256: RSA-nyckeln från JWT_PRIVATE_KEY/JWT_PUBLIC_KEY
+     * - ES256: EC P-256 från JWT_EC_PRIVATE_KEY/JWT_EC_PUBLIC_KEY. Signering
+     *   är betydligt billigare än RSA 2048. Saknas nycklarna vägrar
+     *   applikationen starta – utom med profilen dev/test, där ett nyckelpar
+     *   genereras vid start (tokens gäller då bara tills omstart, på en nod)
+     * Nycklar från rotation delas via databasen (se JpaJwtKeyStore).
      */
     @Bean
-    public JWKSource<SecurityContext> jwkSource(KeyPair keyPair) {
-        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
-                .privateKey((RSAPrivateKey) keyPair.getPrivate())
-                .keyID("jwt-key-1")
-                .build();
-        JWKSet jwkSet = new JWKSet(rsaKey);
-        return (jwkSelector, context) -> jwkSelector.select(jwkSet);
+    public JwtKeyRing jwtKeyRing(
+            ObjectProvider<KeyPair> rsaKeyPair,
+            JwtKeyStore keyStore,
+            Environment environment,
+            @Value("${security.jwt.algorithm:RS256}") String algorithm,
+            @Value("${JWT_EC_PRIVATE_KEY:}") String ecPrivateKey,
+            @Value("${JWT_EC_PUBLIC_KEY:}") String ecPublicKey,
+            @Value("${security.jwt.key-refresh-interval-ms:30000}") long keyRefreshIntervalMs
+    ) throws Exception {
+        return new JwtKeyRing(initialSigningKey(rsaKeyPair, environment, algorithm, ecPrivateKey, ecPublicKey),
+                keyStore, Duration.ofMillis(keyRefreshIntervalMs));
+    }
+
+    private JWK initialSigningKey(ObjectProvider<KeyPair> rsaKeyPair, Environment environment, String algorithm,
+                                  String ecPrivateKey, String ecPublicKey) throws Exception {
+        if ("RS256".equals(algorithm)) {
+            KeyPair keyPair = rsaKeyPair.getObject();
+            return new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                    .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                    .algorithm(JWSAlgorithm.RS256)
+                    .keyID("jwt-key-1")
+                    .build();
+        }
+        if ("ES256".equals(algorithm)) {
+            if (ecPrivateKey.isBlank() || ecPublicKey.isBlank()) {
+                // En slumpad nyckel per nod: tokens från en nod godkänns inte av en
+                // annan, och alla tokens blir ogiltiga vid omstart
+                if (!environment.acceptsProfiles(Profiles.of("dev", "test"))) {
+                    throw new IllegalStateException(
+                            "JWT_EC_PRIVATE_KEY/JWT_EC_PUBLIC_KEY måste sättas när security.jwt.algorithm=ES256");
+                }
+                logger.warn("JWT_EC_PRIVATE_KEY/JWT_EC_PUBLIC_KEY not set, generating an ephemeral ES256 key");
+                return new ECKeyGenerator(Curve.P_256)
+                        .algorithm(JWSAlgorithm.ES256)
+                        .keyID("jwt-ec-key-1")
+                        .generate();
+            }
+            KeyFactory keyFactory = KeyFactory.getInstance("EC");
+            PrivateKey privKey = keyFactory.generatePrivate(
+                    new PKCS8EncodedKeySpec(Base64.getDecoder().decode(ecPrivateKey))
+            );
+            PublicKey pubKey = keyFactory.generatePublic(
+                    new X509EncodedKeySpec(Base64.getDecoder().decode(ecPublicKey))
+            );
+            return new ECKey.Builder(Curve.P_256, (ECPublicKey) pubKey)
+                    .privateKey((ECPrivateKey) privKey)
+                    .algorithm(JWSAlgorithm.ES256)
+                    .keyID("jwt-ec-key-1")
+                    .build();
+        }
+        throw new IllegalStateException("security.jwt.algorithm måste vara RS256 eller ES256, var: " + algorithm);
+    }
+
+    /**
+     * Skapar en JWKSource som JWT-encoder använder.
+     * Läser ringens aktuella nycklar vid varje anrop, så rotation slår igenom direkt.
+     */
+    @Bean
+    public JWKSource<SecurityContext> jwkSource(JwtKeyRing keyRing) {
+        return (jwkSelector, context) -> jwkSelector.select(keyRing.signingKeys());
     }
 
     /**
@@ -135,13 +231,30 @@ public class SecurityConfig {
     }
 
     /**
-     * Bean som decoder JWT med vår publika RSA-nyckel
+     * Bean som decoder JWT med nyckelringens nycklar (RS256 eller ES256)
+     * Nyckeln väljs på tokenens kid; bara ringens algoritm accepteras
+     * Redan verifierade tokens cachas fram till exp (se CachingJwtDecoder)
      */
     @Bean
-    public JwtDecoder jwtDecoder(KeyPair keyPair) {
-        return NimbusJwtDecoder
-                .withPublicKey((RSAPublicKey) keyPair.getPublic())
-                .build();
+    public CachingJwtDecoder jwtDecoder(JwtKeyRing keyRing,
+                                        ProfileVersionRegistry profileVersions,
+                                        TokenRevocationStore revocations,
+                                        @Value("${security.jwt.cache-size:10000}") int cacheSize) {
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(keyRing);
+        // Claims (exp, nbf) valideras av Spring, inte av Nimbus
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+
+        JwtDecoder nimbus = new NimbusJwtDecoder(processor);
+        // Spärr och profilversion kontrolleras vid varje request, även vid cacheträff.
+        // Ingen DelegatingOAuth2TokenValidator – den allokerar en fellista per anrop.
+        OAuth2TokenValidator<Jwt> revocation = new RevocationValidator(revocations);
+        OAuth2TokenValidator<Jwt> profileVersion = new ProfileVersionValidator(profileVersions);
+        return new CachingJwtDecoder(nimbus, cacheSize, jwt -> {
+            OAuth2TokenValidatorResult result = revocation.validate(jwt);
+            return result.hasErrors() ? result : profileVersion.validate(jwt);
+        });
     }
 
     /**
@@ -155,7 +268,9 @@ public class SecurityConfig {
         converter.setAuthoritiesClaimName("scope");
         JwtAuthenticationConverter authenticationConverter =
                 new JwtAuthenticationConverter();
-        authenticationConverter.setJwtGrantedAuthoritiesConverter(converter);
+        // Samma scope ger samma authorities – cacha listan per scope-sträng
+        authenticationConverter.setJwtGrantedAuthoritiesConverter(
+                new CachingAuthoritiesConverter(converter, "scope", 64));
         return authenticationConverter;
     }
 
@@ -185,7 +300,12 @@ public class SecurityConfig {
         ));
 
         config.setAllowedMethods(List.of(
-                "GET", "POST", "PUT", "DELETE", "OPTIONS"
+                "GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"
+        ));
+
+        // Svarshuvuden som frontenden får läsa (If-Match och väntetid vid 429)
+        config.setExposedHeaders(List.of(
+                "ETag", "Retry-After", "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset"
         ));
 
         config.setAllowedHeaders(List.of("*"));
@@ -0,0 +1,60 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+
+/**
+ * Namnen på de egna claims som TokenService lägger i JWT:n, och hur man
+ * läser tillbaka en profil ur dem. Gör att /users/me och ägarkontroller
+ * kan besvaras från tokenen utan databasfråga.
+ */
+public final class TokenClaims {
+
+    public static final String USER_ID = "uid";
+    public static final String EMAIL = "email";
+    public static final String ROLE = "role";
+    public static final String DISPLAY_NAME = "displayName";
+    public static final String BIO = "bio";
+    public static final String PROFILE_IMAGE_PATH = "profileImagePath";
+
+    // User.version när tokenen utfärdades – se ProfileVersionRegistry
+    public static final String PROFILE_VERSION = "ver";
+
+    private TokenClaims() {
+    }
+
+    /**
+     * Användarens id ur tokenen, eller null för tokens utfärdade innan uid fanns.
+     */
+    public static Long userId(Jwt jwt) {
+        Object uid = jwt.getClaims().get(USER_ID);
+        return uid instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * Profilversionen ur tokenen, eller null om den saknas.
+     */
+    public static Long profileVersion(Jwt jwt) {
+        Object ver = jwt.getClaims().get(PROFILE_VERSION);
+        return ver instanceof Number number ? number.longValue() : null;
+    }
+
+    /**
+     * Bygger profilen ur tokenens claims, eller null om tokenen saknar dem.
+     */
+    public static UserResponseDTO toUserResponse(Jwt jwt) {
+        Long id = userId(jwt);
+        if (id == null || profileVersion(jwt) == null) {
+            return null;
+        }
+        return new UserResponseDTO(
+                id,
+                jwt.getSubject(),
+                jwt.getClaimAsString(EMAIL),
+                jwt.getClaimAsString(ROLE),
+                jwt.getClaimAsString(DISPLAY_NAME),
+                jwt.getClaimAsString(BIO),
+                jwt.getClaimAsString(PROFILE_IMAGE_PATH)
+        );
+    }
+}
@@ -0,0 +1,138 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.cache.BloomFilter;
+import se.jensen.mikael.springboot.service.TokenService;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spärrade JWT:er, i minnet.
+ * <p>
+ * - Enskilda tokens spärras på jti (logout) och ligger kvar tills tokenens exp
+ * - En användares alla tokens spärras med en tidsgräns: tokens utfärdade
+ *   (iat) innan dess underkänns (admin-revoke)
+ * <p>
+ * isRevoked() körs vid varje request. Ett bloomfilter framför jti-mappen
+ * gör att det vanliga fallet – tokenen är inte spärrad – avgörs med några
+ * få minnesläsningar och utan allokering. Filtret kan inte ta bort
+ * element, så det byggs om från mappen när utgångna tokens städats bort.
+ */
+@Component
+public class TokenRevocationStore {
+
+    private final int expectedTokens;
+    private final Clock clock;
+
+    // jti → exp (epoch-sekunder)
+    private final ConcurrentHashMap<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    // userId → tokens med iat till och med denna tid (epoch-sekunder) är spärrade
+    private final ConcurrentHashMap<Long, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    private final AtomicReference<BloomFilter> filter = new AtomicReference<>();
+
+    // Räknare som exponeras via /admin/stats
+    private final LongAdder filterPositives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    // Två konstruktorer (den andra för tester) – Spring ska använda denna
+    @Autowired
+    public TokenRevocationStore(@Value("${security.revocation.expected-tokens:100000}") int expectedTokens) {
+        this(expectedTokens, Clock.systemUTC());
+    }
+
+    TokenRevocationStore(int expectedTokens, Clock clock) {
+        this.expectedTokens = expectedTokens;
+        this.clock = clock;
+        this.filter.set(newFilter());
+    }
+
+    /**
+     * Spärrar en token fram till dess exp.
+     */
+    public void revoke(String jti, Instant expiresAt) {
+        // Mappen först: en ombyggnad som startar efter detta får med tokenen
+        revokedTokens.put(jti, expiresAt.getEpochSecond());
+        filter.get().put(jti);
+    }
+
+    /**
+     * Spärrar alla tokens för användaren som utfärdats hittills.
+     */
+    public void revokeAllFor(long userId) {
+        revokedBefore.merge(userId, clock.instant().getEpochSecond(), Math::max);
+    }
+
+    /**
+     * True om tokenen är spärrad. Allokerar inget när den inte är det.
+     */
+    public boolean isRevoked(Jwt jwt) {
+        if (!revokedBefore.isEmpty()) {
+            // uid-claimen är redan en Long i claims – används direkt som nyckel
+            Object userId = jwt.getClaims().get(TokenClaims.USER_ID);
+            Instant issuedAt = jwt.getIssuedAt();
+            if (userId != null && issuedAt != null) {
+                Long cutoff = revokedBefore.get(userId);
+                if (cutoff != null && issuedAt.getEpochSecond() <= cutoff) {
+                    return true;
+                }
+            }
+        }
+
+        String jti = jwt.getId();
+        if (jti == null || !filter.get().mightContain(jti)) {
+            return false;
+        }
+        filterPositives.increment();
+        if (revokedTokens.containsKey(jti)) {
+            return true;
+        }
+        falsePositives.increment();
+        return false;
+    }
+
+    /**
+     * Tar bort utgångna spärrar och bygger om bloomfiltret utan dem.
+     */
+    @Scheduled(fixedDelayString = "${security.revocation.purge-interval-ms:60000}")
+    public void purge() {
+        long now = clock.instant().getEpochSecond();
+        long oldestLiveToken = now - TokenService.ACCESS_TOKEN_TTL.toSeconds();
+
+        revokedTokens.values().removeIf(exp -> exp <= now);
+        revokedBefore.values().removeIf(cutoff -> cutoff < oldestLiveToken);
+
+        BloomFilter rebuilt = newFilter();
+        revokedTokens.keySet().forEach(rebuilt::put);
+        filter.set(rebuilt);
+        // Spärrar som lades i det gamla filtret under ombyggnaden finns i mappen
+        revokedTokens.keySet().forEach(rebuilt::put);
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("revokedTokens", (long) revokedTokens.size());
+        stats.put("revokedUsers", (long) revokedBefore.size());
+        stats.put("filterPositives", filterPositives.sum());
+        stats.put("falsePositives", falsePositives.sum());
+        return stats;
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedTokens, 0.01);
+    }
+}
@@ -0,0 +1,22 @@
+package se.jensen.mikael.springboot.security;
+
+/**
+ * Det Spring Security behöver för att autentisera en användare – inget mer.
+ * Immutable, så samma objekt kan delas mellan trådar och ligga i
+ * UserCredentialsCache utan att hålla kvar en JPA-entitet.
+ */
+public record UserCredentials(
+        Long id,              // Användarens id (skickas tillbaka vid login)
+        String username,      // Användarnamn
+        String passwordHash,  // BCrypt-hash av lösenordet
+        String role,          // Roll: t.ex. USER eller ADMIN
+        Long version          // Profilversion (User.version), följer med i JWT:n
+) {
+
+    // Hashen ska aldrig hamna i loggar
+    @Override
+    public String toString() {
+        return "UserCredentials[id=" + id + ", username=" + username + ", role=" + role
+                + ", version=" + version + "]";
+    }
+}
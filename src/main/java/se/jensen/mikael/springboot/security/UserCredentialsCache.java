@@ -0,0 +1,55 @@
+package se.jensen.mikael.springboot.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import se.jensen.mikael.springboot.cache.TtlCache;
+import se.jensen.mikael.springboot.config.ReplicaRoutingDataSource;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Cache för inloggningsuppgifter (UserCredentials), nycklad på username.
+ * <p>
+ * Gör att en våg av inloggningar för samma användare blir en enda
+ * databasfråga. TTL:en är kort eftersom ett ändrat lösenord eller en
+ * ändrad roll på en annan nod bara syns när värdet gått ut; på den här
+ * noden evictar UserService direkt vid update/delete. Laddningar läser
+ * från primären – ett gammalt lösenord från en replika får inte cachas.
+ */
+@Component
+public class UserCredentialsCache {
+
+    private final TtlCache<String, UserCredentials> byUsername;
+
+    public UserCredentialsCache(@Value("${auth.cache.size:10000}") int maxSize,
+                                @Value("${auth.cache.ttl-seconds:60}") long ttlSeconds) {
+        this.byUsername = new TtlCache<>(maxSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Hämtar uppgifterna för username, laddade via loader vid miss.
+     */
+    public UserCredentials get(String username, Function<String, UserCredentials> loader) {
+        return byUsername.get(username, key -> ReplicaRoutingDataSource.onPrimary(() -> loader.apply(key)));
+    }
+
+    /**
+     * Evictar alla namn användaren kan vara cachad under.
+     */
+    public void evict(String... usernames) {
+        for (String username : usernames) {
+            if (username != null) {
+                byUsername.invalidate(username);
+            }
+        }
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        return byUsername.stats();
+    }
+}
@@ -0,0 +1,32 @@
+package se.jensen.mikael.springboot.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Kör cache-invalidering och indexuppdateringar först när transaktionen
+ * committats.
+ * <p>
+ * Invalideras en cache innan commit kan en samtidig läsare hinna ladda om
+ * den gamla raden och lägga tillbaka den. Efter commit ser omladdningen den
+ * nya. Vid rollback körs ingenting – det finns inget att invalidera.
+ * Utan aktiv transaktion körs action direkt.
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
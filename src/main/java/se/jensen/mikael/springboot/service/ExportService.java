@@ -0,0 +1,89 @@
+package se.jensen.mikael.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.mapper.PostMapper;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.stream.Stream;
+
+/**
+ * Service för export av alla poster och användare som NDJSON
+ * (en JSON-rad per post/user).
+ * <p>
+ * Raderna läses från databasen som en ström och skrivs till klienten
+ * en i taget, så minnesåtgången är konstant oavsett tabellstorlek –
+ * ingen List med hela tabellen byggs upp.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(ExportService.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final PostRepository postRepository;
+    private final UserRepository userRepository;
+    private final PostMapper postMapper;
+    private final ObjectMapper objectMapper;
+
+    // Strömmen måste läsas inom en transaktion (håller JDBC-cursorn öppen).
+    // Exporten körs på en annan tråd än requesten, därför TransactionTemplate.
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ExportService(PostRepository postRepository, UserRepository userRepository, PostMapper postMapper,
+                         ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.postRepository = postRepository;
+        this.userRepository = userRepository;
+        this.postMapper = postMapper;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // -----------------------------------------------------------
+    // EXPORT POSTS
+    // -----------------------------------------------------------
+    public void exportPosts(OutputStream out) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<PostRow> rows = postRepository.streamAllRows()) {
+                rows.forEach(row -> writeLine(out, postMapper.toResponseDTO(row)));
+            }
+        });
+        logger.info("Post export finished");
+    }
+
+    // -----------------------------------------------------------
+    // EXPORT USERS
+    // -----------------------------------------------------------
+    public void exportUsers(OutputStream out) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<UserResponseDTO> users = userRepository.streamAllResponses()) {
+                users.forEach(user -> writeLine(out, user));
+            }
+        });
+        logger.info("User export finished");
+    }
+
+    // Skriver ett objekt som en JSON-rad
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write(NEWLINE);
+        } catch (IOException e) {
+            // T.ex. att klienten kopplat ner – avbryter strömmen och transaktionen
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,17 +2,26 @@ package se.jensen.mikael.springboot.service;
 
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
 import java.util.Base64;
 
 /**
  * Hjälpklass för att generera ett RSA-nyckelpar (private & public key).
  * Används för att skapa nycklar som kan användas för JWT-signering i applikationen.
  * Körs som en vanlig Java-applikation och skriver ut Base64-kodade nycklar till konsolen.
+ * Med argumentet "EC" skapas istället ett P-256-nyckelpar för ES256
+ * (JWT_EC_PRIVATE_KEY/JWT_EC_PUBLIC_KEY).
  */
 public class KeyGenerator {
     public static void main(String[] args) throws Exception {
-        KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
-        gen.initialize(2048);
+        KeyPairGenerator gen;
+        if (args.length > 0 && args[0].equalsIgnoreCase("EC")) {
+            gen = KeyPairGenerator.getInstance("EC");
+            gen.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            gen = KeyPairGenerator.getInstance("RSA");
+            gen.initialize(2048);
+        }
         KeyPair kp = gen.generateKeyPair();
 
         System.out.println("PRIVATE_KEY:");
@@ -0,0 +1,188 @@
+package se.jensen.mikael.springboot.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.dto.PostBatchItemDTO;
+import se.jensen.mikael.springboot.dto.PostBatchResultDTO;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.MappingIterator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service för bulk-import av poster (POST /posts/batch).
+ * <p>
+ * Requesten läses som en ström (JSON-array eller NDJSON) och behandlas i
+ * bitar om CHUNK_SIZE poster: varje bit valideras, alla userId i biten slås
+ * upp med en query och posterna sparas i en egen transaktion med JDBC-batchning.
+ * Medan en bit sparas har nästa inte lästs in än, så minnet hålls nere
+ * även för stora importer. Varje post får ett eget resultat.
+ */
+@Service
+public class PostBatchService {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(PostBatchService.class);
+
+    // Antal poster per transaktion
+    static final int CHUNK_SIZE = 500;
+
+    private record PendingItem(int index, PostBatchItemDTO item) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final FeedCache feedCache;
+    private final PostSearchIndex postSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    public PostBatchService(ObjectMapper objectMapper, Validator validator, UserRepository userRepository,
+                            PostRepository postRepository, FeedCache feedCache, PostSearchIndex postSearchIndex,
+                            PlatformTransactionManager transactionManager) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.feedCache = feedCache;
+        this.postSearchIndex = postSearchIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Läser poster från body (JSON-array eller NDJSON) och sparar dem i bitar.
+     * Returnerar ett resultat per post, i samma ordning som i requesten.
+     */
+    public List<PostBatchResultDTO> createPosts(InputStream body) {
+        List<PostBatchResultDTO> results = new ArrayList<>();
+        List<PendingItem> chunk = new ArrayList<>(CHUNK_SIZE);
+        int index = 0;
+
+        try {
+            // readValues hanterar både en array på rotnivå och NDJSON (ett objekt per rad)
+            MappingIterator<PostBatchItemDTO> items =
+                    objectMapper.readerFor(PostBatchItemDTO.class).readValues(body);
+
+            while (items.hasNextValue()) {
+                PostBatchItemDTO item = items.nextValue();
+
+                String error = validate(item);
+                if (error != null) {
+                    results.add(PostBatchResultDTO.rejected(index, error));
+                } else {
+                    chunk.add(new PendingItem(index, item));
+                }
+                index++;
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    results.addAll(insertChunk(chunk));
+                    chunk.clear();
+                }
+            }
+        } catch (JacksonException e) {
+            // Resten av strömmen går inte att tolka – spara det som redan är giltigt och avbryt
+            logger.warn("Bulk import stopped at index {}: {}", index, e.getOriginalMessage());
+            results.add(PostBatchResultDTO.rejected(index, "Ogiltig JSON: " + e.getOriginalMessage()));
+        }
+
+        if (!chunk.isEmpty()) {
+            results.addAll(insertChunk(chunk));
+        }
+
+        long created = results.stream().filter(r -> r.id() != null).count();
+        logger.info("Bulk import: {} of {} posts created", created, results.size());
+
+        if (created > 0) {
+            feedCache.invalidate();
+        }
+
+        results.sort(Comparator.comparingInt(PostBatchResultDTO::index));
+        return results;
+    }
+
+    // Validerar en post med samma Bean Validation-regler som @Valid, null om den är giltig
+    private String validate(PostBatchItemDTO item) {
+        if (item == null) {
+            return "Posten får inte vara null.";
+        }
+        Set<ConstraintViolation<PostBatchItemDTO>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    // Sparar en bit poster i en transaktion. Inserts batchas av Hibernate
+    // (id sätts i applikationen, se Snowflake) och skickas vid commit.
+    private List<PostBatchResultDTO> insertChunk(List<PendingItem> chunk) {
+        List<PostResponseDTO> created = new ArrayList<>(chunk.size());
+
+        List<PostBatchResultDTO> results = transactionTemplate.execute(status -> {
+
+            // Alla userId i biten slås upp med en enda query (som DTO, inga entiteter)
+            Set<Long> userIds = chunk.stream()
+                    .map(p -> p.item().userId())
+                    .collect(Collectors.toSet());
+            Map<Long, UserResponseDTO> authors = userRepository.findResponsesByIds(userIds).stream()
+                    .collect(Collectors.toMap(UserResponseDTO::id, Function.identity()));
+
+            Instant now = Instant.now();
+            List<PostBatchResultDTO> chunkResults = new ArrayList<>(chunk.size());
+            List<PendingItem> accepted = new ArrayList<>(chunk.size());
+            List<Post> posts = new ArrayList<>(chunk.size());
+
+            for (PendingItem pending : chunk) {
+                Long userId = pending.item().userId();
+                if (!authors.containsKey(userId)) {
+                    chunkResults.add(PostBatchResultDTO.rejected(pending.index(), "User not found with id: " + userId));
+                    continue;
+                }
+                // getReferenceById ger en proxy utan extra SELECT
+                Post post = new Post(userRepository.getReferenceById(userId));
+                post.setText(pending.item().text());
+                post.setCreatedAt(now);
+                posts.add(post);
+                accepted.add(pending);
+            }
+
+            postRepository.saveAll(posts);
+
+            for (int i = 0; i < posts.size(); i++) {
+                Post post = posts.get(i);
+                chunkResults.add(PostBatchResultDTO.created(accepted.get(i).index(), post.getId()));
+                created.add(new PostResponseDTO(post.getId(), post.getText(), post.getCreatedAt(),
+                        authors.get(accepted.get(i).item().userId())));
+            }
+            return chunkResults;
+        });
+
+        // Indexera för sökning först när biten är committad
+        created.forEach(postSearchIndex::index);
+        return results;
+    }
+}
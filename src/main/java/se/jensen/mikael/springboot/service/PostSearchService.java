@@ -0,0 +1,155 @@
+package se.jensen.mikael.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.exception.UserNotFoundException;
+import se.jensen.mikael.springboot.mapper.PostMapper;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Service för fritextsökning i poster (GET /posts/search).
+ * Bygger PostSearchIndex från databasen i bakgrunden när applikationen
+ * startat. Sökningen besvaras ur minnet: indexet har postens text och
+ * tidsstämpel, och författarens profil hämtas via UserService.getUser
+ * (UserCache) – databasen läses bara vid en cachemiss.
+ * <p>
+ * Tills bygget är klart hittas bara poster som skapats/ändrats sedan start.
+ * Misslyckas bygget (t.ex. databasen är nere) loggas felet och bygget
+ * provas igen enligt search.index.retry-interval-ms.
+ */
+@Service
+public class PostSearchService {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(PostSearchService.class);
+
+    // Största antal träffar en klient kan be om
+    static final int MAX_RESULTS = 100;
+
+    private final PostSearchIndex postSearchIndex;
+    private final PostRepository postRepository;
+    private final PostMapper postMapper;
+    private final UserService userService;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile boolean built;
+
+    public PostSearchService(PostSearchIndex postSearchIndex, PostRepository postRepository, PostMapper postMapper,
+                             UserService userService, PlatformTransactionManager transactionManager) {
+        this.postSearchIndex = postSearchIndex;
+        this.postRepository = postRepository;
+        this.postMapper = postMapper;
+        this.userService = userService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Bygger indexet i bakgrunden när applikationen är igång.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexAtStartup() {
+        buildIndex();
+    }
+
+    /**
+     * Provar igen om bygget vid start misslyckades.
+     */
+    @Scheduled(initialDelayString = "${search.index.retry-interval-ms:60000}",
+            fixedDelayString = "${search.index.retry-interval-ms:60000}")
+    public void retryBuildIndex() {
+        if (!built) {
+            buildIndex();
+        }
+    }
+
+    /**
+     * Bygger indexet genom att strömma alla poster från databasen.
+     * Ändringar som sker under tiden indexeras direkt av PostService och
+     * skrivs inte över. Returnerar false om bygget misslyckades eller
+     * redan pågår.
+     */
+    public boolean buildIndex() {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        postSearchIndex.beginRebuild();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<PostRow> rows = postRepository.streamAllRows()) {
+                    rows.forEach(row -> postSearchIndex.indexIfAbsent(postMapper.toResponseDTO(row)));
+                }
+            });
+            built = true;
+            logger.info("Search index built with {} posts in {} ms",
+                    postSearchIndex.size(), (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("Building the search index failed, retrying later", e);
+            return false;
+        } finally {
+            postSearchIndex.endRebuild();
+            building.set(false);
+        }
+    }
+
+    // -----------------------------------------------------------
+    // SEARCH
+    // -----------------------------------------------------------
+    // Ingen @Transactional: en sökning med varm UserCache tar ingen anslutning
+    public List<PostResponseDTO> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("q får inte vara tomt");
+        }
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit måste vara minst 1");
+        }
+        List<PostSearchIndex.Hit> hits = postSearchIndex.search(query, Math.min(limit, MAX_RESULTS));
+
+        // Varje författare slås upp en gång, i indexets ordning (nyast först).
+        // En författare som hunnit raderas ger inga träffar.
+        Map<Long, Optional<UserResponseDTO>> authors = new HashMap<>();
+        List<PostResponseDTO> result = new ArrayList<>(hits.size());
+        for (PostSearchIndex.Hit hit : hits) {
+            UserResponseDTO author = null;
+            if (hit.authorId() != null) {
+                author = authors.computeIfAbsent(hit.authorId(), this::author).orElse(null);
+                if (author == null) {
+                    continue;
+                }
+            }
+            result.add(new PostResponseDTO(hit.id(), hit.text(), hit.createdAt(), author));
+        }
+        return result;
+    }
+
+    private Optional<UserResponseDTO> author(Long id) {
+        try {
+            return Optional.of(userService.getUser(id));
+        } catch (UserNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+}
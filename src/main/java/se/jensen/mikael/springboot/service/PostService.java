@@ -2,18 +2,35 @@ package se.jensen.mikael.springboot.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.dto.PostCursor;
+import se.jensen.mikael.springboot.dto.PostPageResponseDTO;
 import se.jensen.mikael.springboot.dto.PostRequestDTO;
 import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.exception.PreconditionFailedException;
+import se.jensen.mikael.springboot.mapper.PostMapper;
 import se.jensen.mikael.springboot.mapper.UserMapper;
 import se.jensen.mikael.springboot.model.Post;
 import se.jensen.mikael.springboot.model.User;
 import se.jensen.mikael.springboot.repository.PostRepository;
 import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 
+/**
+ * Affärslogik för Posts.
+ * Skrivande metoder är transaktioner och uppdaterar flödescachen och
+ * sökindexet först efter commit (AfterCommit). getFeedPage öppnar ingen
+ * egen transaktion – första sidan besvaras oftast från FeedCache.
+ */
 @Service
 public class PostService {
 
@@ -21,6 +38,9 @@ public class PostService {
     private static final Logger logger =
             LoggerFactory.getLogger(PostService.class);
 
+    // Största sidstorlek en klient kan be om i flödet
+    static final int MAX_PAGE_SIZE = 100;
+
 
     // ----------------------------
     // Repositories för databasen
@@ -28,17 +48,25 @@ public class PostService {
     private final UserRepository userRepository; // Används för att hämta User som posten ska kopplas till
     private final PostRepository postRepository; // Används för att spara och hämta Post-objekt
     private final UserMapper userMapper;         // används för att mappar User till UserDTO
+    private final PostMapper postMapper;         // används för att mappa Post/PostRow till PostResponseDTO
+    private final FeedCache feedCache;           // cache för första sidan i flödet
+    private final PostSearchIndex postSearchIndex; // sökindex över posternas text
 
     // Konstruktor med DI (Dependency Injection)
-    public PostService(UserRepository userRepository, PostRepository postRepository) {
+    public PostService(UserRepository userRepository, PostRepository postRepository, PostMapper postMapper,
+                       FeedCache feedCache, PostSearchIndex postSearchIndex) {
         this.userRepository = userRepository;
         this.postRepository = postRepository;
         this.userMapper = new UserMapper();
+        this.postMapper = postMapper;
+        this.feedCache = feedCache;
+        this.postSearchIndex = postSearchIndex;
     }
 
     // ----------------------------
     // CREATE – skapa en ny Post
     // ----------------------------
+    @Transactional
     public PostResponseDTO createPost(Long userId, PostRequestDTO postDTO) {
 
         // Skapa ett nytt Post-objekt
@@ -69,11 +97,185 @@ public class PostService {
         logger.info("Post created with id: " + savedPost.getId());
 
         // Returnera en PostResponseDTO som ska skickas tillbaka till klienten
-        return new PostResponseDTO(
+        PostResponseDTO response = new PostResponseDTO(
                 savedPost.getId(),
                 savedPost.getText(),
                 savedPost.getCreatedAt(),
                 userMapper.toDto(savedPost.getUser())
         );
+
+        // Nya posten ska synas direkt i flödet och i sökningen
+        AfterCommit.run(() -> {
+            feedCache.invalidate();
+            postSearchIndex.index(response);
+        });
+
+        return response;
+    }
+
+    // ----------------------------
+    // CREATE – skapa en Post utan användare (POST /posts)
+    // ----------------------------
+    @Transactional
+    public PostResponseDTO createPost(PostRequestDTO postDTO) {
+
+        // Skapa nytt Post-objekt via mapper och spara
+        Post savedPost = postRepository.save(postMapper.toPost(postDTO));
+
+        logger.info("Post created with id: " + savedPost.getId());
+
+        PostResponseDTO response = postMapper.toResponseDTO(savedPost);
+        AfterCommit.run(() -> {
+            feedCache.invalidate();
+            postSearchIndex.index(response);
+        });
+
+        return response;
+    }
+
+    // ----------------------------
+    // UPDATE – uppdatera texten i en Post
+    // ----------------------------
+    @Transactional
+    public PostResponseDTO updatePost(Long id, PostRequestDTO postDTO) {
+
+        // Hämta posten, kasta NoSuchElementException (→ 404) om den inte finns
+        Post post = postRepository.findById(id)
+                .orElseThrow(() -> {
+                    logger.warn("Post not found with id: " + id);
+                    return new NoSuchElementException("Post not found with id: " + id);
+                });
+
+        // Uppdatera text (validering sker via DTO), createdAt ändras inte
+        post.setText(postDTO.text());
+        Post updatedPost = postRepository.save(post);
+
+        logger.info("Post updated with id: " + id);
+
+        PostResponseDTO response = postMapper.toResponseDTO(updatedPost);
+        AfterCommit.run(() -> {
+            feedCache.invalidate();
+            postSearchIndex.index(response); // ersätter gamla texten i indexet
+        });
+
+        return response;
+    }
+
+    /**
+     * Ändrar texten i ett enda UPDATE utan att läsa posten först.
+     * Med expectedVersion (If-Match) uppdateras posten bara om den inte
+     * ändrats sedan dess, annars PreconditionFailedException (→ 412).
+     * Returnerar den nya versionen (ETag).
+     */
+    @Transactional
+    public long patchPost(Long id, PostRequestDTO postDTO, Long expectedVersion) {
+
+        int updated = postRepository.updateText(id, postDTO.text(), expectedVersion);
+
+        if (updated == 0) {
+            Long current = postRepository.findVersionById(id)
+                    .orElseThrow(() -> {
+                        logger.warn("Post not found with id: " + id);
+                        return new NoSuchElementException("Post not found with id: " + id);
+                    });
+            throw new PreconditionFailedException("Post " + id + " har ändrats, aktuell version är " + current);
+        }
+
+        logger.info("Post patched with id: " + id);
+
+        // Med If-Match vet vi versionen, annars läses den
+        long version = expectedVersion != null ? expectedVersion + 1
+                : postRepository.findVersionById(id).orElseThrow();
+
+        Optional<PostResponseDTO> response = postRepository.findRowById(id).map(postMapper::toResponseDTO);
+        AfterCommit.run(() -> {
+            feedCache.invalidate();
+            response.ifPresent(postSearchIndex::index); // ersätter gamla texten i indexet
+        });
+
+        return version;
+    }
+
+    // ----------------------------
+    // DELETE – ta bort en Post
+    // ----------------------------
+    @Transactional
+    public void deletePost(Long id) {
+
+        // Ett DELETE; antal rader avgör om posten fanns
+        if (postRepository.deleteRowById(id) == 0) {
+            logger.warn("Post not found with id: " + id);
+            throw new NoSuchElementException("Post not found with id: " + id);
+        }
+
+        logger.info("Post deleted with id: " + id);
+        // Invalidera efter commit så ingen läsare laddar in raden igen
+        AfterCommit.run(() -> {
+            feedCache.invalidate();
+            postSearchIndex.remove(id);
+        });
+    }
+
+    // ----------------------------
+    // READ – en post
+    // ----------------------------
+    @Transactional(readOnly = true)
+    public Optional<PostResponseDTO> getPost(Long id) {
+        // Projektion med författaren i samma query – ingen lazy-laddning av User
+        return postRepository.findRowById(id).map(postMapper::toResponseDTO);
+    }
+
+    // ----------------------------
+    // READ – alla poster, nyast först
+    // ----------------------------
+    @Transactional(readOnly = true)
+    public List<PostResponseDTO> getAllPosts() {
+        // Projektion direkt till PostRow – inga entiteter i persistence context
+        return postRepository.findAllRows()
+                .stream()
+                .map(postMapper::toResponseDTO)
+                .toList();
+    }
+
+    // ----------------------------
+    // READ – en sida i flödet (keyset-paginering)
+    // ----------------------------
+    public PostPageResponseDTO getFeedPage(int limit, String before) {
+
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit måste vara minst 1");
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+
+        // Hämta en rad extra – finns den så finns det en nästa sida.
+        // Då slipper vi COUNT(*) helt.
+        Limit fetch = Limit.of(pageSize + 1);
+        boolean firstPage = before == null || before.isBlank();
+        List<PostResponseDTO> rows;
+        if (firstPage && pageSize <= feedCache.capacity()) {
+            // Första sidan är den mest lästa – besvaras från FeedCache
+            rows = feedCache.getNewest(n -> toResponseDTOs(postRepository.findFeedFirstPage(Limit.of(n))));
+        } else if (firstPage) {
+            rows = toResponseDTOs(postRepository.findFeedFirstPage(fetch));
+        } else {
+            PostCursor cursor = PostCursor.decode(before);
+            rows = toResponseDTOs(postRepository.findFeedPageBefore(cursor.createdAt(), cursor.id(), fetch));
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<PostResponseDTO> posts = rows.subList(0, Math.min(pageSize, rows.size()));
+
+        String nextCursor = hasMore
+                ? PostCursor.of(posts.get(posts.size() - 1)).encode()
+                : null;
+
+        return new PostPageResponseDTO(posts, nextCursor);
+    }
+
+    // Mappar projektioner till PostResponseDTO
+    private List<PostResponseDTO> toResponseDTOs(List<PostRow> rows) {
+        return rows.stream()
+                .map(postMapper::toResponseDTO)
+                .toList();
     }
 }
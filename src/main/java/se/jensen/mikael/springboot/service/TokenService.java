@@ -1,49 +1,93 @@
 package se.jensen.mikael.springboot.service;
 
+import com.nimbusds.jose.jwk.JWK;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.stereotype.Service;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.security.JwtKeyRing;
+import se.jensen.mikael.springboot.security.TokenClaims;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Service som ansvarar för att generera JWT-token för autentisering.
  * Tar emot en Authentication-instans och skapar en JWT med användarens
  * namn och roller (scope). Tokenen är giltig i 1 timme.
+ * Signeras med RS256 eller ES256 beroende på security.jwt.algorithm, med
+ * nyckelringens aktiva nyckel (se JwtKeyRing).
+ * Användarens id och profil läggs som claims (se TokenClaims), så att
+ * /users/me och ägarkontroller kan besvaras utan databasfråga.
  */
 @Service
 public class TokenService {
 
+    /**
+     * Hur länge en access-token är giltig.
+     */
+    public static final Duration ACCESS_TOKEN_TTL = Duration.ofHours(1);
+
     private final JwtEncoder jwtEncoder;
+    private final JwtKeyRing keyRing;
 
-    public TokenService(JwtEncoder jwtEncoder) {
+    public TokenService(JwtEncoder jwtEncoder, JwtKeyRing keyRing) {
         this.jwtEncoder = jwtEncoder;
+        this.keyRing = keyRing;
     }
 
-    public String generateToken(Authentication auth) {
+    /**
+     * Skapar en JWT för auth med profilen som claims.
+     * version är User.version och blir claimen "ver".
+     */
+    public String generateToken(Authentication auth, UserResponseDTO profile, Long version) {
         Instant now = Instant.now();
 
         String scope = auth.getAuthorities().stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.joining(" "));
 
-        JwtClaimsSet claims = JwtClaimsSet.builder()
+        JwtClaimsSet.Builder claims = JwtClaimsSet.builder()
                 .issuer("self")
+                .id(UUID.randomUUID().toString()) // jti – används för att spärra tokenen vid logout
                 .issuedAt(now)
-                .expiresAt(now.plus(1, ChronoUnit.HOURS))
+                .expiresAt(now.plus(ACCESS_TOKEN_TTL))
                 .subject(auth.getName())
                 .claim("scope", scope)
-                .build();
+                .claim(TokenClaims.USER_ID, profile.id())
+                .claim(TokenClaims.PROFILE_VERSION, version);
+
+        // Null-värden kan inte vara claims – de utelämnas och läses tillbaka som null
+        putIfPresent(claims, TokenClaims.EMAIL, profile.email());
+        putIfPresent(claims, TokenClaims.ROLE, profile.role());
+        putIfPresent(claims, TokenClaims.DISPLAY_NAME, profile.displayName());
+        putIfPresent(claims, TokenClaims.BIO, profile.bio());
+        putIfPresent(claims, TokenClaims.PROFILE_IMAGE_PATH, profile.profileImagePath());
 
         return jwtEncoder.encode(
-                JwtEncoderParameters.from(claims)
+                JwtEncoderParameters.from(header(), claims.build())
         ).getTokenValue();
     }
-}
 
+    // Algoritm och kid för ringens aktiva nyckel – encodern väljer nyckel på kid
+    private JwsHeader header() {
+        JWK active = keyRing.active();
+        return JwsHeader
+                .with(SignatureAlgorithm.from(active.getAlgorithm().getName()))
+                .keyId(active.getKeyID())
+                .build();
+    }
 
+    private static void putIfPresent(JwtClaimsSet.Builder claims, String name, String value) {
+        if (value != null) {
+            claims.claim(name, value);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package se.jensen.mikael.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.cache.TakenNamesFilter;
+import se.jensen.mikael.springboot.dto.AvailabilityResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Service för GET /users/availability.
+ * Bygger TakenNamesFilter från databasen i bakgrunden när applikationen
+ * startat och därefter med jämna mellanrum. Ett namn som inte finns i filtret är
+ * ledigt utan databasfråga; bara "kanske upptaget" frågar databasen.
+ * <p>
+ * Svaret är en vägledning – registreringen kan ändå ge 409 om någon
+ * annan hinner ta namnet (unik constraint i databasen avgör).
+ */
+@Service
+public class UserAvailabilityService {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(UserAvailabilityService.class);
+
+    private final TakenNamesFilter takenNames;
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    // Räknare: besvarade från filtret respektive via databasen
+    private final LongAdder answeredFromFilter = new LongAdder();
+    private final LongAdder answeredFromDatabase = new LongAdder();
+
+    public UserAvailabilityService(TakenNamesFilter takenNames, UserRepository userRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.takenNames = takenNames;
+        this.userRepository = userRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Laddar filtret i bakgrunden när applikationen är igång.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAtStartup() {
+        rebuild();
+    }
+
+    /**
+     * Laddar filtret genom att strömma alla användare från databasen.
+     * Körs vid start och sedan enligt user.availability.rebuild-interval-ms,
+     * så att namn från borttagna/omdöpta användare försvinner ur filtret.
+     * Misslyckas laddningen behålls det gamla filtret (eller inget – då
+     * frågas databasen) och nästa schemalagda körning provar igen.
+     */
+    @Scheduled(initialDelayString = "${user.availability.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${user.availability.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        long start = System.nanoTime();
+        takenNames.beginRebuild();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<UserResponseDTO> users = userRepository.streamAllResponses()) {
+                    users.forEach(user -> takenNames.addToRebuild(user.username(), user.email()));
+                }
+            });
+        } catch (RuntimeException e) {
+            takenNames.abortRebuild();
+            logger.error("Building the username/email filter failed, keeping the previous one", e);
+            return;
+        }
+        takenNames.endRebuild();
+        logger.info("Username/email filter built in {} ms", (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Kontrollerar om username och/eller email är lediga.
+     */
+    public AvailabilityResponseDTO check(String username, String email) {
+        boolean hasUsername = username != null && !username.isBlank();
+        boolean hasEmail = email != null && !email.isBlank();
+        if (!hasUsername && !hasEmail) {
+            throw new IllegalArgumentException("Ange username och/eller email");
+        }
+
+        Boolean usernameAvailable = null;
+        if (hasUsername) {
+            usernameAvailable = !takenNames.mightHaveUsername(username)
+                    ? fromFilter()
+                    : fromDatabase(!userRepository.existsByUsername(username));
+        }
+        Boolean emailAvailable = null;
+        if (hasEmail) {
+            emailAvailable = !takenNames.mightHaveEmail(email)
+                    ? fromFilter()
+                    : fromDatabase(!userRepository.existsByEmail(email));
+        }
+        return new AvailabilityResponseDTO(usernameAvailable, emailAvailable);
+    }
+
+    /**
+     * Räknare för övervakning.
+     */
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("answeredFromFilter", answeredFromFilter.sum());
+        stats.put("answeredFromDatabase", answeredFromDatabase.sum());
+        return stats;
+    }
+
+    private boolean fromFilter() {
+        answeredFromFilter.increment();
+        return true;
+    }
+
+    private boolean fromDatabase(boolean available) {
+        answeredFromDatabase.increment();
+        return available;
+    }
+}
@@ -0,0 +1,87 @@
+package se.jensen.mikael.springboot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.util.List;
+
+/**
+ * Rensar borttagna användare i bakgrunden.
+ * <p>
+ * DELETE /users/{id} markerar bara kontot som borttaget (deleted_at).
+ * Här tas användarens posts bort i omgångar om chunk-size rader, ett
+ * DELETE per omgång med en paus emellan, så att en användare med många
+ * posts inte låser tabellen eller tar databasen från vanliga requests.
+ * När inga posts finns kvar tas användarraden bort.
+ */
+@Service
+public class UserPurgeService {
+
+    private static final Logger logger =
+            LoggerFactory.getLogger(UserPurgeService.class);
+
+    // Max antal användare per körning – resten tas nästa gång
+    private static final int USERS_PER_RUN = 100;
+
+    private final UserRepository userRepository;
+    private final PostRepository postRepository;
+    private final FeedCache feedCache;
+    private final int chunkSize;
+    private final long pauseMillis;
+
+    public UserPurgeService(UserRepository userRepository, PostRepository postRepository, FeedCache feedCache,
+                            @Value("${user.purge.chunk-size:500}") int chunkSize,
+                            @Value("${user.purge.pause-ms:50}") long pauseMillis) {
+        this.userRepository = userRepository;
+        this.postRepository = postRepository;
+        this.feedCache = feedCache;
+        this.chunkSize = chunkSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Rensar användare som markerats borttagna.
+     */
+    @Scheduled(fixedDelayString = "${user.purge.interval-ms:10000}")
+    public void purgeDeletedUsers() {
+        List<Long> userIds = userRepository.findDeletedIds(USERS_PER_RUN);
+        for (Long userId : userIds) {
+            try {
+                purge(userId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Nästa körning försöker igen; övriga användare rensas ändå
+                logger.warn("Failed to purge deleted user " + userId, e);
+            }
+        }
+    }
+
+    // Posts i omgångar (egen transaktion per DELETE), sist själva användarraden
+    void purge(Long userId) throws InterruptedException {
+        long start = System.nanoTime();
+        int total = 0;
+        List<Long> postIds;
+        while (!(postIds = postRepository.findIdsByUserId(userId, Limit.of(chunkSize))).isEmpty()) {
+            total += postRepository.deleteRowsByIds(postIds);
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+        userRepository.purgeDeleted(userId);
+
+        if (total > 0) {
+            feedCache.invalidate();
+        }
+        logger.info("Purged deleted user " + userId + " and " + total + " posts in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -2,20 +2,43 @@ package se.jensen.mikael.springboot.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.cache.TakenNamesFilter;
+import se.jensen.mikael.springboot.cache.UserCache;
 import se.jensen.mikael.springboot.dto.UserRequestDTO;
+import se.jensen.mikael.springboot.dto.PostCursor;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.dto.UserCursor;
+import se.jensen.mikael.springboot.dto.UserPageResponseDTO;
+import se.jensen.mikael.springboot.dto.UserPatchDTO;
 import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.dto.UserSummaryDTO;
 import se.jensen.mikael.springboot.dto.UserWithPostsResponseDTO;
+import se.jensen.mikael.springboot.exception.PreconditionFailedException;
 import se.jensen.mikael.springboot.exception.UserAlreadyExistsException;
 import se.jensen.mikael.springboot.exception.UserNotFoundException;
 import se.jensen.mikael.springboot.mapper.UserMapper;
 import se.jensen.mikael.springboot.mapper.UserWithPostsMapper;
 import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
 import se.jensen.mikael.springboot.repository.UserRepository;
-
+import se.jensen.mikael.springboot.repository.UserSort;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
+import se.jensen.mikael.springboot.security.ProfileVersionRegistry;
+import se.jensen.mikael.springboot.security.RefreshTokenStore;
+import se.jensen.mikael.springboot.security.UserCredentialsCache;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /*
  ============================================================
@@ -26,6 +49,10 @@ import java.util.List;
   - Kommunicerar med UserRepository för databasoperationer
   - Mapperar mellan Entity och DTO
   - Hanterar CRUD (Create, Read, Update, Delete) + speciella endpoints
+  - Varje skrivande metod är en transaktion; läsningar är readOnly.
+    Cachar och sökindex uppdateras först efter commit (AfterCommit).
+    Cachade läsningar (getUser, getUserByUsername) öppnar ingen egen
+    transaktion – en cacheträff ska inte låna en anslutning från poolen.
 */
 @Service
 public class UserService {
@@ -34,6 +61,12 @@ public class UserService {
     private static final Logger logger =
             LoggerFactory.getLogger(UserService.class);
 
+    // Antal posts i /users/{id}/with-posts när klienten inte anger limit
+    static final int DEFAULT_POSTS_PAGE_SIZE = 20;
+
+    // Största sida i GET /users?limit=
+    static final int MAX_USER_PAGE_SIZE = 100;
+
     // Repository för att läsa/spara users i databasen
     private final UserRepository userRepository;
 
@@ -46,35 +79,59 @@ public class UserService {
     // Mapper mellan DTO entity
     private final UserWithPostsMapper userWithPostsMapper;
 
+    // Repository för att läsa en users posts
+    private final PostRepository postRepository;
+
+    // Flödescachen innehåller författarinfo och ska tömmas när en user ändras/tas bort
+    private final FeedCache feedCache;
+
+    // Sökindexet innehåller userns posts
+    private final PostSearchIndex postSearchIndex;
+
+    // Cache för profiler som läses ofta (/users/{id}, /users/me) – evictas vid update/delete
+    private final UserCache userCache;
+
+    // Cache för inloggningsuppgifter – måste evictas när lösenord eller roll ändras
+    private final UserCredentialsCache credentialsCache;
+
+    // Ny profilversion gör tokens med gamla profil-claims ogiltiga
+    private final ProfileVersionRegistry profileVersions;
+
+    // Bloomfilter över upptagna username/email (GET /users/availability)
+    private final TakenNamesFilter takenNames;
+
+    // Refresh-sessioner – avslutas när namn/lösenord ändras och vid radering
+    private final RefreshTokenStore refreshTokens;
+
     /*
       Konstruktor för Dependency Injection
       - Spring autowirar repository, mapper och encoder
     */
-    public UserService(UserRepository userRepository, UserMapper userMapper, PasswordEncoder passwordEncoder, UserWithPostsMapper userWithPostsMapper) {
+    public UserService(UserRepository userRepository, UserMapper userMapper, PasswordEncoder passwordEncoder,
+                       UserWithPostsMapper userWithPostsMapper, PostRepository postRepository,
+                       FeedCache feedCache, PostSearchIndex postSearchIndex, UserCache userCache,
+                       UserCredentialsCache credentialsCache, ProfileVersionRegistry profileVersions,
+                       TakenNamesFilter takenNames, RefreshTokenStore refreshTokens) {
         this.userRepository = userRepository;
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
         this.userWithPostsMapper = userWithPostsMapper;
+        this.postRepository = postRepository;
+        this.feedCache = feedCache;
+        this.postSearchIndex = postSearchIndex;
+        this.userCache = userCache;
+        this.credentialsCache = credentialsCache;
+        this.profileVersions = profileVersions;
+        this.takenNames = takenNames;
+        this.refreshTokens = refreshTokens;
     }
 
     // -----------------------------------------------------------
     // CREATE
     // -----------------------------------------------------------
+    @Transactional
     public UserResponseDTO addUser(UserRequestDTO dto) {
 
-        // Kontrollera om username eller email redan finns
-        boolean exists = userRepository.existsByUsernameOrEmail(
-                dto.username(),
-                dto.email()
-        );
-
-        // Om user finns, kasta exception
-        if (exists) {
-            throw new UserAlreadyExistsException(
-                    "User med detta username och/eller email finns redan i databasen"
-            );
-        }
-
         // Skapa User entity från DTO
         User user = userMapper.fromDto(dto);
 
@@ -82,8 +139,21 @@ public class UserService {
         // Här hash:as lösenordet
         user.setPassword(passwordEncoder.encode(dto.password()));
 
-        // Spara user i DB
-        User saved = userRepository.save(user);
+        // Spara user i DB – ingen förhandskontroll, unika constraints på
+        // username/email avgör. flush så att en krock syns här och inte vid commit.
+        User saved;
+        try {
+            saved = userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException(
+                    "User med detta username och/eller email finns redan i databasen"
+            );
+        }
+
+        // Namnen är nu upptagna (GET /users/availability)
+        String username = saved.getUsername();
+        String email = saved.getEmail();
+        AfterCommit.run(() -> takenNames.add(username, email));
 
         // Logga användaren som skapas
         logger.info("User created with username: " + saved.getUsername());
@@ -95,15 +165,74 @@ public class UserService {
     // -----------------------------------------------------------
     // READ ALL
     // -----------------------------------------------------------
+    @Transactional(readOnly = true)
     public List<UserResponseDTO> getAllUsers() {
 
-        // Hämta alla Users från DB
-        List<User> users = userRepository.findAll();
+        // Hämta alla Users från DB som DTO direkt (projektion),
+        // utan entiteter och utan lösenordskolumnen
+        return userRepository.findAllResponses();
+    }
+
+    // -----------------------------------------------------------
+    // READ PAGE
+    // -----------------------------------------------------------
+
+    /**
+     * Hämtar en sida användare, sorterad stigande på sort (id som tie-break).
+     * Keyset-paginering via after, så varje sida kostar lika mycket oavsett
+     * hur långt in i listan man är. fields=slim ger UserSummaryDTO.
+     */
+    @Transactional(readOnly = true)
+    public UserPageResponseDTO<?> getUserPage(int limit, String sort, String after, String usernamePrefix,
+                                              String displayNamePrefix, String fields) {
+
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit måste vara minst 1");
+        }
+        int pageSize = Math.min(limit, MAX_USER_PAGE_SIZE);
+        UserSort userSort = UserSort.fromParam(sort);
+
+        UserCursor cursor = null;
+        if (after != null && !after.isBlank()) {
+            cursor = UserCursor.decode(after);
+            if (!userSort.param().equals(cursor.sort())) {
+                throw new IllegalArgumentException("Cursorn hör till sort=" + cursor.sort());
+            }
+        }
+        String username = blankToNull(usernamePrefix);
+        String displayName = blankToNull(displayNamePrefix);
+
+        if (fields == null || fields.isBlank()) {
+            return page(UserResponseDTO.class, u -> new UserSort.UserKey(u.id(), u.username(), u.displayName()),
+                    userSort, username, displayName, cursor, pageSize);
+        }
+        if ("slim".equals(fields)) {
+            return page(UserSummaryDTO.class, u -> new UserSort.UserKey(u.id(), u.username(), u.displayName()),
+                    userSort, username, displayName, cursor, pageSize);
+        }
+        throw new IllegalArgumentException("Ogiltigt fields: " + fields + " (tillåtet: slim)");
+    }
+
+    // Hämtar pageSize + 1 rader – finns den extra raden så finns det en nästa sida
+    private <T> UserPageResponseDTO<T> page(Class<T> type, Function<T, UserSort.UserKey> keyOf, UserSort sort,
+                                            String usernamePrefix, String displayNamePrefix, UserCursor after,
+                                            int pageSize) {
+
+        List<T> rows = userRepository.findUserPage(type, sort, usernamePrefix, displayNamePrefix, after, pageSize + 1);
+
+        boolean hasMore = rows.size() > pageSize;
+        List<T> users = rows.subList(0, Math.min(pageSize, rows.size()));
 
-        // Mappa User-lista till DTO-lista
-        return users.stream()
-                .map(userMapper::toDto)
-                .toList();
+        String nextCursor = null;
+        if (hasMore) {
+            UserSort.UserKey last = keyOf.apply(users.get(users.size() - 1));
+            nextCursor = new UserCursor(sort.param(), sort.valueOf(last), last.id()).encode();
+        }
+        return new UserPageResponseDTO<>(users, nextCursor);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
     }
 
     // -----------------------------------------------------------
@@ -111,30 +240,36 @@ public class UserService {
     // -----------------------------------------------------------
     public UserResponseDTO getUser(Long id) {
 
-        // Hämta user från DB, kasta exception om den inte finns med logger.
-        User user = userRepository.findById(id)
-                .orElseThrow(() ->{
-                    logger.warn("User not found with id: " + id);
-                    return new UserNotFoundException("Ingen user i databasen med id: " + id);
-                });
-
-        return userMapper.toDto(user);
+        // Läs från cachen; vid miss hämtas user från DB (en gång även om
+        // flera anrop missar samtidigt). Finns den inte kastas exception med logger.
+        return userCache.getById(id, key -> {
+            User user = userRepository.findById(key)
+                    .orElseThrow(() ->{
+                        logger.warn("User not found with id: " + key);
+                        return new UserNotFoundException("Ingen user i databasen med id: " + key);
+                    });
+
+            return userMapper.toDto(user);
+        });
     }
 
     public UserResponseDTO getUserByUsername(String username) {
-        // Hämta user via username & kasta exception om den inte finns med logger.
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() ->{
-                    logger.warn("User " + username + " not found.");
-                    return new UsernameNotFoundException("User " + username + " hittades ej.");
-                });
-
-        return userMapper.toDto(user);
+        // Läs från cachen; vid miss hämtas user via username & kasta exception om den inte finns med logger.
+        return userCache.getByUsername(username, key -> {
+            User user = userRepository.findByUsername(key)
+                    .orElseThrow(() ->{
+                        logger.warn("User " + key + " not found.");
+                        return new UsernameNotFoundException("User " + key + " hittades ej.");
+                    });
+
+            return userMapper.toDto(user);
+        });
     }
 
     // -----------------------------------------------------------
     // UPDATE
     // -----------------------------------------------------------
+    @Transactional
     public UserResponseDTO updateUser(Long id, UserRequestDTO dto) {
 
         // Hämta user från DB, kasta exception om den inte finns med logger.
@@ -144,52 +279,216 @@ public class UserService {
                     return new UserNotFoundException("Ingen user i databasen med id: " + id);
                 });
 
+        // Kom ihåg gamla username – usern kan vara cachad under det
+        String oldUsername = existing.getUsername();
+
         // Uppdatera fält baserat på DTO
         userMapper.updateUserFromDto(existing, dto);
 
         //Hasha nytt lösenord
         existing.setPassword(passwordEncoder.encode(dto.password()));
 
-        // Spara ändringarna (UPDATE sker automatiskt i DB)
-        User updated = userRepository.save(existing);
+        // Spara ändringarna – flush så att nya versionen (och en ev. krock
+        // på username/email) syns här och inte först vid commit
+        User updated;
+        try {
+            updated = userRepository.saveAndFlush(existing);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException("User med detta username och/eller email finns redan i databasen");
+        }
 
         // Logga att användaren uppdateras vid sparande
         logger.info("User updated with id: " + id);
 
         // Returnera DTO
-        return userMapper.toDto(updated);
+        UserResponseDTO response = userMapper.toDto(updated);
+
+        // Flödet visar författarinfo – invalidera så ändringen syns direkt
+        // Sessionerna ligger i databasen – avslutas i samma transaktion
+        refreshTokens.revokeAll(id); // PUT sätter alltid nytt lösenord
+        AfterCommit.run(() -> {
+            userCache.evict(id, oldUsername, response.username());
+            credentialsCache.evict(oldUsername, response.username()); // nytt lösenord/roll gäller direkt
+            profileVersions.invalidate(id);             // gamla tokens bär gammal profil
+            feedCache.invalidate();
+            takenNames.add(response.username(), response.email());
+        });
+
+        return response;
+    }
+
+    // -----------------------------------------------------------
+    // PATCH
+    // -----------------------------------------------------------
+
+    /**
+     * Ändrar bara fälten som skickats med (se UserPatchDTO), i ett enda
+     * UPDATE utan att läsa raden först. Lösenordet hashas bara om ett nytt
+     * skickas. Med expectedVersion (If-Match) uppdateras raden bara om den
+     * inte ändrats sedan dess, annars PreconditionFailedException (→ 412).
+     * Returnerar den nya versionen (ETag).
+     */
+    @Transactional
+    public long patchUser(Long id, UserPatchDTO dto, Long expectedVersion) {
+
+        Map<String, Object> changes = new LinkedHashMap<>();
+        putText(changes, "username", dto.username());
+        putText(changes, "email", dto.email());
+        putText(changes, "displayName", dto.displayName());
+        putText(changes, "bio", dto.bio());
+        if (dto.profileImagePath() != null) {
+            changes.put("profileImagePath", dto.profileImagePath().isBlank() ? null : dto.profileImagePath());
+        }
+        if (dto.password() != null) {
+            if (dto.password().isBlank()) {
+                throw new IllegalArgumentException("password får inte vara tomt");
+            }
+            changes.put("password", passwordEncoder.encode(dto.password()));
+        }
+        if (changes.isEmpty()) {
+            throw new IllegalArgumentException("Inga fält att uppdatera");
+        }
+
+        // Gamla username behövs bara om det byts – usern kan vara cachad under det
+        String oldUsername = dto.username() == null ? null
+                : userRepository.findResponseById(id).map(UserResponseDTO::username).orElse(null);
+
+        int updated;
+        try {
+            updated = userRepository.patchUser(id, expectedVersion, changes);
+        } catch (DataIntegrityViolationException e) {
+            throw new UserAlreadyExistsException("User med detta username och/eller email finns redan i databasen");
+        }
+
+        if (updated == 0) {
+            Long current = userRepository.findVersionById(id)
+                    .orElseThrow(() -> {
+                        logger.warn("User not found with id: " + id);
+                        return new UserNotFoundException("Ingen user i databasen med id: " + id);
+                    });
+            throw new PreconditionFailedException("User " + id + " har ändrats, aktuell version är " + current);
+        }
+
+        logger.info("User patched with id: " + id + ", fields: " + changes.keySet());
+
+        // Med If-Match vet vi versionen, annars läses den
+        long version = expectedVersion != null ? expectedVersion + 1
+                : userRepository.findVersionById(id).orElseThrow();
+        UserResponseDTO response = userRepository.findResponseById(id)
+                .orElseThrow(() -> new UserNotFoundException("Ingen user i databasen med id: " + id));
+
+        if (dto.username() != null || dto.password() != null) {
+            refreshTokens.revokeAll(id); // inloggningen ändrades – logga in på nytt
+        }
+
+        // Samma invalidering som vid PUT
+        AfterCommit.run(() -> {
+            if (oldUsername != null) {
+                userCache.evict(id, oldUsername, response.username());
+                credentialsCache.evict(oldUsername, response.username());
+            } else {
+                userCache.evict(id, response.username());
+                credentialsCache.evict(response.username());
+            }
+            profileVersions.invalidate(id);
+            feedCache.invalidate();
+            takenNames.add(dto.username(), dto.email());
+        });
+
+        return version;
+    }
+
+    // Skickade textfält får inte vara tomma
+    private static void putText(Map<String, Object> changes, String attribute, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.isBlank()) {
+            throw new IllegalArgumentException(attribute + " får inte vara tomt");
+        }
+        changes.put(attribute, value);
     }
 
     // -----------------------------------------------------------
     // DELETE
     // -----------------------------------------------------------
+    @Transactional
     public void deleteUser(Long id) {
 
-        // Kontrollera om user finns, kasta exception med logger om user inte finns.
-        if (!userRepository.existsById(id)) {
+        // Markera som borttagen i ett UPDATE – posts och raden rensas i
+        // bakgrunden (UserPurgeService). 0 rader: usern finns inte eller
+        // någon annan hann före. Ingen SELECT före, så inget kan ändras emellan.
+        if (userRepository.markDeleted(id, Instant.now()) == 0) {
             logger.warn("User not found with id: " + id);
             throw new UserNotFoundException("Ingen user i databasen med id: " + id);
         }
 
-        // Radera user från DB
-        userRepository.deleteById(id);
+        // Username behövs bara för att evicta cachar nycklade på namnet.
+        // Raden är låst av UPDATE:n till commit, så namnet kan inte bytas under tiden.
+        String username = userRepository.findUsernameIncludingDeleted(id).orElse(null);
 
         // Logga att användaren är borttagen
         logger.info("User deleted with id: " + id);
+
+        refreshTokens.revokeAll(id);
+
+        // Userns posts ska inte synas i flödescachen eller sökindexet medan de rensas
+        AfterCommit.run(() -> {
+            userCache.evict(id, username);
+            credentialsCache.evict(username);
+            profileVersions.invalidate(id);
+            feedCache.invalidate();
+            postSearchIndex.removeAuthor(id);
+        });
     }
 
     // -----------------------------------------------------------
     // GET USER WITH POSTS
     // -----------------------------------------------------------
+    @Transactional(readOnly = true)
     public UserWithPostsResponseDTO getUserWithPosts(Long id) {
+        return getUserWithPosts(id, DEFAULT_POSTS_PAGE_SIZE, null);
+    }
+
+    /**
+     * Hämtar en user och en sida av dess posts (nyast först).
+     * Två queries oavsett hur många posts usern har: user-raden via
+     * primärnyckeln och limit+1 posts via indexet på (user_id, created_at, id).
+     */
+    @Transactional(readOnly = true)
+    public UserWithPostsResponseDTO getUserWithPosts(Long id, int limit, String before) {
+
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit måste vara minst 1");
+        }
+        int pageSize = Math.min(limit, PostService.MAX_PAGE_SIZE);
 
-        // Hämta user med posts (custom query i repository), kasta exception med logger om user inte finns.
-        User user = userRepository.findUserWithPosts(id)
+        // Hämta user som projektion, kasta exception med logger om user inte finns.
+        UserResponseDTO user = userRepository.findResponseById(id)
                 .orElseThrow(() -> {
                     logger.warn("User not found with id: " + id);
                     return new UserNotFoundException("User not found with id: " + id);
                 });
 
-        return userWithPostsMapper.toDto(user);
+        // Hämta en post extra – finns den så finns det en nästa sida
+        Limit fetch = Limit.of(pageSize + 1);
+        List<PostRow> rows;
+        if (before == null || before.isBlank()) {
+            rows = postRepository.findRowsByUserId(id, fetch);
+        } else {
+            PostCursor cursor = PostCursor.decode(before);
+            rows = postRepository.findRowsByUserIdBefore(id, cursor.createdAt(), cursor.id(), fetch);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<PostRow> page = rows.subList(0, Math.min(pageSize, rows.size()));
+
+        String nextCursor = null;
+        if (hasMore) {
+            PostRow last = page.get(page.size() - 1);
+            nextCursor = new PostCursor(last.createdAt(), last.id()).encode();
+        }
+
+        return userWithPostsMapper.toDto(user, page, nextCursor);
     }
 }
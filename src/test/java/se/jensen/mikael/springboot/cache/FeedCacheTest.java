@@ -0,0 +1,76 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.junit.jupiter.api.Test;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FeedCacheTest {
+
+    private static PostResponseDTO post(long id) {
+        return new PostResponseDTO(id, "Post " + id, Instant.now(), null);
+    }
+
+    /**
+     * Andra läsningen ska vara en träff och inte anropa loadern.
+     */
+    @Test
+    public void secondReadIsHit() {
+        FeedCache cache = new FeedCache(10, 60);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getNewest(n -> {
+            loads.incrementAndGet();
+            return List.of(post(1));
+        });
+        List<PostResponseDTO> result = cache.getNewest(n -> {
+            loads.incrementAndGet();
+            return List.of(post(2));
+        });
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, result.get(0).id());
+        assertEquals(1L, cache.stats().get("hits"));
+    }
+
+    /**
+     * En laddning som pågår när posten tas bort får inte hamna i cachen –
+     * annars skulle läsare se en borttagen post tills TTL gått ut.
+     */
+    @Test
+    public void loadRacingWithInvalidationIsNotCached() {
+        FeedCache cache = new FeedCache(10, 60);
+
+        // Loadern läser "gammal" data och en delete hinner invalidera under tiden
+        cache.getNewest(n -> {
+            cache.invalidate();
+            return List.of(post(1));
+        });
+
+        List<PostResponseDTO> result = cache.getNewest(n -> List.of());
+
+        assertTrue(result.isEmpty());
+        assertEquals(2L, cache.stats().get("misses"));
+    }
+
+    /**
+     * Loadern ska be om capacity + 1 rader så att vi vet om det finns en nästa sida.
+     */
+    @Test
+    public void loaderIsAskedForCapacityPlusOne() {
+        FeedCache cache = new FeedCache(20, 60);
+        AtomicInteger requested = new AtomicInteger();
+
+        cache.getNewest(n -> {
+            requested.set(n);
+            return List.of();
+        });
+
+        assertEquals(21, requested.get());
+    }
+}
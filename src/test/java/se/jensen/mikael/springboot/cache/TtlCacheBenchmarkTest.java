@@ -0,0 +1,44 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mätningar av TtlCache; tiderna loggas. Körs bara med -Pbenchmark.
+ */
+@Tag("benchmark")
+public class TtlCacheBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TtlCacheBenchmarkTest.class);
+
+    /**
+     * En full, stor cache: varje ny nyckel kastar en gammal utan att gå
+     * igenom hela cachen. Testet kontrollerar storleken.
+     */
+    @Test
+    public void evictionFromLargeCacheIsAmortizedConstant() {
+        int maxSize = 100_000;
+        int loads = 1_000_000;
+        TtlCache<Long, String> cache = new TtlCache<>(maxSize, 60, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        for (long id = 0; id < loads; id++) {
+            cache.get(id, key -> "user");
+            if (id % 4 == 0) {
+                cache.get(id / 2, key -> "user"); // några träffar, så alla värden inte är lika
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        logger.info("TtlCache: {} loads into {} entries, {} ns/load, {}",
+                loads, maxSize, elapsed / loads, cache.stats());
+        assertTrue(cache.size() <= maxSize);
+        assertTrue(cache.queued() <= 2 * maxSize);
+    }
+}
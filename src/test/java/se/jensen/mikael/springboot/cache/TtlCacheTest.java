@@ -0,0 +1,180 @@
+package se.jensen.mikael.springboot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TtlCacheTest {
+
+    /**
+     * Andra läsningen ska vara en träff och inte anropa loadern.
+     */
+    @Test
+    public void secondReadIsHit() {
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> "user" + loads.incrementAndGet());
+        String result = cache.get(1L, id -> "user" + loads.incrementAndGet());
+
+        assertEquals("user1", result);
+        assertEquals(1, loads.get());
+        assertEquals(50L, cache.stats().get("hitRatioPercent"));
+    }
+
+    /**
+     * Många samtidiga missar på samma nyckel ska bli en enda laddning.
+     */
+    @Test
+    public void concurrentMissesAreCoalesced() throws Exception {
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get(1L, id -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "user1";
+            })));
+            loading.await();
+            for (int i = 0; i < 7; i++) {
+                results.add(pool.submit(() -> cache.get(1L, id -> "user" + loads.incrementAndGet())));
+            }
+            // Vänta tills alla väntar på laddningen, släpp den sedan
+            while (cache.stats().get("coalesced") < 7) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("user1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * En laddning som pågår när nyckeln invalideras får inte cacha sitt gamla värde.
+     */
+    @Test
+    public void invalidateDuringLoadIsNotOverwritten() {
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+
+        cache.get(1L, id -> {
+            cache.invalidate(1L);
+            return "old";
+        });
+        String result = cache.get(1L, id -> "new");
+
+        assertEquals("new", result);
+    }
+
+    /**
+     * Utgångna värden laddas om, undantag och null cachas inte.
+     */
+    @Test
+    public void expiredAndFailedLoadsAreNotCached() {
+        TtlCache<Long, String> expired = new TtlCache<>(10, 0, TimeUnit.SECONDS);
+        expired.get(1L, id -> "old");
+        assertEquals("new", expired.get(1L, id -> "new"));
+
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, () -> cache.get(1L, id -> {
+            throw new IllegalStateException("db nere");
+        }));
+        assertNull(cache.get(1L, id -> null));
+        assertEquals("user1", cache.get(1L, id -> "user1"));
+    }
+
+    /**
+     * Cachen växer aldrig över maxSize.
+     */
+    @Test
+    public void sizeIsBounded() {
+        TtlCache<Long, String> cache = new TtlCache<>(3, 60, TimeUnit.SECONDS);
+        for (long id = 0; id < 10; id++) {
+            cache.get(id, key -> "user" + key);
+        }
+        assertTrue(cache.size() <= 3);
+    }
+
+    /**
+     * Full cache: ett värde som lästs sedan det lades in får en andra chans,
+     * det äldsta olästa kastas.
+     */
+    @Test
+    public void recentlyReadEntriesSurviveEviction() {
+        TtlCache<Long, String> cache = new TtlCache<>(3, 60, TimeUnit.SECONDS);
+        for (long id = 1; id <= 3; id++) {
+            cache.get(id, key -> "user" + key);
+        }
+        cache.get(1L, key -> "reloaded");
+
+        cache.get(4L, key -> "user" + key);
+
+        assertEquals("user1", cache.get(1L, key -> "reloaded"));
+        assertEquals("reloaded", cache.get(2L, key -> "reloaded"));
+        // 2 kastades för 4, sedan 3 när 2 laddades om
+        assertEquals(2L, cache.stats().get("evictions"));
+    }
+
+    /**
+     * Invalidering av en nyckel stoppar bara laddningar av just den nyckeln.
+     */
+    @Test
+    public void invalidatingAnotherKeyDoesNotDropLoad() {
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(1L, id -> {
+            loads.incrementAndGet();
+            cache.invalidate(2L);
+            return "user1";
+        });
+        cache.get(1L, id -> "user" + loads.incrementAndGet());
+
+        assertEquals(1, loads.get());
+    }
+
+    /**
+     * Upprepad invalidering och omladdning av samma nyckel får inte fylla
+     * evictionkön med gamla poster.
+     */
+    @Test
+    public void churnKeepsEvictionQueueBounded() {
+        TtlCache<Long, String> cache = new TtlCache<>(10, 60, TimeUnit.SECONDS);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get((long) (i % 5), key -> "user" + key);
+            cache.invalidate((long) (i % 5));
+        }
+        assertTrue(cache.queued() <= 20, "kön: " + cache.queued());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
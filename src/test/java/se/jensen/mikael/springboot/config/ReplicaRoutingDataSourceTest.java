@@ -0,0 +1,184 @@
+package se.jensen.mikael.springboot.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.cache.UserCache;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTOBuilder;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing mellan två inbäddade H2-databaser: "primary" och "replica".
+ * Varje databas har en tabell med sitt eget namn, så en SELECT visar vart
+ * anslutningen gick. Samma uppsättning som i ReplicaDataSourceConfig:
+ * LazyConnectionDataSourceProxy framför routingen och en riktig
+ * transaktionshanterare.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = h2("primary");
+    private final DataSource replica = h2("replica");
+
+    // En replika som aldrig går att ansluta till
+    private final DataSource downReplica = new DriverManagerDataSource("jdbc:invalid:replica");
+
+    @BeforeEach
+    public void setUp() {
+        ReplicaRoutingDataSource.endRequest();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ReplicaRoutingDataSource.endRequest();
+    }
+
+    @Test
+    public void readOnlyGoesToReplicaAndWritesToPrimary() {
+        Routing routing = new Routing(List.of(replica));
+
+        assertEquals("replica", routing.readOnly());
+        assertEquals("primary", routing.readWrite());
+        assertEquals(1L, routing.dataSource.stats().get("replicaReads"));
+        assertEquals(1L, routing.dataSource.stats().get("primaryWrites"));
+    }
+
+    /**
+     * Efter en skrivning läser resten av requesten från primären.
+     */
+    @Test
+    public void readsAfterWriteStickToPrimaryUntilCleared() {
+        Routing routing = new Routing(List.of(replica));
+
+        // ReadYourWritesFilter avgränsar requesten
+        ReplicaRoutingDataSource.beginRequest();
+        assertEquals("replica", routing.readOnly());
+        routing.readWrite();
+        assertEquals("primary", routing.readOnly());
+
+        ReplicaRoutingDataSource.endRequest();
+        assertEquals("replica", routing.readOnly());
+    }
+
+    /**
+     * Utanför en request (schemalagda jobb, @Async) gör en skrivning inte
+     * tråden klistrad till primären – poolade trådar återanvänds för gott.
+     */
+    @Test
+    public void writesOutsideRequestDoNotStick() {
+        Routing routing = new Routing(List.of(replica));
+
+        routing.readWrite();
+
+        assertEquals("replica", routing.readOnly());
+        assertEquals(0L, routing.dataSource.stats().get("stickyReads"));
+    }
+
+    /**
+     * Cachar laddar från primären även i readOnly-transaktioner – en
+     * släpande replika får inte fylla en delad cache med gamla rader.
+     */
+    @Test
+    public void cacheLoadersReadFromPrimary() {
+        Routing routing = new Routing(List.of(replica));
+
+        assertEquals("primary", ReplicaRoutingDataSource.onPrimary(routing::readOnly));
+
+        UserCache userCache = new UserCache(10, 60);
+        String[] node = new String[1];
+        userCache.getById(1L, id -> {
+            node[0] = routing.readOnly();
+            return UserResponseDTOBuilder.builder().withId(id).build();
+        });
+        assertEquals("primary", node[0]);
+
+        FeedCache feedCache = new FeedCache(10, 60);
+        feedCache.getNewest(n -> {
+            node[0] = routing.readOnly();
+            return List.<PostResponseDTO>of();
+        });
+        assertEquals("primary", node[0]);
+
+        // Utanför cachen går läsningar till replikan som vanligt
+        assertEquals("replica", routing.readOnly());
+        assertEquals(3L, routing.dataSource.stats().get("pinnedReads"));
+    }
+
+    /**
+     * Misslyckas en anslutning mot replikan går läsningen till primären
+     * och replikan hoppas över tills checkHealth ser att den är uppe igen.
+     */
+    @Test
+    public void failingReplicaFallsBackToPrimary() {
+        Routing routing = new Routing(List.of(downReplica));
+
+        assertEquals("primary", routing.readOnly());
+        assertEquals("primary", routing.readOnly());
+        assertEquals(1L, routing.dataSource.stats().get("replicaFailures"));
+        assertEquals(0L, routing.dataSource.stats().get("replicasUp"));
+    }
+
+    @Test
+    public void healthCheckSkipsReplicasThatAreDown() {
+        Routing routing = new Routing(List.of(downReplica, replica));
+
+        routing.dataSource.checkHealth();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica", routing.readOnly());
+        }
+        assertEquals(1L, routing.dataSource.stats().get("replicasUp"));
+        assertEquals(0L, routing.dataSource.stats().get("replicaFailures"));
+    }
+
+    private static DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    // Routing + lazy proxy + transaktioner, som i applikationen
+    private class Routing {
+
+        final ReplicaRoutingDataSource dataSource;
+        final JdbcTemplate jdbc;
+        final TransactionTemplate readOnly;
+        final TransactionTemplate readWrite;
+
+        Routing(List<DataSource> replicas) {
+            this.dataSource = new ReplicaRoutingDataSource(primary, replicas, 1);
+            DataSource proxy = new LazyConnectionDataSourceProxy(dataSource);
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(proxy);
+            this.jdbc = new JdbcTemplate(proxy);
+            this.readOnly = new TransactionTemplate(transactionManager);
+            this.readOnly.setReadOnly(true);
+            this.readWrite = new TransactionTemplate(transactionManager);
+        }
+
+        String readOnly() {
+            return readOnly.execute(status -> node());
+        }
+
+        String readWrite() {
+            return readWrite.execute(status -> node());
+        }
+
+        private String node() {
+            return jdbc.queryForObject("SELECT name FROM node", String.class);
+        }
+    }
+}
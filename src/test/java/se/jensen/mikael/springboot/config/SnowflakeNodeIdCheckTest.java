@@ -0,0 +1,43 @@
+package se.jensen.mikael.springboot.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class SnowflakeNodeIdCheckTest {
+
+    private String previous;
+
+    @BeforeEach
+    public void setUp() {
+        assumeTrue(System.getenv("SNOWFLAKE_NODE_ID") == null, "SNOWFLAKE_NODE_ID är satt i miljön");
+        previous = System.clearProperty("snowflake.node-id");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (previous != null) {
+            System.setProperty("snowflake.node-id", previous);
+        }
+    }
+
+    /**
+     * Utan nod-id startar applikationen bara med profilen dev eller test.
+     */
+    @Test
+    public void missingNodeIdFailsOutsideDevAndTest() {
+        assertThrows(IllegalStateException.class, () -> new SnowflakeNodeIdCheck(new MockEnvironment()));
+
+        MockEnvironment test = new MockEnvironment();
+        test.setActiveProfiles("test");
+        assertDoesNotThrow(() -> new SnowflakeNodeIdCheck(test));
+
+        System.setProperty("snowflake.node-id", "3");
+        assertDoesNotThrow(() -> new SnowflakeNodeIdCheck(new MockEnvironment()));
+    }
+}
@@ -0,0 +1,117 @@
+package se.jensen.mikael.springboot.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import se.jensen.mikael.springboot.cache.UserCache;
+import se.jensen.mikael.springboot.dto.LoginResponseDTO;
+import se.jensen.mikael.springboot.dto.UserPatchDTO;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.security.UserCredentialsCache;
+import se.jensen.mikael.springboot.service.UserService;
+import tools.jackson.databind.ObjectMapper;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Refresh-tokens hör till användarens id, inte användarnamnet.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class AuthControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserCache userCache;
+    @Autowired
+    private UserCredentialsCache credentialsCache;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    /**
+     * Den som tar över ett gammalt användarnamn ärver inte dess sessioner.
+     */
+    @Test
+    public void refreshFollowsUserIdNotUsername() throws Exception {
+        User anna = save("anna");
+        LoginResponseDTO login = login("anna");
+
+        // Namnet byts direkt i databasen och någon annan registrerar det
+        anna.setUsername("anna-old");
+        userRepository.save(anna);
+        userCache.evict(anna.getId(), "anna", "anna-old");
+        credentialsCache.evict("anna", "anna-old");
+        save("anna");
+
+        mockMvc.perform(refresh(login.refreshToken()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.userId").value(anna.getId()));
+    }
+
+    /**
+     * Nytt lösenord avslutar alla refresh-sessioner.
+     */
+    @Test
+    public void passwordChangeRevokesRefreshTokens() throws Exception {
+        User anna = save("anna");
+        LoginResponseDTO login = login("anna");
+
+        userService.patchUser(anna.getId(), new UserPatchDTO(null, null, "nytt-lösenord", null, null, null), null);
+
+        mockMvc.perform(refresh(login.refreshToken()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private User save(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "-" + System.nanoTime() + "@test.com");
+        user.setPassword(passwordEncoder.encode("password"));
+        user.setRole("USER");
+        user.setDisplayName(username);
+        user.setBio("bio");
+        return userRepository.save(user);
+    }
+
+    private LoginResponseDTO login(String username) throws Exception {
+        String body = mockMvc.perform(MockMvcRequestBuilders.post("/request-token")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\":\"" + username + "\",\"password\":\"password\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, LoginResponseDTO.class);
+    }
+
+    private static MockHttpServletRequestBuilder refresh(String refreshToken) {
+        return MockMvcRequestBuilders.post("/request-token/refresh")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"refreshToken\":\"" + refreshToken + "\"}");
+    }
+}
@@ -0,0 +1,123 @@
+package se.jensen.mikael.springboot.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Regressionstest för spring.jpa.open-in-view=false.
+ * <p>
+ * Utan OSIV finns ingen session efter att service-transaktionen avslutats,
+ * så varje lazy-laddning utanför en transaktion (t.ex. post.getUser() i en
+ * controller eller under JSON-serialiseringen) ger LazyInitializationException
+ * och svaret blir inte 200. Testerna går igenom läs- och skrivvägar som
+ * returnerar författarinfo.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OpenSessionInViewTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ApplicationContext context;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private FeedCache feedCache;
+
+    private User author;
+    private Post post;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("author");
+        user.setEmail("author@test.com");
+        user.setPassword("hash");
+        user.setRole("USER");
+        user.setDisplayName("Author");
+        user.setBio("Bio");
+        author = userRepository.save(user);
+
+        Post newPost = new Post(author);
+        newPost.setText("Första posten");
+        newPost.setCreatedAt(Instant.now());
+        post = postRepository.save(newPost);
+
+        feedCache.invalidate();
+    }
+
+    /**
+     * Ingen OSIV-interceptor får vara registrerad.
+     */
+    @Test
+    void openSessionInViewIsDisabled() {
+        assertFalse(context.containsBean("openEntityManagerInViewInterceptor"));
+    }
+
+    @Test
+    void getPostLoadsAuthorInsideTransaction() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/posts/" + post.getId())
+                        .with(jwt().jwt(j -> j.subject("author"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value("author"));
+    }
+
+    @Test
+    void updatePostLoadsAuthorInsideTransaction() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/posts/" + post.getId())
+                        .with(jwt().jwt(j -> j.subject("author")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Ändrad text\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user.username").value("author"));
+    }
+
+    @Test
+    void createPostForUserLoadsAuthorInsideTransaction() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/users/" + author.getId() + "/posts")
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Ny post\"}"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.user.username").value("author"));
+    }
+
+    @Test
+    void feedAndUserWithPostsWork() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/posts").param("limit", "10")
+                        .with(jwt().jwt(j -> j.subject("author"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/" + author.getId() + "/with-posts")
+                        .with(jwt().jwt(j -> j.subject("author"))))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,216 @@
+package se.jensen.mikael.springboot.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.service.UserService;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Behörighet på post-endpoints som skriver åt en viss användare, och att
+ * borttagna användares poster inte visas.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PostControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FeedCache feedCache;
+
+    private User author;
+    private User other;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+        author = save("author");
+        other = save("other");
+    }
+
+    /**
+     * Batch-importen anger userId per rad – en vanlig användare får inte
+     * skapa poster i någon annans namn.
+     */
+    @Test
+    public void batchRequiresAdmin() throws Exception {
+        String body = "[{\"text\":\"Inte min post\",\"userId\":" + other.getId() + "}]";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/posts/batch")
+                        .with(jwt().jwt(j -> j.subject("author").claim("uid", author.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isForbidden());
+        assertEquals(0, postRepository.count());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/posts/batch")
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").isNotEmpty());
+        assertEquals(1, postRepository.count());
+    }
+
+    /**
+     * PATCH ändrar en post – bara författaren eller en admin får göra det.
+     */
+    @Test
+    public void patchRequiresAuthorOrAdmin() throws Exception {
+        long postId = savePost(author).getId();
+        String body = "{\"text\":\"Ändrad\"}";
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("other").claim("uid", other.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isForbidden());
+        assertEquals("Post av author", postRepository.findById(postId).orElseThrow().getText());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("author").claim("uid", author.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isNoContent());
+        assertEquals("Ändrad", postRepository.findById(postId).orElseThrow().getText());
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Av admin\"}"))
+                .andExpect(status().isNoContent());
+        assertEquals("Av admin", postRepository.findById(postId).orElseThrow().getText());
+    }
+
+    /**
+     * PUT och DELETE har samma regel som PATCH: bara författaren eller en admin.
+     */
+    @Test
+    public void putAndDeleteRequireAuthorOrAdmin() throws Exception {
+        long postId = savePost(author).getId();
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("other").claim("uid", other.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Kapad\"}"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("other").claim("uid", other.getId()))))
+                .andExpect(status().isForbidden());
+        assertEquals("Post av author", postRepository.findById(postId).orElseThrow().getText());
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("author").claim("uid", author.getId())))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"text\":\"Ändrad\"}"))
+                .andExpect(status().isOk());
+        assertEquals("Ändrad", postRepository.findById(postId).orElseThrow().getText());
+
+        mockMvc.perform(MockMvcRequestBuilders.delete("/posts/" + postId)
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isNoContent());
+        assertTrue(postRepository.findById(postId).isEmpty());
+    }
+
+    /**
+     * Bara exporten får den långa timeouten (30 min) – övriga asynkrona
+     * requests har standardtimeouten.
+     */
+    @Test
+    public void exportGetsLongAsyncTimeout() throws Exception {
+        savePost(author);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/posts/export")
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(request -> assertEquals(Exports.TIMEOUT.toMillis(),
+                        request.getRequest().getAsyncContext().getTimeout()))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Post av author")));
+    }
+
+    /**
+     * En raderad användares poster ska vara borta direkt – inte visas med
+     * "user": null medan de rensas i bakgrunden. Poster utan användare syns.
+     */
+    @Test
+    public void postsOfDeletedUserAreHidden() throws Exception {
+        User gone = save("gone-" + System.nanoTime());
+        long hidden = savePost(gone).getId();
+        long orphan = savePost(null).getId();
+        long kept = savePost(author).getId();
+
+        userService.deleteUser(gone.getId());
+        feedCache.invalidate();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/posts/" + hidden).with(jwt()))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.get("/posts").with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id").value(not(hasItem(hidden))))
+                .andExpect(jsonPath("$[*].id").value(hasItem(orphan)))
+                .andExpect(jsonPath("$[*].id").value(hasItem(kept)));
+        mockMvc.perform(MockMvcRequestBuilders.get("/posts").param("limit", "10").with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.posts[*].id").value(not(hasItem(hidden))))
+                .andExpect(jsonPath("$.posts[*].id").value(hasItem(kept)));
+    }
+
+    private Post savePost(User user) {
+        Post post = user == null ? new Post() : new Post(user);
+        post.setText("Post av " + (user == null ? "ingen" : user.getUsername()));
+        post.setCreatedAt(Instant.now());
+        return postRepository.save(post);
+    }
+
+    private User save(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@test.com");
+        user.setPassword("$2a$10$" + "x".repeat(53));
+        user.setRole("USER");
+        user.setDisplayName(username);
+        user.setBio("bio");
+        return userRepository.save(user);
+    }
+}
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
@@ -19,7 +21,8 @@ import tools.jackson.databind.ObjectMapper;
 
 import java.util.List;
 
-import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -51,11 +54,40 @@ public class UserControllerTest {
     @Test
     void shouldGetAllUsers() throws Exception {
         MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/users")
-                        .with(httpBasic("admin", "password")))
+                        // API:t tar bara Bearer-JWT (resource server), ingen HTTP Basic
+                        .with(jwt().jwt(j -> j.subject("admin"))
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
                 .andExpect(status().isOk()).andReturn();
         String response = result.getResponse().getContentAsString();
         List<UserResponseDTO> users = objectMapper.readValue(
                 response, new TypeReference<List<UserResponseDTO>>() {
                 });
+        assertEquals(List.of("admin"), users.stream().map(UserResponseDTO::username).toList());
+    }
+
+    /**
+     * PATCH på det egna kontot kan inte ge sig själv en annan roll – "role"
+     * ignoreras, övriga fält sparas.
+     */
+    @Test
+    void selfPatchCannotChangeRole() throws Exception {
+        User user = new User();
+        user.setRole("USER");
+        user.setPassword(passwordEncoder.encode("password"));
+        user.setEmail("user@test.com");
+        user.setDisplayName("User");
+        user.setBio("Gammal bio");
+        user.setUsername("user");
+        Long id = userRepository.save(user).getId();
+
+        mockMvc.perform(MockMvcRequestBuilders.patch("/users/" + id)
+                        .with(jwt().jwt(j -> j.subject("user").claim("uid", id)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"role\":\"ADMIN\",\"bio\":\"Ny bio\"}"))
+                .andExpect(status().isNoContent());
+
+        User saved = userRepository.findById(id).orElseThrow();
+        assertEquals("USER", saved.getRole());
+        assertEquals("Ny bio", saved.getBio());
     }
 }
@@ -0,0 +1,96 @@
+package se.jensen.mikael.springboot.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnowflakeTest {
+
+    /**
+     * Id:n ska vara strikt växande, även när klockan står still.
+     */
+    @Test
+    public void idsAreStrictlyIncreasing() {
+        Snowflake snowflake = new Snowflake(3, () -> Snowflake.EPOCH_MILLIS + 1_000);
+
+        long previous = snowflake.nextId();
+        // Fler än 256 id på samma millisekund – sekvensen rullar över till nästa ms
+        for (int i = 0; i < 1_000; i++) {
+            long next = snowflake.nextId();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    /**
+     * Om klockan går bakåt ska vi ändå inte dela ut ett mindre (eller samma) id.
+     */
+    @Test
+    public void clockGoingBackwardsKeepsIdsIncreasing() {
+        AtomicLong clock = new AtomicLong(Snowflake.EPOCH_MILLIS + 10_000);
+        Snowflake snowflake = new Snowflake(0, clock::get);
+
+        long before = snowflake.nextId();
+        clock.addAndGet(-5_000);
+        long after = snowflake.nextId();
+
+        assertTrue(after > before);
+    }
+
+    /**
+     * Nod-id och tidsstämpel ska gå att läsa ut, och id:t ska rymmas i 53 bitar
+     * (exakt representerbart som number i JavaScript).
+     */
+    @Test
+    public void idContainsNodeAndTimestamp() {
+        long millis = Snowflake.EPOCH_MILLIS + 123_456_789L;
+        Snowflake snowflake = new Snowflake(7, () -> millis);
+
+        long id = snowflake.nextId();
+
+        assertEquals(millis, Snowflake.timestampOf(id));
+        assertEquals(7, (id >>> Snowflake.SEQUENCE_BITS) & Snowflake.MAX_NODE);
+        assertTrue(id < (1L << 53));
+    }
+
+    @Test
+    public void invalidNodeIdIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Snowflake(16, System::currentTimeMillis));
+    }
+
+    /**
+     * Många trådar samtidigt ska aldrig få samma id.
+     */
+    @Test
+    public void idsAreUniqueAcrossThreads() throws InterruptedException {
+        Snowflake snowflake = new Snowflake(1, System::currentTimeMillis);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 10_000;
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                Set<Long> local = new HashSet<>();
+                for (int i = 0; i < perThread; i++) {
+                    local.add(snowflake.nextId());
+                }
+                ids.addAll(local);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * perThread, ids.size());
+    }
+}
@@ -0,0 +1,41 @@
+package se.jensen.mikael.springboot.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LongIntMapTest {
+
+    /**
+     * Slumpade put/remove ger samma resultat som en HashMap – även när
+     * borttagningar flyttar poster bakåt i sonderingskedjorna.
+     */
+    @Test
+    public void behavesLikeHashMap() {
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Få nycklar med Snowflake-liknande mönster (samma höga bitar) ger många kollisioner
+            long key = (1L << 40) + ((long) random.nextInt(2_000) << 12);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.getOrDefault(key, LongIntMap.MISSING), map.remove(key));
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long k = 0; k < 2_000; k++) {
+            long key = (1L << 40) + (k << 12);
+            assertEquals(expected.getOrDefault(key, LongIntMap.MISSING), map.get(key));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package se.jensen.mikael.springboot.search;
+
+import org.junit.jupiter.api.Test;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PostSearchIndexTest {
+
+    private static final UserResponseDTO AUTHOR = new UserResponseDTO(
+            7L, "anna", "anna@test.se", "USER", "Anna", "bio", null);
+
+    private static PostResponseDTO post(long id, String text) {
+        return new PostResponseDTO(id, text, Instant.now(), AUTHOR);
+    }
+
+    private static List<Long> ids(List<PostSearchIndex.Hit> hits) {
+        return hits.stream().map(PostSearchIndex.Hit::id).toList();
+    }
+
+    /**
+     * Alla ord måste finnas i posten och nyaste posten kommer först.
+     */
+    @Test
+    public void allTermsMustMatchNewestFirst() {
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(post(1, "Spring Boot är kul"));
+        index.index(post(2, "Boot camp i helgen"));
+        index.index(post(3, "Mer om Spring och Boot"));
+
+        assertEquals(List.of(3L, 1L), ids(index.search("boot spring", 10)));
+        assertEquals(List.of(3L), ids(index.search("boot spring", 1)));
+        assertTrue(index.search("boot python", 10).isEmpty());
+    }
+
+    /**
+     * En citerad fras måste stå i följd i texten.
+     */
+    @Test
+    public void phraseMustBeConsecutive() {
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(post(1, "Spring Boot är kul"));
+        index.index(post(2, "Boot och Spring"));
+
+        assertEquals(List.of(1L), ids(index.search("\"spring boot\"", 10)));
+    }
+
+    /**
+     * Åäö ska vara en del av orden och sökningen skiljer inte på versaler.
+     */
+    @Test
+    public void tokenizesSwedishLetters() {
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(post(1, "Räksmörgås, ÅNGBÅT!"));
+
+        assertEquals(List.of("räksmörgås", "ångbåt"), PostSearchIndex.tokenize("Räksmörgås, ÅNGBÅT!"));
+        assertEquals(List.of(1L), ids(index.search("ångbåt", 10)));
+    }
+
+    /**
+     * En uppdaterad post ska bara hittas på sin nya text, en borttagen inte alls.
+     */
+    @Test
+    public void updateAndRemove() {
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(post(1, "gammal text"));
+        index.index(post(1, "ny text"));
+
+        assertTrue(index.search("gammal", 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search("ny", 10)));
+
+        index.remove(1);
+        assertTrue(index.search("text", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * En post som tas bort medan indexet byggs får inte läggas tillbaka av bygget.
+     */
+    @Test
+    public void removedDuringRebuildIsNotReindexed() {
+        PostSearchIndex index = new PostSearchIndex();
+        index.beginRebuild();
+        index.remove(5);
+        index.indexIfAbsent(post(5, "borttagen post"));
+        index.endRebuild();
+
+        assertTrue(index.search("borttagen", 10).isEmpty());
+    }
+
+    /**
+     * När en användare raderas försvinner alla hens poster, men inga andras.
+     */
+    @Test
+    public void removeAuthorRemovesOnlyTheirPosts() {
+        UserResponseDTO other = new UserResponseDTO(8L, "bo", "bo@test.se", "USER", "Bo", "bio", null);
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(post(1, "hej från anna"));
+        index.index(post(2, "hej igen"));
+        index.index(new PostResponseDTO(3L, "hej från bo", Instant.now(), other));
+
+        index.removeAuthor(7);
+
+        assertEquals(List.of(3L), ids(index.search("hej", 10)));
+        assertEquals(1, index.size());
+
+        // Flyttad post (ny författare) räknas bara till den nya
+        index.index(new PostResponseDTO(3L, "hej från bo", Instant.now(), AUTHOR));
+        index.removeAuthor(8);
+        assertEquals(List.of(3L), ids(index.search("hej", 10)));
+    }
+
+    /**
+     * Träffen bär postens snapshot – text, tidsstämpel och författare – så
+     * att sökningen inte behöver läsa databasen.
+     */
+    @Test
+    public void hitsCarryPostSnapshot() {
+        Instant createdAt = Instant.parse("2026-01-01T12:00:00.123456Z");
+        PostSearchIndex index = new PostSearchIndex();
+        index.index(new PostResponseDTO(1L, "Hej Spring", createdAt, AUTHOR));
+        index.index(new PostResponseDTO(2L, "Spring utan författare", createdAt, null));
+
+        assertEquals(List.of(
+                new PostSearchIndex.Hit(2L, "Spring utan författare", createdAt, null),
+                new PostSearchIndex.Hit(1L, "Hej Spring", createdAt, 7L)
+        ), index.search("spring", 10));
+    }
+
+    /**
+     * Platser som frigjorts återanvänds utan att andra posters snapshot påverkas.
+     */
+    @Test
+    public void freedSlotsAreReused() {
+        PostSearchIndex index = new PostSearchIndex();
+        for (long id = 1; id <= 200; id++) {
+            index.index(post(id, "post nummer " + id));
+        }
+        for (long id = 1; id <= 200; id += 2) {
+            index.remove(id);
+        }
+        for (long id = 201; id <= 300; id++) {
+            index.index(post(id, "post nummer " + id));
+        }
+
+        assertEquals(200, index.size());
+        assertTrue(ids(index.search("nummer 7", 10)).isEmpty());
+        assertEquals("post nummer 8", index.search("\"nummer 8\"", 10).get(0).text());
+        assertEquals(List.of(300L), ids(index.search("300", 10)));
+    }
+}
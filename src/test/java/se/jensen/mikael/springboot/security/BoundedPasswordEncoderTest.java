@@ -0,0 +1,85 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.mikael.springboot.exception.ServerBusyException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedPasswordEncoderTest {
+
+    /**
+     * Encoder som blockerar tills testet släpper den, så poolen kan fyllas.
+     */
+    private static PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "hash:" + rawPassword;
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return encodedPassword.equals("hash:" + rawPassword);
+            }
+        };
+    }
+
+    /**
+     * Hashning och verifiering ger samma resultat som den underliggande encodern.
+     */
+    @Test
+    public void delegatesToEncoder() {
+        CountDownLatch open = new CountDownLatch(0);
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+                blockingEncoder(new CountDownLatch(1), open), 1, 1, 1)) {
+
+            String hash = encoder.encode("hemligt");
+
+            assertTrue(encoder.matches("hemligt", hash));
+            assertFalse(encoder.matches("fel", hash));
+            assertEquals(3L, encoder.stats().get("completed"));
+        }
+    }
+
+    /**
+     * När alla trådar är upptagna och kön är full avvisas nästa anrop direkt.
+     */
+    @Test
+    public void rejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(
+                blockingEncoder(started, release), 1, 1, 2)) {
+
+            // En körs, en ligger i kön
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            started.await(5, TimeUnit.SECONDS);
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            while (encoder.stats().get("queueDepth") < 1) {
+                Thread.onSpinWait();
+            }
+
+            ServerBusyException ex = assertThrows(ServerBusyException.class, () -> encoder.encode("c"));
+            assertEquals(2, ex.getRetryAfterSeconds());
+            assertEquals(1L, encoder.stats().get("rejected"));
+
+            release.countDown();
+            assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+            assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mätningar av CachingJwtDecoder; tiderna loggas. Körs bara med -Pbenchmark.
+ */
+@Tag("benchmark")
+public class CachingJwtDecoderBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingJwtDecoderBenchmarkTest.class);
+
+    private static final int WARMUP = 2_000;
+    private static final int ROUNDS = 20_000;
+
+    /**
+     * Samma RS256-signerade token: full verifiering i NimbusJwtDecoder
+     * (signatur + claims) mot en träff i CachingJwtDecoder framför den.
+     */
+    @Test
+    public void cacheHitIsCheaperThanSignatureVerification() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("bench").generate();
+        NimbusJwtEncoder encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(key)));
+        Instant now = Instant.now();
+        String token = encoder.encode(JwtEncoderParameters.from(
+                JwsHeader.with(SignatureAlgorithm.RS256).keyId("bench").build(),
+                JwtClaimsSet.builder()
+                        .subject("micke")
+                        .issuedAt(now)
+                        .expiresAt(now.plus(1, ChronoUnit.HOURS))
+                        .build())).getTokenValue();
+
+        JwtDecoder nimbus = NimbusJwtDecoder.withPublicKey(key.toRSAPublicKey()).build();
+        CachingJwtDecoder cached = new CachingJwtDecoder(nimbus, 1_000, CachingJwtDecoder.noExtraValidation());
+
+        double verifyNs = nanosPerDecode(nimbus, token);
+        double hitNs = nanosPerDecode(cached, token);
+
+        logger.info("RS256 token: NimbusJwtDecoder {} ns/decode, CachingJwtDecoder hit {} ns/decode ({}x)",
+                Math.round(verifyNs), Math.round(hitNs), Math.round(verifyNs / hitNs));
+        assertEquals(1L, cached.stats().get("misses"));
+        assertTrue(hitNs < verifyNs);
+    }
+
+    private static double nanosPerDecode(JwtDecoder decoder, String token) {
+        for (int i = 0; i < WARMUP; i++) {
+            decoder.decode(token);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            decoder.decode(token);
+        }
+        return (double) (System.nanoTime() - start) / ROUNDS;
+    }
+
+    /**
+     * Många nya tokens i en full, stor cache: ingen genomsökning per token.
+     * Delegaten verifierar inget, så tiden är cachens egen. Testet
+     * kontrollerar storleken.
+     */
+    @Test
+    public void evictionFromLargeCacheIsAmortizedConstant() {
+        int maxSize = 100_000;
+        int tokens = 500_000;
+        Instant now = Instant.parse("2026-01-01T12:00:00Z");
+        JwtDecoder unverified = token -> Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("micke")
+                .issuedAt(now)
+                .expiresAt(now.plusSeconds(3600))
+                .build();
+        CachingJwtDecoder decoder = new CachingJwtDecoder(unverified, maxSize,
+                CachingJwtDecoder.noExtraValidation(), Clock.fixed(now, ZoneOffset.UTC));
+
+        long start = System.nanoTime();
+        for (int i = 0; i < tokens; i++) {
+            decoder.decode("token-" + i);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        logger.info("CachingJwtDecoder: {} tokens into {} entries, {} ns/decode",
+                tokens, maxSize, elapsed / tokens);
+        assertEquals(maxSize, decoder.stats().get("size"));
+        assertTrue(decoder.queued() <= 2 * maxSize);
+    }
+}
@@ -0,0 +1,131 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidationException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingJwtDecoderTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    // "Verifierar" genom att bygga en Jwt som går ut vid NOW + 1h och räknar anropen
+    private static JwtDecoder countingDecoder(AtomicInteger decodes) {
+        return token -> {
+            decodes.incrementAndGet();
+            return Jwt.withTokenValue(token)
+                    .header("alg", "RS256")
+                    .subject("micke")
+                    .issuedAt(NOW)
+                    .expiresAt(NOW.plusSeconds(3600))
+                    .build();
+        };
+    }
+
+    private static Clock at(Instant instant) {
+        return Clock.fixed(instant, ZoneOffset.UTC);
+    }
+
+    /**
+     * Samma token två gånger ska bara verifieras en gång.
+     */
+    @Test
+    public void repeatedTokenIsVerifiedOnce() {
+        AtomicInteger decodes = new AtomicInteger();
+        CachingJwtDecoder decoder = new CachingJwtDecoder(countingDecoder(decodes), 10,
+                CachingJwtDecoder.noExtraValidation(), at(NOW));
+
+        Jwt first = decoder.decode("token-a");
+        Jwt second = decoder.decode("token-a");
+        decoder.decode("token-b");
+
+        assertSame(first, second);
+        assertEquals(2, decodes.get());
+        assertEquals(1L, decoder.stats().get("hits"));
+    }
+
+    /**
+     * Efter exp ska tokenen inte längre komma från cachen.
+     */
+    @Test
+    public void expiredTokenIsNotServedFromCache() {
+        AtomicInteger decodes = new AtomicInteger();
+        JwtDecoder delegate = countingDecoder(decodes);
+
+        new CachingJwtDecoder(delegate, 10, CachingJwtDecoder.noExtraValidation(), at(NOW)).decode("token-a");
+        CachingJwtDecoder later = new CachingJwtDecoder(delegate, 10,
+                CachingJwtDecoder.noExtraValidation(), at(NOW.plusSeconds(3600)));
+        later.decode("token-a");
+        later.decode("token-a");
+
+        assertEquals(3, decodes.get());
+    }
+
+    /**
+     * alwaysValidate körs även vid träff, så en token kan underkännas efter att den cachats.
+     */
+    @Test
+    public void alwaysValidateRunsOnHit() {
+        AtomicBoolean revoked = new AtomicBoolean();
+        CachingJwtDecoder decoder = new CachingJwtDecoder(countingDecoder(new AtomicInteger()), 10,
+                jwt -> revoked.get()
+                        ? OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Spärrad", null))
+                        : OAuth2TokenValidatorResult.success(),
+                at(NOW));
+
+        decoder.decode("token-a");
+        revoked.set(true);
+
+        assertThrows(JwtValidationException.class, () -> decoder.decode("token-a"));
+    }
+
+    /**
+     * Cachen växer aldrig över maxSize.
+     */
+    @Test
+    public void sizeIsBounded() {
+        CachingJwtDecoder decoder = new CachingJwtDecoder(countingDecoder(new AtomicInteger()), 3,
+                CachingJwtDecoder.noExtraValidation(), at(NOW));
+        for (int i = 0; i < 10; i++) {
+            decoder.decode("token-" + i);
+        }
+        assertTrue(decoder.stats().get("size") <= 3);
+        assertTrue(decoder.queued() <= 2 * 3);
+    }
+
+    /**
+     * Full cache: en token som används igen får en andra chans, den äldsta
+     * oanvända kastas och måste verifieras på nytt.
+     */
+    @Test
+    public void tokenInUseSurvivesEviction() {
+        AtomicInteger decodes = new AtomicInteger();
+        CachingJwtDecoder decoder = new CachingJwtDecoder(countingDecoder(decodes), 3,
+                CachingJwtDecoder.noExtraValidation(), at(NOW));
+        decoder.decode("token-a");
+        decoder.decode("token-b");
+        decoder.decode("token-c");
+        decoder.decode("token-a");
+
+        decoder.decode("token-d");
+        assertEquals(4, decodes.get());
+
+        decoder.decode("token-a");
+        assertEquals(4, decodes.get());
+        decoder.decode("token-b");
+        assertEquals(5, decodes.get());
+    }
+}
@@ -0,0 +1,64 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import se.jensen.mikael.springboot.repository.JwtSigningKeyRepository;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Nycklarna sparas krypterade i jwt_signing_key och läses tillbaka oförändrade.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class JpaJwtKeyStoreTest {
+
+    @Autowired
+    private JpaJwtKeyStore store;
+    @Autowired
+    private JwtSigningKeyRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void storesKeysEncryptedAndActivatesOnce() throws Exception {
+        JWK key = new ECKeyGenerator(Curve.P_256)
+                .algorithm(JWSAlgorithm.ES256)
+                .keyIDFromThumbprint(true)
+                .generate();
+        Instant published = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+        store.insert(key, published);
+
+        // Den privata delen (d) får inte finnas i klartext i databasen
+        String stored = repository.findById(key.getKeyID()).orElseThrow().getKeyData();
+        assertFalse(stored.contains(key.toECKey().getD().toString()));
+
+        List<JwtKeyStore.StoredKey> loaded = store.load();
+        assertEquals(1, loaded.size());
+        assertEquals(key, loaded.get(0).key());
+        assertEquals(published, loaded.get(0).publishedAt());
+        assertNull(loaded.get(0).activatedAt());
+
+        assertTrue(store.activate(key.getKeyID(), published.plusSeconds(600)));
+        assertFalse(store.activate(key.getKeyID(), published.plusSeconds(700)));
+        assertEquals(published.plusSeconds(600), store.load().get(0).activatedAt());
+    }
+}
@@ -0,0 +1,215 @@
+package se.jensen.mikael.springboot.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.Curve;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.gen.ECKeyGenerator;
+import org.junit.jupiter.api.Test;
+import se.jensen.mikael.springboot.exception.PreconditionFailedException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JwtKeyRingTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    };
+
+    private static final Duration REFRESH = Duration.ofSeconds(30);
+
+    // next måste ha publicerats så här länge innan den får signera
+    private static final Duration PUBLISHED = JwtKeyRing.JWKS_MAX_AGE.plus(REFRESH);
+
+    private final JWK initial = new ECKeyGenerator(Curve.P_256)
+            .algorithm(JWSAlgorithm.ES256)
+            .keyID("jwt-ec-key-1")
+            .generate();
+
+    // Databasen som alla noder delar
+    private final InMemoryKeyStore store = new InMemoryKeyStore();
+
+    public JwtKeyRingTest() throws Exception {
+    }
+
+    private JwtKeyRing ring() {
+        JwtKeyRing ring = new JwtKeyRing(initial, store, REFRESH, clock);
+        ring.refresh();
+        return ring;
+    }
+
+    private static String next(JwtKeyRing ring) {
+        return ring.keys().entrySet().stream()
+                .filter(e -> e.getValue().equals("next")).findFirst().orElseThrow().getKey();
+    }
+
+    private static boolean canVerify(JwtKeyRing ring, String kid) {
+        JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.ES256).keyID(kid).build();
+        return !ring.selectJWSKeys(header, null).isEmpty();
+    }
+
+    /**
+     * Efter rotation signerar den publicerade next-nyckeln, och den gamla
+     * verifierar fortfarande tills dess tokens gått ut.
+     */
+    @Test
+    public void rotateKeepsOldKeyUntilTokensExpire() throws Exception {
+        JwtKeyRing ring = ring();
+        String next = next(ring);
+
+        now.set(NOW.plus(PUBLISHED));
+        String active = ring.rotate();
+
+        assertEquals(next, active);
+        assertEquals(active, ring.active().getKeyID());
+        assertTrue(canVerify(ring, "jwt-ec-key-1"));
+
+        now.set(NOW.plus(Duration.ofHours(2)));
+        ring.refresh();
+
+        assertFalse(canVerify(ring, "jwt-ec-key-1"));
+        assertTrue(canVerify(ring, active));
+    }
+
+    /**
+     * next får inte signera förrän den legat i JWKS längre än andra hinner
+     * cacha dokumentet – annars känner de inte igen nya tokens.
+     */
+    @Test
+    public void rotateRequiresNextToBePublishedLongEnough() {
+        JwtKeyRing ring = ring();
+
+        now.set(NOW.plus(PUBLISHED).minusSeconds(1));
+        assertThrows(PreconditionFailedException.class, ring::rotate);
+        assertEquals("jwt-ec-key-1", ring.active().getKeyID());
+
+        now.set(NOW.plus(PUBLISHED));
+        assertEquals(next(ring), ring.rotate());
+    }
+
+    /**
+     * Rotationen sparas i den delade lagringen: en annan nod signerar med
+     * samma nyckel efter nästa refresh och kan verifiera dess tokens redan
+     * innan dess, eftersom next publicerats på alla noder.
+     */
+    @Test
+    public void rotationIsSharedBetweenNodes() {
+        JwtKeyRing first = ring();
+        JwtKeyRing second = ring();
+        String next = next(first);
+        assertEquals(next, next(second));
+
+        now.set(NOW.plus(PUBLISHED));
+        String active = first.rotate();
+
+        assertTrue(canVerify(second, active));
+        second.refresh();
+        assertEquals(active, second.active().getKeyID());
+        assertEquals(first.keys(), second.keys());
+    }
+
+    /**
+     * Utan lagring (ingen JWT_KEY_ENCRYPTION_KEY) kan bara startnyckeln användas.
+     */
+    @Test
+    public void rotateRequiresStore() {
+        store.enabled = false;
+        JwtKeyRing ring = ring();
+
+        assertThrows(PreconditionFailedException.class, ring::rotate);
+        assertEquals(Map.of("jwt-ec-key-1", "active"), ring.keys());
+    }
+
+    /**
+     * Okänd kid eller annan algoritm ger inga nycklar.
+     */
+    @Test
+    public void unknownKidOrAlgorithmIsRejected() {
+        JwtKeyRing ring = ring();
+
+        assertFalse(canVerify(ring, "unknown"));
+        JWSHeader rsa = new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("jwt-ec-key-1").build();
+        assertTrue(ring.selectJWSKeys(rsa, null).isEmpty());
+    }
+
+    /**
+     * JWKS-dokumentet innehåller alla publicerade nycklar men inga privata delar.
+     */
+    @Test
+    public void publicJwksHasNoPrivateParts() {
+        JwtKeyRing ring = ring();
+        String before = ring.publicJwks();
+        now.set(NOW.plus(PUBLISHED));
+        ring.rotate();
+
+        assertFalse(ring.publicJwks().contains("\"d\""));
+        assertTrue(ring.publicJwks().contains("jwt-ec-key-1"));
+        assertNotEquals(before, ring.publicJwks());
+    }
+
+    private static class InMemoryKeyStore implements JwtKeyStore {
+
+        private final Map<String, StoredKey> keys = new ConcurrentHashMap<>();
+        private boolean enabled = true;
+
+        @Override
+        public boolean enabled() {
+            return enabled;
+        }
+
+        @Override
+        public List<StoredKey> load() {
+            return List.copyOf(keys.values());
+        }
+
+        @Override
+        public void insert(JWK key, Instant publishedAt) {
+            keys.put(key.getKeyID(), new StoredKey(key, publishedAt, null));
+        }
+
+        @Override
+        public boolean activate(String kid, Instant activatedAt) {
+            StoredKey key = keys.get(kid);
+            if (key == null || key.activatedAt() != null) {
+                return false;
+            }
+            keys.put(kid, new StoredKey(key.key(), key.publishedAt(), activatedAt));
+            return true;
+        }
+
+        @Override
+        public void delete(String kid) {
+            keys.remove(kid);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import se.jensen.mikael.springboot.exception.TooManyRequestsException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LoginThrottleTest {
+
+    // Början på ett 300-sekundersfönster
+    private static final Instant NOW = Instant.ofEpochSecond(1_800_000_000L / 300 * 300);
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    };
+
+    /**
+     * Efter max antal misslyckanden för ett användarnamn avvisas nästa
+     * försök, oavsett IP – men andra användarnamn påverkas inte.
+     */
+    @Test
+    public void blocksUsernameAfterTooManyFailures() {
+        LoginThrottle throttle = new LoginThrottle(300, 3, 100, 1024, 10_000, clock);
+        for (int i = 0; i < 3; i++) {
+            throttle.check("Micke", "10.0.0." + i);
+            throttle.recordFailure("Micke", "10.0.0." + i);
+        }
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> throttle.check("micke", "10.0.0.99"));
+        assertTrue(ex.getRetryAfterSeconds() >= 1);
+        assertDoesNotThrow(() -> throttle.check("anna", "10.0.0.99"));
+        assertEquals(1L, throttle.stats().get("blockedByUsername"));
+    }
+
+    /**
+     * Ett IP som provar många olika användarnamn spärras.
+     */
+    @Test
+    public void blocksIpAfterTooManyFailures() {
+        LoginThrottle throttle = new LoginThrottle(300, 100, 5, 1024, 10_000, clock);
+        for (int i = 0; i < 5; i++) {
+            throttle.recordFailure("user" + i, "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.check("someone", "10.0.0.1"));
+        assertDoesNotThrow(() -> throttle.check("someone", "10.0.0.2"));
+    }
+
+    /**
+     * Krockar i skissen spärrar inte: med en liten skiss når alla celler
+     * taket, men den exakta tabellen visar att namnet inte misslyckats.
+     */
+    @Test
+    public void sketchCollisionsDoNotLockOutOtherUsernames() {
+        LoginThrottle throttle = new LoginThrottle(300, 3, 1_000_000, 16, 10_000, clock);
+        for (int i = 0; i < 1_000; i++) {
+            throttle.recordFailure("attack" + i, "10.0.0." + (i % 200));
+        }
+
+        assertDoesNotThrow(() -> throttle.check("micke", "10.0.1.1"));
+        assertEquals(0L, throttle.stats().get("blockedByUsername"));
+        assertEquals(1_000L, throttle.stats().get("trackedUsernames"));
+    }
+
+    /**
+     * Med full tabell avgör skissen ensam för okända namn, och rensningen
+     * i nästa fönster gör plats igen.
+     */
+    @Test
+    public void fullTableFallsBackToSketchUntilPruned() {
+        LoginThrottle throttle = new LoginThrottle(300, 3, 1_000_000, 16, 100, clock);
+        for (int i = 0; i < 1_000; i++) {
+            throttle.recordFailure("attack" + i, "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> throttle.check("micke", "10.0.1.1"));
+        assertEquals(1L, throttle.stats().get("sketchOnly"));
+
+        // Två fönster senare har allt klingat av och tabellen töms vid nästa misslyckande
+        now.set(NOW.plusSeconds(600));
+        throttle.recordFailure("anna", "10.0.0.1");
+        assertEquals(1L, throttle.stats().get("trackedUsernames"));
+        assertDoesNotThrow(() -> throttle.check("micke", "10.0.1.1"));
+    }
+
+    /**
+     * Räknarna klingar av: två fönster senare är spärren borta.
+     */
+    @Test
+    public void failuresDecayAfterWindow() {
+        LoginThrottle throttle = new LoginThrottle(300, 3, 100, 1024, 10_000, clock);
+        for (int i = 0; i < 3; i++) {
+            throttle.recordFailure("micke", "10.0.0.1");
+        }
+
+        // Halvvägs in i nästa fönster vägs förra fönstret till hälften
+        now.set(NOW.plusSeconds(450));
+        assertDoesNotThrow(() -> throttle.check("micke", "10.0.0.1"));
+
+        now.set(NOW.plusSeconds(600));
+        assertDoesNotThrow(() -> throttle.check("micke", "10.0.0.1"));
+    }
+}
@@ -0,0 +1,91 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ProfileVersionValidatorTest {
+
+    private static Jwt token(Long userId, Long version) {
+        Jwt.Builder builder = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("micke")
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(3600))
+                .claim(TokenClaims.DISPLAY_NAME, "Micke");
+        if (userId != null) {
+            builder.claim(TokenClaims.USER_ID, userId);
+        }
+        if (version != null) {
+            builder.claim(TokenClaims.PROFILE_VERSION, version);
+        }
+        return builder.build();
+    }
+
+    // Står för app_user.version; saknas användaren är den borttagen
+    private final Map<Long, Long> database = new HashMap<>();
+
+    private ProfileVersionRegistry registry() {
+        return new ProfileVersionRegistry(id -> Optional.ofNullable(database.get(id)), 100, 3600);
+    }
+
+    /**
+     * En token med äldre version än användarens aktuella underkänns, en ny
+     * godkänns. Versionen cachas tills den invalideras.
+     */
+    @Test
+    public void staleVersionIsRejected() {
+        database.put(1L, 0L);
+        database.put(2L, 0L);
+        ProfileVersionRegistry registry = registry();
+        ProfileVersionValidator validator = new ProfileVersionValidator(registry);
+
+        assertFalse(validator.validate(token(1L, 0L)).hasErrors());
+
+        // Ändrad på en annan nod: syns när cachen gått ut eller invaliderats
+        database.put(1L, 1L);
+        assertFalse(validator.validate(token(1L, 0L)).hasErrors());
+        registry.invalidate(1L);
+
+        assertTrue(validator.validate(token(1L, 0L)).hasErrors());
+        assertFalse(validator.validate(token(1L, 1L)).hasErrors());
+        assertFalse(validator.validate(token(2L, 0L)).hasErrors());
+    }
+
+    /**
+     * Alla tokens för en borttagen användare underkänns – även på en nod som
+     * aldrig sett raderingen, eftersom versionen läses från databasen.
+     * Tokens utan claims släpps igenom.
+     */
+    @Test
+    public void deletedUserAndLegacyTokens() {
+        ProfileVersionValidator validator = new ProfileVersionValidator(registry());
+
+        assertTrue(validator.validate(token(1L, 42L)).hasErrors());
+        assertFalse(validator.validate(token(null, null)).hasErrors());
+    }
+
+    /**
+     * Profilen kan läsas tillbaka ur tokenen; äldre tokens ger null.
+     */
+    @Test
+    public void profileIsReadFromClaims() {
+        UserResponseDTO profile = TokenClaims.toUserResponse(token(1L, 3L));
+
+        assertEquals(1L, profile.id());
+        assertEquals("micke", profile.username());
+        assertEquals("Micke", profile.displayName());
+        assertNull(profile.bio());
+        assertNull(TokenClaims.toUserResponse(token(null, null)));
+    }
+}
@@ -0,0 +1,101 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000_000L);
+
+    // 60 per minut = en token per sekund, burst 3
+    private RateLimiter limiter(int maxKeys) {
+        return new RateLimiter(Map.of(
+                RateLimiter.Group.WRITES, new RateLimiter.GroupLimit(60, 3),
+                RateLimiter.Group.READS, new RateLimiter.GroupLimit(0, 0)
+        ), maxKeys, now::get);
+    }
+
+    /**
+     * En skur på burst anrop släpps igenom, nästa avvisas med Retry-After.
+     */
+    @Test
+    public void burstThenLimited() {
+        RateLimiter limiter = limiter(100);
+
+        assertEquals(2, limiter.tryAcquire(RateLimiter.Group.WRITES, "sub:micke").remaining());
+        assertEquals(1, limiter.tryAcquire(RateLimiter.Group.WRITES, "sub:micke").remaining());
+        assertEquals(0, limiter.tryAcquire(RateLimiter.Group.WRITES, "sub:micke").remaining());
+
+        RateLimiter.Decision denied = limiter.tryAcquire(RateLimiter.Group.WRITES, "sub:micke");
+        assertFalse(denied.allowed());
+        assertEquals(1, denied.retryAfterSeconds());
+        assertEquals(3, denied.resetSeconds());
+
+        // Andra klienter har egna hinkar
+        assertTrue(limiter.tryAcquire(RateLimiter.Group.WRITES, "sub:anna").allowed());
+    }
+
+    /**
+     * Hinken fylls på med en token per intervall.
+     */
+    @Test
+    public void refillsOverTime() {
+        RateLimiter limiter = limiter(100);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1");
+        }
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertTrue(limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1").allowed());
+        assertFalse(limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1").allowed());
+    }
+
+    /**
+     * Fulla hinkar städas bort; en grupp utan gräns ger inget beslut.
+     */
+    @Test
+    public void evictsFullBucketsAndSkipsUnlimitedGroups() {
+        RateLimiter limiter = limiter(100);
+        limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        limiter.evictStale();
+
+        assertEquals(0L, limiter.stats().get("buckets"));
+        assertNull(limiter.tryAcquire(RateLimiter.Group.READS, "ip:10.0.0.1"));
+    }
+
+    /**
+     * Fler nycklar än max-keys: nya klienter delar på en hink per grupp –
+     * gränsen gäller fortfarande (fail closed) och minnet växer inte.
+     */
+    @Test
+    public void newKeysShareOverflowBucketWhenFull() {
+        RateLimiter limiter = limiter(2);
+        assertTrue(limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1").allowed());
+        assertTrue(limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.2").allowed());
+
+        // En ny adress per anrop: bara burst (3) släpps igenom totalt
+        int allowed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:203.0.113." + i).allowed()) {
+                allowed++;
+            }
+        }
+        assertEquals(3, allowed);
+        assertEquals(2L, limiter.stats().get("buckets"));
+        assertEquals(100L, limiter.stats().get("overflowed"));
+
+        // Klienter som redan har en hink påverkas inte
+        assertTrue(limiter.tryAcquire(RateLimiter.Group.WRITES, "ip:10.0.0.1").allowed());
+    }
+}
@@ -0,0 +1,155 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.context.ActiveProfiles;
+import se.jensen.mikael.springboot.repository.RefreshTokenFamilyRepository;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Familjerna sparas i refresh_token_family; varje test bygger sin egen
+ * store med fast klocka mot samma tabell.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class RefreshTokenStoreTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    @Autowired
+    private RefreshTokenFamilyRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+    }
+
+    private RefreshTokenStore store(Instant now) {
+        return new RefreshTokenStore(repository, Duration.ofDays(14), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    /**
+     * En refresh-token kan bytas mot en ny, och den nya fungerar i sin tur.
+     */
+    @Test
+    public void rotateReturnsNewToken() {
+        RefreshTokenStore store = store(NOW);
+        String first = store.issue(1L);
+
+        RefreshTokenStore.Rotation rotation = store.rotate(first);
+        RefreshTokenStore.Rotation next = store.rotate(rotation.refreshToken());
+
+        assertEquals(1L, rotation.userId());
+        assertNotEquals(first, rotation.refreshToken());
+        assertEquals(1L, next.userId());
+    }
+
+    /**
+     * Används en gammal token igen spärras hela familjen, även den senaste tokenen.
+     */
+    @Test
+    public void reuseRevokesFamily() {
+        RefreshTokenStore store = store(NOW);
+        String first = store.issue(1L);
+        String second = store.rotate(first).refreshToken();
+
+        assertThrows(BadCredentialsException.class, () -> store.rotate(first));
+        assertThrows(BadCredentialsException.class, () -> store.rotate(second));
+        assertEquals(1L, store.stats().get("reuseDetected"));
+    }
+
+    /**
+     * revokeAll avslutar alla sessioner för användarens id, men inga andras.
+     */
+    @Test
+    public void revokeAllEndsOnlyThatUsersSessions() {
+        RefreshTokenStore store = store(NOW);
+        String first = store.issue(1L);
+        String second = store.issue(1L);
+        String other = store.issue(2L);
+
+        store.revokeAll(1L);
+
+        assertThrows(BadCredentialsException.class, () -> store.rotate(first));
+        assertThrows(BadCredentialsException.class, () -> store.rotate(second));
+        assertEquals(2L, store.rotate(other).userId());
+    }
+
+    /**
+     * Okända, trasiga och utgångna tokens avvisas.
+     */
+    @Test
+    public void invalidTokensAreRejected() {
+        RefreshTokenStore store = store(NOW);
+        assertThrows(BadCredentialsException.class, () -> store.rotate("nonsense"));
+        assertThrows(BadCredentialsException.class, () -> store.rotate("family.%%%"));
+
+        // Klocka som testet kan flytta fram
+        AtomicReference<Instant> now = new AtomicReference<>(NOW);
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now.get();
+            }
+        };
+        RefreshTokenStore expiring = new RefreshTokenStore(repository, Duration.ofDays(14), clock);
+        String token = expiring.issue(1L);
+        now.set(NOW.plus(Duration.ofDays(15)));
+        assertThrows(BadCredentialsException.class, () -> expiring.rotate(token));
+    }
+
+    /**
+     * Familjen ligger i databasen: en annan instans (t.ex. en annan nod
+     * eller efter omstart) kan rotera tokenen, och den gamla gäller då inte
+     * längre hos den första.
+     */
+    @Test
+    public void familiesAreSharedBetweenInstances() {
+        RefreshTokenStore first = store(NOW);
+        RefreshTokenStore second = store(NOW);
+        String token = first.issue(1L);
+
+        RefreshTokenStore.Rotation rotation = second.rotate(token);
+
+        assertEquals(1L, rotation.userId());
+        assertThrows(BadCredentialsException.class, () -> first.rotate(token));
+        assertEquals(0L, second.stats().get("sessions"));
+    }
+
+    /**
+     * Utgångna familjer städas bort.
+     */
+    @Test
+    public void purgeRemovesExpiredFamilies() {
+        store(NOW).issue(1L);
+        RefreshTokenStore later = store(NOW.plus(Duration.ofDays(15)));
+        later.issue(2L);
+
+        later.purgeExpired();
+
+        assertEquals(1L, later.stats().get("sessions"));
+    }
+}
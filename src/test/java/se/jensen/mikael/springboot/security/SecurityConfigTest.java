@@ -0,0 +1,34 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.security.KeyPair;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+public class SecurityConfigTest {
+
+    /**
+     * Med ES256 och utan EC-nycklar startar applikationen bara med profilen
+     * dev eller test; annars skulle varje nod signera med sin egen slumpade nyckel.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void missingEcKeyFailsOutsideDevAndTest() {
+        SecurityConfig config = new SecurityConfig();
+        ObjectProvider<KeyPair> rsaKeyPair = mock(ObjectProvider.class);
+        JwtKeyStore keyStore = mock(JwtKeyStore.class);
+
+        assertThrows(IllegalStateException.class, () ->
+                config.jwtKeyRing(rsaKeyPair, keyStore, new MockEnvironment(), "ES256", "", "", 30000));
+
+        MockEnvironment dev = new MockEnvironment();
+        dev.setActiveProfiles("dev");
+        assertDoesNotThrow(() ->
+                config.jwtKeyRing(rsaKeyPair, keyStore, dev, "ES256", "", "", 30000));
+    }
+}
@@ -0,0 +1,92 @@
+package se.jensen.mikael.springboot.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenRevocationStoreTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T12:00:00Z");
+
+    private final AtomicReference<Instant> now = new AtomicReference<>(NOW);
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    };
+
+    private static Jwt jwt(String jti, long userId, Instant issuedAt) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .jti(jti)
+                .claim(TokenClaims.USER_ID, userId)
+                .issuedAt(issuedAt)
+                .expiresAt(issuedAt.plusSeconds(3600))
+                .build();
+    }
+
+    /**
+     * En spärrad jti underkänns, andra tokens påverkas inte.
+     */
+    @Test
+    public void revokedTokenIsRejected() {
+        TokenRevocationStore store = new TokenRevocationStore(1000, clock);
+
+        store.revoke("a", NOW.plusSeconds(3600));
+
+        assertTrue(store.isRevoked(jwt("a", 1L, NOW)));
+        assertFalse(store.isRevoked(jwt("b", 1L, NOW)));
+    }
+
+    /**
+     * revokeAllFor spärrar användarens tokens utfärdade hittills, men inte senare.
+     */
+    @Test
+    public void revokeAllForRejectsOlderTokensOnly() {
+        TokenRevocationStore store = new TokenRevocationStore(1000, clock);
+
+        store.revokeAllFor(1000L);
+        now.set(NOW.plusSeconds(5));
+
+        assertTrue(store.isRevoked(jwt("a", 1000L, NOW.minusSeconds(60))));
+        assertFalse(store.isRevoked(jwt("b", 1000L, NOW.plusSeconds(5))));
+        assertFalse(store.isRevoked(jwt("c", 2000L, NOW.minusSeconds(60))));
+    }
+
+    /**
+     * Efter exp städas spärren bort och filtret byggs om utan den.
+     */
+    @Test
+    public void purgeRemovesExpiredRevocations() {
+        TokenRevocationStore store = new TokenRevocationStore(1000, clock);
+        store.revoke("old", NOW.plusSeconds(60));
+        store.revoke("live", NOW.plusSeconds(3600));
+
+        now.set(NOW.plusSeconds(120));
+        store.purge();
+
+        assertFalse(store.isRevoked(jwt("old", 1L, NOW)));
+        assertTrue(store.isRevoked(jwt("live", 1L, NOW)));
+        assertEquals(1L, store.stats().get("revokedTokens"));
+    }
+}
@@ -0,0 +1,123 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NDJSON-exporten: en JSON-rad per rad i tabellen, skriven medan raderna
+ * läses – inte efter att hela tabellen lästs in.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class ExportServiceTest {
+
+    private static final int POSTS = 250;
+
+    @Autowired
+    private ExportService exportService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = new User();
+        user.setUsername("export");
+        user.setEmail("export@test.com");
+        user.setPassword("$2a$10$" + "x".repeat(53));
+        user.setRole("USER");
+        user.setDisplayName("Export");
+        user.setBio("bio");
+        user = userRepository.save(user);
+
+        Instant now = Instant.now();
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post(user);
+            post.setText("Post " + i);
+            post.setCreatedAt(now.minusSeconds(i));
+            posts.add(post);
+        }
+        postRepository.saveAll(posts);
+    }
+
+    /**
+     * Alla poster kommer ut, en giltig JSON-rad var, i id-ordning.
+     */
+    @Test
+    public void exportsOneJsonLinePerPost() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.exportPosts(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(POSTS, lines.length);
+        long previousId = Long.MIN_VALUE;
+        for (String line : lines) {
+            JsonNode post = objectMapper.readTree(line);
+            long id = post.get("id").asLong();
+            assertTrue(id > previousId, "id-ordning");
+            assertEquals("export", post.get("user").get("username").asString());
+            previousId = id;
+        }
+
+        ByteArrayOutputStream users = new ByteArrayOutputStream();
+        exportService.exportUsers(users);
+        assertEquals(1, users.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+
+    /**
+     * Raderna skrivs en i taget: kopplar klienten ner efter tio rader
+     * avbryts exporten direkt, och bara de tio raderna har skrivits.
+     */
+    @Test
+    public void writesRowsAsTheyAreReadAndStopsWhenClientDisconnects() {
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream disconnecting = new OutputStream() {
+            private int lines;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (lines == 10) {
+                    throw new IOException("Broken pipe");
+                }
+                written.write(b);
+                if (b == '\n') {
+                    lines++;
+                }
+            }
+        };
+
+        assertThrows(UncheckedIOException.class, () -> exportService.exportPosts(disconnecting));
+
+        assertEquals(10, written.toString(StandardCharsets.UTF_8).split("\n").length);
+    }
+}
@@ -5,8 +5,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.mikael.springboot.cache.UserCache;
 import se.jensen.mikael.springboot.dto.UserResponseDTO;
 import se.jensen.mikael.springboot.dto.UserResponseDTOBuilder;
 import se.jensen.mikael.springboot.mapper.UserMapper;
@@ -34,6 +36,10 @@ public class GetUserByUsernameTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    // Riktig cache (tom per test) så att missar går vidare till repositoryt
+    @Spy
+    private UserCache userCache = new UserCache(100, 60);
+
     /**
      * Testar så jag kan hämta via Username istället
      */
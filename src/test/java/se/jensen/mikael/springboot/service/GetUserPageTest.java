@@ -0,0 +1,84 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import se.jensen.mikael.springboot.dto.UserCursor;
+import se.jensen.mikael.springboot.dto.UserPageResponseDTO;
+import se.jensen.mikael.springboot.dto.UserSummaryDTO;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.repository.UserSort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class GetUserPageTest {
+    @InjectMocks
+    private UserService userService;
+    @Mock
+    private UserRepository userRepository;
+
+    /**
+     * Test för getUserPage
+     * Kollar att en rad extra hämtas och att nextCursor pekar på sista raden i sidan
+     */
+    @Test
+    public void testGetUserPage() {
+        //ARRANGE
+        UserSummaryDTO ali = new UserSummaryDTO(1L, "ali", null, "USER", "Ali");
+        UserSummaryDTO bea = new UserSummaryDTO(2L, "bea", null, "USER", "Bea");
+        UserSummaryDTO cem = new UserSummaryDTO(3L, "cem", null, "USER", "Cem");
+
+        when(userRepository.findUserPage(UserSummaryDTO.class, UserSort.DISPLAY_NAME, null, null, null, 3))
+                .thenReturn(List.of(ali, bea, cem));
+
+        //ACT
+        UserPageResponseDTO<?> result = userService.getUserPage(2, "displayName", null, null, null, "slim");
+
+        //ASSERT
+        assertEquals(List.of(ali, bea), result.users());
+        assertEquals(new UserCursor("displayName", "Bea", 2L), UserCursor.decode(result.nextCursor()));
+    }
+
+    /**
+     * Sista sidan har ingen nextCursor
+     */
+    @Test
+    public void testGetUserPage_LastPage() {
+        //ARRANGE
+        UserSummaryDTO ali = new UserSummaryDTO(1L, "ali", null, "USER", "Ali");
+        UserCursor after = new UserCursor("id", null, 0L);
+
+        when(userRepository.findUserPage(UserSummaryDTO.class, UserSort.ID, "a", null, new UserCursor("id", "", 0L), 3))
+                .thenReturn(List.of(ali));
+
+        //ACT
+        UserPageResponseDTO<?> result = userService.getUserPage(2, "id", after.encode(), "a", " ", "slim");
+
+        //ASSERT
+        assertEquals(List.of(ali), result.users());
+        assertNull(result.nextCursor());
+    }
+
+    /**
+     * Okänd sortering och cursor från en annan sortering ger 400
+     */
+    @Test
+    public void testGetUserPage_InvalidInput() {
+        String usernameCursor = new UserCursor("username", "ali", 1L).encode();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.getUserPage(10, "password", null, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.getUserPage(10, "id", usernameCursor, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> userService.getUserPage(10, "id", null, null, null, "bio"));
+    }
+}
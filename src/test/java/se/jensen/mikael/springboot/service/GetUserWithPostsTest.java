@@ -5,15 +5,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.mikael.springboot.dto.PostCursor;
 import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
 import se.jensen.mikael.springboot.dto.UserResponseDTO;
 import se.jensen.mikael.springboot.dto.UserWithPostsResponseDTO;
 import se.jensen.mikael.springboot.exception.UserNotFoundException;
 import se.jensen.mikael.springboot.mapper.UserMapper;
 import se.jensen.mikael.springboot.mapper.UserWithPostsMapper;
-import se.jensen.mikael.springboot.model.Post;
-import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
 import se.jensen.mikael.springboot.repository.UserRepository;
 
 import java.time.Instant;
@@ -21,6 +23,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
@@ -33,6 +36,9 @@ public class GetUserWithPostsTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private PostRepository postRepository;
+
     @Mock
     private UserWithPostsMapper userWithPostsMapper;
 
@@ -49,33 +55,25 @@ public class GetUserWithPostsTest {
     @Test
     public void testGetUserWithPosts() {
         // ARRANGE
-        User user = new User();
-        user.setId(1L);
-        user.setUsername("Linus");
-
-        Post post1 = new Post();
-        post1.setId(100L);
-        post1.setText("Post 1");
-        post1.setCreatedAt(Instant.now());
-        post1.setUser(user);
-
-        Post post2 = new Post();
-        post2.setId(101L);
-        post2.setText("Post 2");
-        post2.setCreatedAt(Instant.now());
-        post2.setUser(user);
+        UserResponseDTO user = new UserResponseDTO(1L, "Linus", null, null, null, null, null);
+
+        Instant now = Instant.now();
+        PostRow row1 = new PostRow(100L, "Post 1", now, 1L, "Linus", null, null, null, null, null);
+        PostRow row2 = new PostRow(101L, "Post 2", now, 1L, "Linus", null, null, null, null, null);
+        List<PostRow> rows = List.of(row1, row2);
 
         // DTO-versioner
-        PostResponseDTO dto1 = new PostResponseDTO(100L, "Post 1", post1.getCreatedAt(), new UserResponseDTO(1L, "Ali", null, null, null, null, null));
-        PostResponseDTO dto2 = new PostResponseDTO(101L, "Post 2", post2.getCreatedAt(), new UserResponseDTO(1L, "Ali", null, null, null, null, null));
+        PostResponseDTO dto1 = new PostResponseDTO(100L, "Post 1", now, user);
+        PostResponseDTO dto2 = new PostResponseDTO(101L, "Post 2", now, user);
 
         UserWithPostsResponseDTO userWithPostsDTO = new UserWithPostsResponseDTO(
-                new UserResponseDTO(1L, "Linus", null, null, null, null, null),
+                user,
                 List.of(dto1, dto2)
         );
 
-        when(userRepository.findUserWithPosts(1L)).thenReturn(Optional.of(user));
-        when(userWithPostsMapper.toDto(user)).thenReturn(userWithPostsDTO);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(user));
+        when(postRepository.findRowsByUserId(1L, Limit.of(UserService.DEFAULT_POSTS_PAGE_SIZE + 1))).thenReturn(rows);
+        when(userWithPostsMapper.toDto(user, rows, null)).thenReturn(userWithPostsDTO);
 
         // ACT
         UserWithPostsResponseDTO result = userService.getUserWithPosts(1L);
@@ -85,6 +83,35 @@ public class GetUserWithPostsTest {
         assertEquals(2, result.posts().size());
         assertEquals("Post 1", result.posts().get(0).text());
         assertEquals("Post 2", result.posts().get(1).text());
+        assertNull(result.nextCursor());
+    }
+
+    /**
+     * Testar att bara en sida posts hämtas och att nextCursor pekar på
+     * sista posten i sidan när det finns fler.
+     */
+    @Test
+    public void testGetUserWithPosts_Paged() {
+        // ARRANGE
+        UserResponseDTO user = new UserResponseDTO(1L, "Linus", null, null, null, null, null);
+
+        Instant now = Instant.now();
+        PostRow row1 = new PostRow(102L, "Post 3", now, 1L, "Linus", null, null, null, null, null);
+        PostRow row2 = new PostRow(101L, "Post 2", now, 1L, "Linus", null, null, null, null, null);
+        PostRow extra = new PostRow(100L, "Post 1", now, 1L, "Linus", null, null, null, null, null);
+        String nextCursor = new PostCursor(now, 101L).encode();
+
+        UserWithPostsResponseDTO page = new UserWithPostsResponseDTO(user, List.of(), nextCursor);
+
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(user));
+        when(postRepository.findRowsByUserId(1L, Limit.of(3))).thenReturn(List.of(row1, row2, extra));
+        when(userWithPostsMapper.toDto(user, List.of(row1, row2), nextCursor)).thenReturn(page);
+
+        // ACT
+        UserWithPostsResponseDTO result = userService.getUserWithPosts(1L, 2, null);
+
+        // ASSERT
+        assertEquals(nextCursor, result.nextCursor());
     }
 
     /**
@@ -93,7 +120,7 @@ public class GetUserWithPostsTest {
     @Test
     public void testGetUserWithPosts_NotFound() {
         // ARRANGE
-        when(userRepository.findUserWithPosts(1L)).thenReturn(Optional.empty());
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.empty());
 
         // ACT & ASSERT
         assertThrows(UserNotFoundException.class, () -> userService.getUserWithPosts(1L));
@@ -0,0 +1,144 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.cache.TakenNamesFilter;
+import se.jensen.mikael.springboot.cache.UserCache;
+import se.jensen.mikael.springboot.dto.UserPatchDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTOBuilder;
+import se.jensen.mikael.springboot.exception.PreconditionFailedException;
+import se.jensen.mikael.springboot.exception.UserNotFoundException;
+import se.jensen.mikael.springboot.repository.UserRepository;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
+import se.jensen.mikael.springboot.security.ProfileVersionRegistry;
+import se.jensen.mikael.springboot.security.RefreshTokenStore;
+import se.jensen.mikael.springboot.security.UserCredentialsCache;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PatchUserTest {
+
+    @InjectMocks
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private FeedCache feedCache;
+
+    @Mock
+    private PostSearchIndex postSearchIndex;
+
+    @Mock
+    private UserCache userCache;
+
+    @Mock
+    private UserCredentialsCache credentialsCache;
+
+    @Mock
+    private ProfileVersionRegistry profileVersions;
+
+    @Mock
+    private TakenNamesFilter takenNames;
+
+    @Mock
+    private RefreshTokenStore refreshTokens;
+
+    private final UserResponseDTO user = UserResponseDTOBuilder.builder()
+            .withId(1L)
+            .withUsername("Micke")
+            .withBio("Ny bio")
+            .build();
+
+    /**
+     * Bara bio skickas: ett UPDATE av bio, ingen hashning, ny version från If-Match.
+     */
+    @Test
+    public void patchBioDoesNotHashPassword() {
+        when(userRepository.patchUser(1L, 3L, Map.of("bio", "Ny bio"))).thenReturn(1);
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(user));
+
+        long version = userService.patchUser(1L, new UserPatchDTO(null, null, null, null, "Ny bio", null), 3L);
+
+        assertEquals(4L, version);
+        verify(passwordEncoder, never()).encode(anyString());
+        verify(profileVersions).invalidate(1L);
+        verify(feedCache).invalidate(); // sökträffarnas författare kommer ur UserCache, bara flödet behöver invalideras
+        verify(refreshTokens, never()).revokeAll(1L); // inloggningen är oförändrad
+    }
+
+    /**
+     * Ett nytt lösenord hashas och skrivs som hash, och alla
+     * refresh-sessioner avslutas.
+     */
+    @Test
+    public void patchPasswordHashesOnlyNewPassword() {
+        when(passwordEncoder.encode("hemligt")).thenReturn("hash");
+        when(userRepository.patchUser(1L, null, Map.of("password", "hash"))).thenReturn(1);
+        when(userRepository.findVersionById(1L)).thenReturn(Optional.of(7L));
+        when(userRepository.findResponseById(1L)).thenReturn(Optional.of(user));
+
+        long version = userService.patchUser(1L, new UserPatchDTO(null, null, "hemligt", null, null, null), null);
+
+        assertEquals(7L, version);
+        verify(credentialsCache).evict("Micke");
+        verify(refreshTokens).revokeAll(1L);
+    }
+
+    /**
+     * Inget uppdaterat men raden finns → versionen stämde inte → 412.
+     */
+    @Test
+    public void staleVersionThrowsPreconditionFailed() {
+        when(userRepository.patchUser(eq(1L), eq(2L), any())).thenReturn(0);
+        when(userRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
+
+        assertThrows(PreconditionFailedException.class, () ->
+                userService.patchUser(1L, new UserPatchDTO(null, null, null, "Nytt", null, null), 2L));
+        verify(feedCache, never()).invalidate();
+    }
+
+    /**
+     * Inget uppdaterat och raden finns inte → 404.
+     */
+    @Test
+    public void missingUserThrowsNotFound() {
+        when(userRepository.patchUser(eq(1L), eq(null), any())).thenReturn(0);
+        when(userRepository.findVersionById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () ->
+                userService.patchUser(1L, new UserPatchDTO(null, null, null, "Nytt", null, null), null));
+    }
+
+    /**
+     * Tom body eller tomma fält är ogiltiga (→ 400).
+     */
+    @Test
+    public void emptyPatchIsRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                userService.patchUser(1L, new UserPatchDTO(null, null, null, null, null, null), null));
+        assertThrows(IllegalArgumentException.class, () ->
+                userService.patchUser(1L, new UserPatchDTO(null, " ", null, null, null, null), null));
+    }
+}
@@ -0,0 +1,143 @@
+package se.jensen.mikael.springboot.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.dto.PostPageResponseDTO;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Säkerställer att flödet inte gör en query per författare (N+1).
+ * Varje post har en egen författare, så en sida med N poster skulle
+ * kosta N+1 SQL-satser om Post.user laddades en i taget.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class PostFeedQueryCountTest {
+
+    private static final int AUTHORS = 25;
+
+    @Autowired
+    private PostService postService;
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private FeedCache feedCache;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        Instant now = Instant.now();
+        for (int i = 0; i < AUTHORS; i++) {
+            User user = new User();
+            user.setUsername("author" + i);
+            user.setEmail("author" + i + "@test.com");
+            user.setPassword("hash");
+            user.setRole("USER");
+            user.setDisplayName("Author " + i);
+            user.setBio("Bio " + i);
+            User saved = userRepository.save(user);
+
+            Post post = new Post(saved);
+            post.setText("Post nummer " + i);
+            post.setCreatedAt(now.minusSeconds(i));
+            postRepository.save(post);
+        }
+
+        // Data skapas direkt via repository, så cachen måste tömmas manuellt
+        feedCache.invalidate();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    /**
+     * Första sidan i flödet ska kosta exakt en SQL-sats oavsett antal författare.
+     */
+    @Test
+    public void feedFirstPageUsesOneStatement() {
+        // ACT
+        PostPageResponseDTO page = postService.getFeedPage(20, null);
+
+        // ASSERT
+        assertEquals(20, page.posts().size());
+        assertEquals("author0", page.posts().get(0).user().username());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Andra läsningen av första sidan ska besvaras från FeedCache utan SQL.
+     */
+    @Test
+    public void feedFirstPageIsServedFromCache() {
+        // ARRANGE
+        postService.getFeedPage(20, null);
+        statistics.clear();
+
+        // ACT
+        PostPageResponseDTO page = postService.getFeedPage(20, null);
+
+        // ASSERT
+        assertEquals(20, page.posts().size());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Även nästa sida (via cursor) ska kosta exakt en SQL-sats.
+     */
+    @Test
+    public void feedNextPageUsesOneStatement() {
+        // ARRANGE
+        PostPageResponseDTO first = postService.getFeedPage(10, null);
+        assertNotNull(first.nextCursor());
+        statistics.clear();
+
+        // ACT
+        PostPageResponseDTO second = postService.getFeedPage(10, first.nextCursor());
+
+        // ASSERT
+        assertEquals(10, second.posts().size());
+        assertEquals("author10", second.posts().get(0).user().username());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * findById används av GET /posts/{id} – författaren ska följa med i samma query.
+     */
+    @Test
+    public void findPostByIdFetchesAuthorInSameStatement() {
+        // ARRANGE
+        Long id = postRepository.findFeedFirstPage(Limit.of(1)).get(0).id();
+        statistics.clear();
+
+        // ACT
+        Post post = postRepository.findById(id).orElseThrow();
+
+        // ASSERT – getUsername() utanför transaktion kastar om user inte är hämtad
+        assertEquals("author0", post.getUser().getUsername());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+}
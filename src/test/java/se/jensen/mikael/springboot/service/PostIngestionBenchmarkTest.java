@@ -0,0 +1,126 @@
+package se.jensen.mikael.springboot.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Bulkimport av poster genom PostRepository.saveAll, i transaktioner om
+ * CHUNK_SIZE poster som i PostBatchService:
+ * - rad för rad: JDBC-batchstorlek 1 i sessionen, ett INSERT per post – så
+ *   som Hibernate gör när databasen sätter id:t (IDENTITY)
+ * - batchat: Snowflake-id och hibernate.jdbc.batch_size=50
+ * <p>
+ * H2 i minnet har ingen nätverksfördröjning – mot en riktig databas sparar
+ * varje batch 49 rundresor, så skillnaden blir större där.
+ * Siffrorna loggas; testet kontrollerar bara att alla rader kom in.
+ * Körs bara med -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+public class PostIngestionBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostIngestionBenchmarkTest.class);
+
+    private static final int AUTHORS = 50;
+    private static final int ROWS = 10_000;
+    private static final int ROUNDS = 7;
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<User> authors;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAllInBatch();
+        userRepository.deleteAll();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            User user = new User();
+            user.setUsername("bench" + i);
+            user.setEmail("bench" + i + "@test.com");
+            user.setPassword("$2a$10$" + "x".repeat(53));
+            user.setRole("USER");
+            user.setDisplayName("Bench " + i);
+            user.setBio("Bio " + i);
+            users.add(user);
+        }
+        authors = userRepository.saveAll(users);
+    }
+
+    @Test
+    public void batchedSnowflakeInsertsVersusRowByRow() {
+        long[] rowByRow = new long[ROUNDS];
+        long[] batched = new long[ROUNDS];
+        // Första varvet värmer upp JIT, Hibernate och H2
+        for (int round = 0; round < ROUNDS; round++) {
+            postRepository.deleteAllInBatch();
+            rowByRow[round] = ingest(1);
+            assertEquals(ROWS, postRepository.count());
+
+            postRepository.deleteAllInBatch();
+            batched[round] = ingest(null);
+            assertEquals(ROWS, postRepository.count());
+        }
+
+        logger.info("Ingest {} posts via saveAll in chunks of {}: row-by-row {} ms, batched (batch_size=50) {} ms",
+                ROWS, PostBatchService.CHUNK_SIZE, median(rowByRow) / 1_000_000, median(batched) / 1_000_000);
+    }
+
+    // jdbcBatchSize null = hibernate.jdbc.batch_size från konfigurationen
+    private long ingest(Integer jdbcBatchSize) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Instant now = Instant.now();
+        long start = System.nanoTime();
+        for (int from = 0; from < ROWS; from += PostBatchService.CHUNK_SIZE) {
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+                List<Post> chunk = new ArrayList<>(PostBatchService.CHUNK_SIZE);
+                for (int i = first; i < Math.min(first + PostBatchService.CHUNK_SIZE, ROWS); i++) {
+                    Post post = new Post(authors.get(i % AUTHORS));
+                    post.setText("Post nummer " + i);
+                    post.setCreatedAt(now);
+                    chunk.add(post);
+                }
+                postRepository.saveAll(chunk);
+            });
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = Arrays.copyOfRange(values, 1, values.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,125 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.dto.PostRow;
+import se.jensen.mikael.springboot.dto.UserResponseDTO;
+import se.jensen.mikael.springboot.exception.UserNotFoundException;
+import se.jensen.mikael.springboot.mapper.PostMapper;
+import se.jensen.mikael.springboot.mapper.UserMapper;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.search.PostSearchIndex;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class PostSearchServiceTest {
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PostSearchIndex index;
+    private PostSearchService service;
+
+    @BeforeEach
+    public void setUp() {
+        index = new PostSearchIndex();
+        service = new PostSearchService(index, postRepository, new PostMapper(new UserMapper()), userService,
+                transactionManager);
+    }
+
+    private static final UserResponseDTO ANNA = new UserResponseDTO(
+            7L, "anna", "anna@test.se", "USER", "Anna", "bio", null);
+
+    private static PostRow row(long id, String text) {
+        return row(id, text, 7L);
+    }
+
+    private static PostRow row(long id, String text, long userId) {
+        return new PostRow(id, text, Instant.now(), userId, "anna", "anna@test.se", "USER", "Anna", "bio", null);
+    }
+
+    /**
+     * Träffarna kommer ur indexet i minnet, nyast först; varje författare
+     * slås upp en gång via UserService (UserCache) och posterna läses inte
+     * från databasen.
+     */
+    @Test
+    public void hitsAreServedFromIndexNewestFirst() {
+        when(postRepository.streamAllRows()).thenReturn(Stream.of(
+                row(1, "Spring Boot"), row(2, "Spring igen"), row(3, "Mer Spring")));
+        assertTrue(service.buildIndex());
+        when(userService.getUser(7L)).thenReturn(ANNA);
+
+        List<PostResponseDTO> hits = service.search("spring", 10);
+
+        assertEquals(List.of(3L, 2L, 1L), hits.stream().map(PostResponseDTO::id).toList());
+        assertEquals("Mer Spring", hits.get(0).text());
+        assertEquals(ANNA, hits.get(0).user());
+        verify(userService, times(1)).getUser(7L);
+        verify(postRepository, times(1)).streamAllRows(); // bara bygget
+    }
+
+    /**
+     * En författare som raderats efter indexeringen ger inga träffar.
+     */
+    @Test
+    public void deletedAuthorIsSkipped() {
+        when(postRepository.streamAllRows()).thenReturn(Stream.of(
+                row(1, "Spring Boot"), row(2, "Spring igen", 8L)));
+        assertTrue(service.buildIndex());
+        when(userService.getUser(7L)).thenReturn(ANNA);
+        when(userService.getUser(8L)).thenThrow(new UserNotFoundException("borta"));
+
+        List<PostResponseDTO> hits = service.search("spring", 10);
+
+        assertEquals(List.of(1L), hits.stream().map(PostResponseDTO::id).toList());
+    }
+
+    /**
+     * Inga träffar i indexet → inga uppslag alls.
+     */
+    @Test
+    public void noHitsNoLookups() {
+        assertTrue(service.search("saknas", 10).isEmpty());
+        verifyNoInteractions(userService, postRepository);
+    }
+
+    /**
+     * Ett misslyckat bygge stoppar inte applikationen; retry bygger om.
+     */
+    @Test
+    public void failedBuildIsLoggedAndRetried() {
+        when(postRepository.streamAllRows())
+                .thenThrow(new DataAccessResourceFailureException("databasen är nere"))
+                .thenReturn(Stream.of(row(1, "Spring Boot")));
+
+        assertFalse(service.buildIndex());
+        assertEquals(0, index.size());
+
+        service.retryBuildIndex();
+        assertEquals(1, index.size());
+    }
+}
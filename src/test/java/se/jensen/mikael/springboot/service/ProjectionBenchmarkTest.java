@@ -0,0 +1,155 @@
+package se.jensen.mikael.springboot.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import se.jensen.mikael.springboot.dto.PostResponseDTO;
+import se.jensen.mikael.springboot.mapper.PostMapper;
+import se.jensen.mikael.springboot.model.Post;
+import se.jensen.mikael.springboot.model.User;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Jämför allokering och latens för GET /posts före och efter DTO-projektionerna:
+ * - entiteter: SELECT p FROM Post p JOIN FETCH p.user, mappat med PostMapper
+ *   (så som getAllPosts gjorde innan)
+ * - projektion: PostRepository.findAllRows (PostRow direkt från resultatet)
+ * <p>
+ * Mäter med H2 i minnet, så latensen visar bara kostnaden i applikationen
+ * (hydrering, persistence context, snapshots) – inte nätverket. Siffrorna
+ * loggas; testet kräver bara att projektionen allokerar mindre.
+ * Körs bara med -Pbenchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProjectionBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProjectionBenchmarkTest.class);
+
+    private static final int AUTHORS = 50;
+    private static final int POSTS = 5_000;
+    private static final int WARMUP = 10;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private PostRepository postRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    public void setUp() {
+        postRepository.deleteAll();
+        userRepository.deleteAll();
+
+        List<User> authors = new ArrayList<>();
+        for (int i = 0; i < AUTHORS; i++) {
+            User user = new User();
+            user.setUsername("bench" + i);
+            user.setEmail("bench" + i + "@test.com");
+            user.setPassword("$2a$10$" + "x".repeat(53)); // lika lång som en BCrypt-hash
+            user.setRole("USER");
+            user.setDisplayName("Bench " + i);
+            user.setBio("Bio " + i);
+            authors.add(user);
+        }
+        authors = userRepository.saveAll(authors);
+
+        Instant now = Instant.now();
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < POSTS; i++) {
+            Post post = new Post(authors.get(i % AUTHORS));
+            post.setText("Post nummer " + i + " med lite text som en vanlig post");
+            post.setCreatedAt(now.minusSeconds(i));
+            posts.add(post);
+        }
+        postRepository.saveAll(posts);
+    }
+
+    @Test
+    public void projectionAllocatesLessThanEntities() {
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Supplier<List<PostResponseDTO>> entities = () -> readWrite.execute(status ->
+                entityManager.createQuery(
+                                "SELECT p FROM Post p JOIN FETCH p.user ORDER BY p.createdAt DESC, p.id DESC",
+                                Post.class)
+                        .getResultList().stream()
+                        .map(postMapper::toResponseDTO)
+                        .toList());
+        Supplier<List<PostResponseDTO>> projection = () -> readOnly.execute(status ->
+                postRepository.findAllRows().stream()
+                        .map(postMapper::toResponseDTO)
+                        .toList());
+
+        assertEquals(POSTS, entities.get().size());
+        assertEquals(POSTS, projection.get().size());
+
+        Result before = measure(entities);
+        Result after = measure(projection);
+
+        logger.info(String.format("GET /posts, %d posts: entities %.2f ms, %.1f MB/op; projection %.2f ms, %.1f MB/op",
+                POSTS, before.millis(), before.megabytes(), after.millis(), after.megabytes()));
+
+        assertTrue(after.bytes() < before.bytes(),
+                "projektionen ska allokera mindre: " + after.bytes() + " >= " + before.bytes());
+    }
+
+    private record Result(long nanos, long bytes) {
+        double millis() {
+            return nanos / 1_000_000.0;
+        }
+
+        double megabytes() {
+            return bytes / (1024.0 * 1024.0);
+        }
+    }
+
+    // Median-latens och genomsnittlig allokering per anrop på den här tråden
+    private static Result measure(Supplier<?> operation) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            operation.get();
+        }
+        long[] nanos = new long[ROUNDS];
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            operation.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        Arrays.sort(nanos);
+        return new Result(nanos[ROUNDS / 2], allocated / ROUNDS);
+    }
+}
@@ -0,0 +1,129 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import se.jensen.mikael.springboot.cache.TakenNamesFilter;
+import se.jensen.mikael.springboot.dto.AvailabilityResponseDTO;
+import se.jensen.mikael.springboot.dto.UserResponseDTOBuilder;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UserAvailabilityServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TakenNamesFilter takenNames;
+    private UserAvailabilityService service;
+
+    @BeforeEach
+    public void setUp() {
+        takenNames = new TakenNamesFilter(1000);
+        service = new UserAvailabilityService(takenNames, userRepository, transactionManager);
+    }
+
+    /**
+     * Innan filtret laddats frågas alltid databasen.
+     */
+    @Test
+    public void beforeLoadAsksDatabase() {
+        when(userRepository.existsByUsername("Micke")).thenReturn(true);
+
+        AvailabilityResponseDTO response = service.check("Micke", null);
+
+        assertEquals(false, response.usernameAvailable());
+        assertNull(response.emailAvailable());
+    }
+
+    /**
+     * Namn som inte finns i filtret är lediga utan databasfråga.
+     */
+    @Test
+    public void unknownNamesAreFreeWithoutQuery() {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(
+                UserResponseDTOBuilder.builder().withUsername("Micke").withEmail("micke@test.se").build()));
+        service.rebuild();
+
+        AvailabilityResponseDTO response = service.check("Ny", "ny@test.se");
+
+        assertEquals(true, response.usernameAvailable());
+        assertEquals(true, response.emailAvailable());
+        verify(userRepository, never()).existsByUsername("Ny");
+        verify(userRepository, never()).existsByEmail("ny@test.se");
+        assertEquals(2L, service.stats().get("answeredFromFilter"));
+    }
+
+    /**
+     * Träff i filtret kontrolleras mot databasen – namnet kan ha blivit ledigt.
+     */
+    @Test
+    public void filterHitIsConfirmedByDatabase() {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.of(
+                UserResponseDTOBuilder.builder().withUsername("Micke").withEmail("micke@test.se").build()));
+        service.rebuild();
+        when(userRepository.existsByUsername("Micke")).thenReturn(false);
+
+        AvailabilityResponseDTO response = service.check("Micke", null);
+
+        assertEquals(true, response.usernameAvailable());
+        verify(userRepository).existsByUsername("Micke");
+    }
+
+    /**
+     * Namn som registreras efter laddningen syns direkt, även under ombyggnad.
+     */
+    @Test
+    public void namesAddedDuringRebuildAreKept() {
+        takenNames.beginRebuild();
+        takenNames.endRebuild();
+        takenNames.beginRebuild();
+        takenNames.add("Ny", null);
+        takenNames.endRebuild();
+
+        assertEquals(true, takenNames.mightHaveUsername("Ny"));
+        assertEquals(false, takenNames.mightHaveEmail("Ny"));
+    }
+
+    /**
+     * En laddning som misslyckas halvvägs får inte ersätta filtret –
+     * namn som inte hann läsas in skulle annars svaras "ledigt".
+     */
+    @Test
+    public void failedRebuildKeepsAskingDatabase() {
+        when(userRepository.streamAllResponses()).thenReturn(Stream.concat(
+                Stream.of(UserResponseDTOBuilder.builder().withUsername("Micke").withEmail("micke@test.se").build()),
+                Stream.generate(() -> {
+                    throw new DataAccessResourceFailureException("anslutningen bröts");
+                })));
+        service.rebuild();
+        when(userRepository.existsByUsername("Anna")).thenReturn(true);
+
+        assertEquals(false, service.check("Anna", null).usernameAvailable());
+        verify(userRepository).existsByUsername("Anna");
+    }
+
+    /**
+     * Varken username eller email → 400.
+     */
+    @Test
+    public void emptyCheckIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> service.check(null, " "));
+    }
+}
@@ -0,0 +1,51 @@
+package se.jensen.mikael.springboot.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import se.jensen.mikael.springboot.cache.FeedCache;
+import se.jensen.mikael.springboot.repository.PostRepository;
+import se.jensen.mikael.springboot.repository.UserRepository;
+
+import java.util.List;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UserPurgeServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PostRepository postRepository;
+
+    @Mock
+    private FeedCache feedCache;
+
+    /**
+     * Posts tas bort i omgångar om chunk-size, användarraden sist.
+     */
+    @Test
+    public void purgesPostsInChunksThenUser() {
+        UserPurgeService service = new UserPurgeService(userRepository, postRepository, feedCache, 2, 0);
+        when(userRepository.findDeletedIds(100)).thenReturn(List.of(7L));
+        when(postRepository.findIdsByUserId(7L, Limit.of(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+        when(postRepository.deleteRowsByIds(List.of(1L, 2L))).thenReturn(2);
+        when(postRepository.deleteRowsByIds(List.of(3L))).thenReturn(1);
+
+        service.purgeDeletedUsers();
+
+        InOrder order = inOrder(postRepository, userRepository);
+        order.verify(postRepository).deleteRowsByIds(List.of(1L, 2L));
+        order.verify(postRepository).deleteRowsByIds(List.of(3L));
+        order.verify(userRepository).purgeDeleted(7L);
+        verify(feedCache).invalidate();
+    }
+}